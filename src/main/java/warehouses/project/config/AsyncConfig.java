@@ -0,0 +1,155 @@
+package warehouses.project.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Выделенные пулы потоков для тяжёлых задач, которые не должны занимать потоки Tomcat.
+ * <p>
+ * При {@code spring.threads.virtual.enabled=true} (профиль vt, Java 21) задачи, которые в основном ждут ввода-вывода,
+ * идут в виртуальные потоки. Хеширование паролей и импорты остаются в ограниченных пулах: первое нагружает CPU,
+ * а для вторых ограничение числа потоков и отклонение при переполнении и есть защита от перегрузки.
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Пул для BCrypt (вход и регистрация). Ограничен и по потокам, и по очереди:
+     * при переполнении задача сразу отклоняется (RejectedExecutionException → 429),
+     * а не ждёт, занимая поток запроса.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashingExecutor(
+            @Value("${security.password-hashing.threads:4}") int threads,
+            @Value("${security.password-hashing.queue-capacity:100}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("password-hashing-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Пул фоновых импортов из файлов. Каждый импорт занимает поток на всё время чтения файла,
+     * поэтому потоков немного; при заполненной очереди новый импорт отклоняется (429).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor importExecutor(
+            @Value("${shipments.import.threads:2}") int threads,
+            @Value("${shipments.import.queue-capacity:10}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("shipment-import-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Пул отправки событий SSE. Задача пишет в соединение накопленный буфер одного подписчика,
+     * поэтому потоков нужно столько, сколько соединений пишется одновременно, а не сколько их открыто.
+     * При заполненной очереди подписчик отключается (и переподключается).
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor sseSenderExecutor(
+            @Value("${sse.sender.threads:16}") int threads,
+            @Value("${sse.sender.queue-capacity:100000}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("sse-sender-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Отправка событий SSE в виртуальных потоках: поток на задачу, без очереди. Задач одновременно
+     * не больше, чем подписчиков, так как у подписчика выполняется не более одной задачи отправки.
+     */
+    @Bean("sseSenderExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualSseSenderExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("sse-sender-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    /**
+     * Пул параллельного чтения шардов: запрос списка по всем шардам занимает по потоку на шард.
+     * Задачи ждут ответа БД, поэтому потоков больше, чем ядер; при заполненной очереди запрос отклоняется (429).
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor shardFanOutExecutor(
+            @Value("${sharding.fan-out.threads:32}") int threads,
+            @Value("${sharding.fan-out.queue-capacity:1000}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("shard-fan-out-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Чтение шардов в виртуальных потоках: поток на задачу, одновременные запросы ограничивают пулы соединений шардов.
+     */
+    @Bean("shardFanOutExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualShardFanOutExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("shard-fan-out-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    /**
+     * Пул подтверждения перемещений между шардами: писатель склада только резервирует перемещение,
+     * а ждать шард назначения будет этот пул. Перемещение, отклонённое при заполненной очереди, остаётся
+     * в резерве и доводится фоновым восстановлением.
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor shardTransferExecutor(
+            @Value("${sharding.transfer.threads:8}") int threads,
+            @Value("${sharding.transfer.queue-capacity:10000}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("shard-transfer-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean("shardTransferExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualShardTransferExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("shard-transfer-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+}
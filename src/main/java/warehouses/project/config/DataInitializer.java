@@ -3,11 +3,14 @@ package warehouses.project.config;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import warehouses.project.model.Role;
+import warehouses.project.model.ShipmentItem;
 import warehouses.project.model.User;
 import warehouses.project.repository.UserRepository;
+import warehouses.project.service.ShardRouter;
 
 /**
  * Инициализатор данных при старте приложения.
@@ -20,10 +23,29 @@ public class DataInitializer implements CommandLineRunner {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final JdbcTemplate jdbcTemplate;
 
     @Override
     public void run(String... args) throws Exception {
         createDefaultAdmin();
+        alignShipmentItemSequence();
+    }
+
+    /**
+     * Сдвигает таблицу-последовательность shipmentitems_seq за максимальный существующий ID.
+     * <p>
+     * Строки, созданные до перехода на пакетную вставку, получали ID через AUTO_INCREMENT,
+     * а новая последовательность начинается с 1 — без сдвига выданные блоки пересеклись бы с ними.
+     * <p>
+     * Максимум берётся только в диапазоне ID основной БД (шард 0): генератор общий для всех шардов, и в её
+     * shipmentitems бывают строки с ID из диапазона другого шарда — сдвиг за них увёл бы последовательность
+     * в чужой диапазон, и шарды выдавали бы пересекающиеся блоки.
+     */
+    private void alignShipmentItemSequence() {
+        jdbcTemplate.update(
+                "UPDATE shipmentitems_seq SET next_val = GREATEST(next_val, " +
+                        "(SELECT COALESCE(MAX(id), 0) + 1 + ? FROM shipmentitems WHERE id < ?))",
+                ShipmentItem.ID_ALLOCATION_SIZE, ShardRouter.idBase(1));
     }
 
     /**
@@ -1,10 +1,12 @@
 package warehouses.project.config;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,14 +14,20 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import warehouses.project.model.User;
 import warehouses.project.service.JwtService;
 import warehouses.project.service.UserService;
+import warehouses.project.service.UserStatusCache;
 
 import java.io.IOException;
+import java.util.Optional;
 
 /**
  * Фильтр для обработки JWT токенов в запросах.
  * Извлекает токен из заголовка Authorization и аутентифицирует пользователя.
+ * <p>
+ * В режиме {@code security.jwt.principal-source=claims} пользователь строится из claims токена,
+ * а существование и текущая роль берутся из {@link UserStatusCache} — без запроса к БД при попадании.
  */
 @Component
 @RequiredArgsConstructor
@@ -27,6 +35,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserService userService;
+    private final UserStatusCache userStatusCache;
+
+    @Value("${security.jwt.principal-source:database}")
+    private String principalSource;
 
     @Override
     protected void doFilterInternal(
@@ -36,7 +48,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String username;
 
         // Проверяем наличие токена в заголовке
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -46,14 +57,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         // Извлекаем токен
         jwt = authHeader.substring(7);
-        username = jwtService.extractUserName(jwt);
 
-        // Если имя пользователя извлечено и пользователь еще не аутентифицирован
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userService.userDetailsService().loadUserByUsername(username);
+        // Если пользователь еще не аутентифицирован
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Подпись и срок действия проверяются один раз; дальше работаем с готовыми claims
+            Claims claims = jwtService.verify(jwt);
+            UserDetails userDetails = "claims".equals(principalSource)
+                    ? authenticateByClaims(claims)
+                    : authenticateByDatabase(claims);
 
-            // Проверяем валидность токена
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -66,5 +79,41 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
-}
 
+    /**
+     * Пользователь из claims токена с ролью из кэша статусов.
+     *
+     * @return пользователь или null, если он удалён или имя занято другим пользователем
+     */
+    private UserDetails authenticateByClaims(Claims claims) {
+        User user = jwtService.extractUser(claims);
+        if (user == null) {
+            // токен без ID или роли в claims
+            return authenticateByDatabase(claims);
+        }
+
+        Optional<UserStatusCache.UserStatus> status = userStatusCache.get(user.getUsername());
+        if (status.isEmpty() || !status.get().id().equals(user.getId())) {
+            return null;
+        }
+        user.setRole(status.get().role());
+        return user;
+    }
+
+    /**
+     * Пользователь из БД по имени из токена.
+     *
+     * @return пользователь или null, если токен не прошёл проверку
+     */
+    private UserDetails authenticateByDatabase(Claims claims) {
+        String username = claims.getSubject();
+        if (username == null) {
+            return null;
+        }
+
+        UserDetails userDetails = userService.userDetailsService().loadUserByUsername(username);
+
+        // Проверяем валидность токена
+        return jwtService.isTokenValid(claims, userDetails) ? userDetails : null;
+    }
+}
@@ -0,0 +1,114 @@
+package warehouses.project.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Чтение с реплик ({@code datasource.replica.enabled=true}).
+ * <p>
+ * Основной пул строится из обычных настроек spring.datasource, пулы реплик — из {@code datasource.replica.*}.
+ * Приложение получает {@link ReplicaRoutingDataSource} через {@link LazyConnectionDataSourceProxy}.
+ * Hibernate отпускает соединение после каждой транзакции: иначе при open-in-view соединение первой транзакции
+ * запроса (возможно, с реплики) использовалось бы и для следующих.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig implements WebMvcConfigurer {
+
+    private final ReadYourWritesInterceptor readYourWrites;
+
+    public ReadReplicaConfig(@Value("${datasource.replica.sticky-for:PT5S}") Duration stickyFor) {
+        this.readYourWrites = new ReadYourWritesInterceptor(stickyFor);
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            HikariDataSource primaryDataSource,
+            ReplicaPools replicaPools,
+            @Value("${datasource.replica.max-lag:PT2S}") Duration maxLag
+    ) {
+        return new ReplicaLagMonitor(primaryDataSource, replicaPools.dataSources(), maxLag);
+    }
+
+    @Bean
+    public ReplicaPools replicaPools(
+            DataSourceProperties properties,
+            @Value("${datasource.replica.urls}") List<String> urls,
+            @Value("${datasource.replica.username:${spring.datasource.username}}") String username,
+            @Value("${datasource.replica.password:${spring.datasource.password}}") String password,
+            @Value("${datasource.replica.pool-size:10}") int poolSize
+    ) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReplicaPools(replicas);
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            ReplicaPools replicaPools,
+            ReplicaLagMonitor replicaLagMonitor,
+            @Value("${datasource.replica.transaction-prefix:warehouses.project.service.}") String transactionPrefix
+    ) {
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaPools.dataSources(), transactionPrefix,
+                replicaLagMonitor, readYourWrites);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(readYourWrites);
+    }
+
+    /**
+     * Пулы реплик по именам; закрываются вместе с {@link ReplicaRoutingDataSource}.
+     */
+    public record ReplicaPools(Map<String, DataSource> dataSources) {
+    }
+}
@@ -0,0 +1,98 @@
+package warehouses.project.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Чтение своих записей при чтении с реплик.
+ * <p>
+ * С начала изменяющего запроса (создание операции, правка товара и т. п.) и ещё {@code datasource.replica.sticky-for}
+ * после его успешного завершения пользователь читает с основной БД: реплики за это время догоняют его изменения,
+ * и только что созданная операция не пропадает из его списка. Отметка ставится до выполнения запроса, потому что
+ * клиент получает ответ раньше, чем вызывается {@link #afterCompletion}, и может сразу прочитать список.
+ * Если запрос не удался, отметка, поставленная им, снимается. Остальные пользователи продолжают читать с реплик.
+ * <p>
+ * Отметки хранятся в памяти экземпляра приложения; при нескольких экземплярах запросы пользователя
+ * должны приходить на один экземпляр (привязка сессии на балансировщике).
+ */
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final String USERNAME_ATTRIBUTE = ReadYourWritesInterceptor.class.getName() + ".username";
+    private static final String MARKED_ATTRIBUTE = ReadYourWritesInterceptor.class.getName() + ".marked";
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesInterceptor(Duration stickyFor) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(stickyFor)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    /**
+     * Запомнить пользователя (для асинхронных операций ответ формируется при повторной (ASYNC) обработке,
+     * где контекста безопасности уже нет) и отметить его, если запрос изменяющий.
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(USERNAME_ATTRIBUTE) == null) {
+            String username = currentUsername();
+            if (username != null) {
+                request.setAttribute(USERNAME_ATTRIBUTE, username);
+                if (!READ_METHODS.contains(request.getMethod())) {
+                    // снимать при ошибке можно только отметку этого запроса, а не оставшуюся от прошлой записи
+                    request.setAttribute(MARKED_ATTRIBUTE, recentWriters.getIfPresent(username) == null);
+                    markWrite(username);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Успешный запрос продлевает отметку от момента завершения, неудачный снимает поставленную им.
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object username = request.getAttribute(USERNAME_ATTRIBUTE);
+        Object marked = request.getAttribute(MARKED_ATTRIBUTE);
+        if (username == null || marked == null) {
+            return;
+        }
+        if (ex == null && response.getStatus() < 400) {
+            markWrite(username.toString());
+        } else if (Boolean.TRUE.equals(marked)) {
+            recentWriters.invalidate(username.toString());
+        }
+    }
+
+    public void markWrite(String username) {
+        recentWriters.put(username, Boolean.TRUE);
+    }
+
+    /**
+     * Должен ли текущий пользователь читать с основной БД.
+     */
+    public boolean isCurrentUserSticky() {
+        String username = currentUsername();
+        return username != null && recentWriters.getIfPresent(username) != null;
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,137 @@
+package warehouses.project.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отставание реплик чтения.
+ * <p>
+ * Основная БД раз в {@code datasource.replica.heartbeat-interval} пишет текущее время в строку replica_heartbeat;
+ * реплика получает её репликацией, и отставание реплики — это разница между текущим временем и временем в её копии
+ * строки. Так отставание измеряется одинаково для любой БД и любой схемы репликации и включает время применения
+ * изменений, а не только их доставки. Реплика, отставшая больше {@code datasource.replica.max-lag} или не ответившая
+ * на проверку, не получает чтений до следующей успешной проверки.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT NOT NULL PRIMARY KEY, beat_at TIMESTAMP(6) NOT NULL)";
+
+    /**
+     * Состояние реплики по последней проверке.
+     *
+     * @param lagMillis отставание; null — реплика не ответила
+     */
+    public record ReplicaStatus(String name, Long lagMillis, boolean available) {
+    }
+
+    private final JdbcTemplate primary;
+    private final Map<String, JdbcTemplate> replicas = new LinkedHashMap<>();
+    private final long maxLagMillis;
+
+    private final Map<String, ReplicaStatus> statuses = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<String> available = List.of();
+
+    public ReplicaLagMonitor(DataSource primary, Map<String, DataSource> replicas, Duration maxLag) {
+        this.primary = new JdbcTemplate(primary);
+        replicas.forEach((name, dataSource) -> this.replicas.put(name, new JdbcTemplate(dataSource)));
+        this.maxLagMillis = maxLag.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        primary.execute(CREATE_TABLE);
+        beat();
+        check();
+    }
+
+    /**
+     * Записать отметку времени в основную БД.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.heartbeat-interval:PT0.5S}")
+    public void beat() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (primary.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", now) == 0) {
+            try {
+                primary.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", now);
+            } catch (DuplicateKeyException e) {
+                // строку успел вставить другой экземпляр приложения
+            }
+        }
+    }
+
+    /**
+     * Измерить отставание каждой реплики и обновить список доступных для чтения.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval:PT1S}")
+    public void check() {
+        List<String> fresh = new ArrayList<>(replicas.size());
+        replicas.forEach((name, replica) -> {
+            Long lag = measureLag(replica);
+            boolean ok = lag != null && lag <= maxLagMillis;
+            ReplicaStatus previous = statuses.put(name, new ReplicaStatus(name, lag, ok));
+            if (ok) {
+                fresh.add(name);
+            }
+            if (previous != null && previous.available() != ok) {
+                if (ok) {
+                    log.info("Replica {} is back in rotation, lag {} ms", name, lag);
+                } else {
+                    log.warn("Replica {} is out of rotation, lag {} ms exceeds {} ms", name, lag, maxLagMillis);
+                }
+            }
+        });
+        available = List.copyOf(fresh);
+    }
+
+    /**
+     * Следующая реплика для чтения (по кругу среди достаточно свежих).
+     *
+     * @return пусто, если свежих реплик нет
+     */
+    public Optional<String> nextReplica() {
+        List<String> candidates = available;
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size())));
+    }
+
+    public List<ReplicaStatus> getStatuses() {
+        List<ReplicaStatus> result = new ArrayList<>(replicas.size());
+        for (String name : replicas.keySet()) {
+            result.add(statuses.getOrDefault(name, new ReplicaStatus(name, null, false)));
+        }
+        return result;
+    }
+
+    private static Long measureLag(JdbcTemplate replica) {
+        try {
+            Timestamp beat = replica.queryForObject("SELECT beat_at FROM replica_heartbeat WHERE id = 1", Timestamp.class);
+            if (beat == null) {
+                return null;
+            }
+            return Math.max(0, Duration.between(beat.toLocalDateTime(), LocalDateTime.now()).toMillis());
+        } catch (DataAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package warehouses.project.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DataSource, который отправляет чтение сервисов на реплики.
+ * <p>
+ * Реплика выбирается только для транзакции readOnly, объявленной на методе сервиса: имя такой транзакции — имя
+ * метода, и оно начинается с {@code datasource.replica.transaction-prefix}. Неявные readOnly-транзакции методов
+ * репозиториев (проверки перед записью, вход, идемпотентность) остаются на основной БД: им нужны последние данные.
+ * Из реплик берётся следующая по кругу среди тех, чьё отставание по {@link ReplicaLagMonitor} допустимо;
+ * если таких нет или текущий пользователь только что записывал ({@link ReadYourWritesInterceptor}) — основная БД.
+ * <p>
+ * Выбор делается при получении соединения, поэтому DataSource используется через
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: соединение берётся при первом запросе,
+ * когда признаки транзакции уже выставлены.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    static final String PRIMARY = "primary";
+
+    private final Map<String, DataSource> replicas;
+    private final String transactionPrefix;
+    private final ReplicaLagMonitor lagMonitor;
+    private final ReadYourWritesInterceptor readYourWrites;
+
+    public ReplicaRoutingDataSource(
+            DataSource primary,
+            Map<String, DataSource> replicas,
+            String transactionPrefix,
+            ReplicaLagMonitor lagMonitor,
+            ReadYourWritesInterceptor readYourWrites
+    ) {
+        this.replicas = replicas;
+        this.transactionPrefix = transactionPrefix;
+        this.lagMonitor = lagMonitor;
+        this.readYourWrites = readYourWrites;
+
+        Map<Object, Object> targets = new LinkedHashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        initialize();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        String transactionName = TransactionSynchronizationManager.getCurrentTransactionName();
+        if (transactionName == null || !transactionName.startsWith(transactionPrefix)) {
+            return PRIMARY;
+        }
+        if (readYourWrites.isCurrentUserSticky()) {
+            return PRIMARY;
+        }
+        return lagMonitor.nextReplica().orElse(PRIMARY);
+    }
+
+    /**
+     * Закрыть пулы реплик; пул основной БД — отдельный bean и закрывается сам.
+     */
+    @Override
+    public void destroy() {
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close replica pool", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package warehouses.project.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Шард, с которым работает текущий поток. Читается {@link ShardRoutingDataSource} при получении соединения.
+ * <p>
+ * Напрямую используется только слоем шардирования; сервисы выбирают шард через
+ * {@link warehouses.project.service.ShardRouter}, который следит, чтобы транзакция не переходила между шардами.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Текущий шард; null — шард не выбран (основная БД).
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Выполнить действие с выбранным шардом и вернуть прежний выбор.
+     */
+    public static <T> T call(Integer shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package warehouses.project.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource, который отправляет запросы в шард из {@link ShardContext}.
+ * <p>
+ * Шард 0 — основная БД: в ней справочники (товары, склады, пользователи) и данные складов, не перенесённых
+ * в другие шарды. Без выбранного шарда запросы идут туда же. Шарды 1..N-1 хранят операции, строки операций
+ * и остатки своих складов и копии справочников.
+ * <p>
+ * Шард определяется при получении соединения, поэтому DataSource используется через
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: транзакция, начатая до выбора шарда,
+ * берёт соединение при первом запросе, когда шард уже выбран.
+ */
+@Slf4j
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private final List<DataSource> shards;
+
+    /**
+     * @param primary     основная БД (шард 0)
+     * @param extraShards шарды 1..N-1
+     */
+    public ShardRoutingDataSource(DataSource primary, List<DataSource> extraShards) {
+        this.shards = new ArrayList<>(extraShards.size() + 1);
+        this.shards.add(primary);
+        this.shards.addAll(extraShards);
+
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        initialize();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Пул шарда — для обслуживания схемы и копирования справочников мимо маршрутизации.
+     */
+    public DataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    /**
+     * Закрыть пулы шардов 1..N-1; пул основной БД — отдельный bean и закрывается сам.
+     */
+    @Override
+    public void destroy() {
+        for (DataSource shard : shards.subList(1, shards.size())) {
+            if (shard instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close shard pool", e);
+                }
+            }
+        }
+    }
+}
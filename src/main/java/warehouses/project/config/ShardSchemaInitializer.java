@@ -0,0 +1,118 @@
+package warehouses.project.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import warehouses.project.service.ShardRouter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Подготовка шардов 1..N-1 при запуске.
+ * <p>
+ * Схема шарда обновляется той же моделью, что и схема основной БД: Hibernate передаёт её сюда как
+ * {@link Integrator} при построении фабрики сессий. Затем шарду выделяется свой диапазон ID
+ * ({@link ShardRouter#idBase}), чтобы ID операций, остатков, снимков и версии журнала изменений не пересекались
+ * между шардами, а по ID операции или остатка было видно, в каком шарде запись. ID строк операций выдаются блоками
+ * генератора, общего для всех шардов, поэтому строка может получить ID из диапазона другого шарда
+ * (уникальным он остаётся).
+ */
+@Slf4j
+public class ShardSchemaInitializer implements Integrator {
+
+    /**
+     * Таблицы с AUTO_INCREMENT (и его колонка), ID которых видны клиентам и должны быть уникальны во всех шардах.
+     */
+    static final Map<String, String> IDENTITY_COLUMNS = Map.of(
+            "shipments", "id",
+            "stock", "id",
+            "stock_snapshots", "id",
+            "change_log", "version");
+
+    /**
+     * Последовательность ID строк операций (pooled hi/lo, см. ShipmentItem).
+     */
+    static final String ITEM_SEQUENCE = "shipmentitems_seq";
+
+    private volatile Metadata metadata;
+    private volatile SessionFactoryImplementor sessionFactory;
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        this.metadata = null;
+        this.sessionFactory = null;
+    }
+
+    /**
+     * Обновить схемы шардов (если {@code updateSchema}), выделить диапазоны ID и создать строку очистки журнала изменений.
+     */
+    public void initialize(ShardRoutingDataSource shards, boolean updateSchema) {
+        if (updateSchema && metadata == null) {
+            throw new IllegalStateException("Hibernate metadata was not captured, check hibernate.integrator_provider");
+        }
+        for (int shard = 1; shard < shards.getShardCount(); shard++) {
+            if (updateSchema) {
+                ShardContext.call(shard, () -> {
+                    SchemaManagementToolCoordinator.process(metadata, sessionFactory.getServiceRegistry(), updateSettings(), action -> {
+                    });
+                    return null;
+                });
+            }
+            JdbcTemplate jdbc = new JdbcTemplate(shards.getShard(shard));
+            reserveIdRange(jdbc, ShardRouter.idBase(shard));
+            jdbc.update("INSERT IGNORE INTO change_log_counter (id, purged_version) VALUES (1, 0)");
+            log.info("Shard {} is ready, ids start at {}", shard, ShardRouter.idBase(shard));
+        }
+    }
+
+    /**
+     * Сдвинуть генераторы ID шарда к началу его диапазона. Повторный вызов ничего не меняет:
+     * генератор сдвигается, только пока в таблице нет ID из диапазона.
+     */
+    static void reserveIdRange(JdbcTemplate jdbc, long base) {
+        boolean mysql = jdbc.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName()).toLowerCase().contains("mysql");
+        for (Map.Entry<String, String> identity : IDENTITY_COLUMNS.entrySet()) {
+            String table = identity.getKey();
+            String column = identity.getValue();
+            if (belowRange(jdbc, table, column, base)) {
+                jdbc.execute(mysql
+                        ? "ALTER TABLE " + table + " AUTO_INCREMENT = " + base
+                        : "ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + base);
+            }
+        }
+        if (mysql) {
+            // в MySQL нет последовательностей: Hibernate хранит её в таблице с колонкой next_val
+            jdbc.update("UPDATE " + ITEM_SEQUENCE + " SET next_val = ? WHERE next_val < ?", base, base);
+        } else if (belowRange(jdbc, "shipmentitems", "id", base)) {
+            jdbc.execute("ALTER SEQUENCE " + ITEM_SEQUENCE + " RESTART WITH " + base);
+        }
+    }
+
+    private static boolean belowRange(JdbcTemplate jdbc, String table, String column, long base) {
+        Long max = jdbc.queryForObject("SELECT MAX(" + column + ") FROM " + table, Long.class);
+        return max == null || max < base;
+    }
+
+    private Map<String, Object> updateSettings() {
+        Map<String, Object> settings = new HashMap<>(sessionFactory.getProperties());
+        settings.remove(AvailableSettings.JAKARTA_HBM2DDL_DATABASE_ACTION);
+        settings.remove(AvailableSettings.JAKARTA_HBM2DDL_SCRIPTS_ACTION);
+        settings.put(AvailableSettings.HBM2DDL_AUTO, "update");
+        return settings;
+    }
+}
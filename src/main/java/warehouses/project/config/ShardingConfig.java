@@ -0,0 +1,110 @@
+package warehouses.project.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import warehouses.project.service.ShardReferenceSync;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шардирование по складам ({@code sharding.enabled=true}).
+ * <p>
+ * Основная БД (spring.datasource) — шард 0, {@code sharding.urls} — шарды 1..N-1. Склад закреплён за шардом
+ * (warehouses.shard), и его операции, строки операций и остатки хранятся только там;
+ * выбор шарда — {@link warehouses.project.service.ShardRouter}.
+ * <p>
+ * Как и при чтении с реплик, Hibernate отпускает соединение после каждой транзакции: иначе при open-in-view
+ * следующая транзакция запроса использовала бы соединение с шардом предыдущей. Вместе с репликами
+ * шардирование не включается: у шардов 1..N-1 реплик нет.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    public ShardingConfig(@Value("${datasource.replica.enabled:false}") boolean replicasEnabled) {
+        if (replicasEnabled) {
+            throw new IllegalStateException("sharding.enabled and datasource.replica.enabled cannot be used together");
+        }
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource globalDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("shard-0");
+        return dataSource;
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(
+            HikariDataSource globalDataSource,
+            DataSourceProperties properties,
+            @Value("${sharding.urls}") List<String> urls,
+            @Value("${sharding.username:${spring.datasource.username}}") String username,
+            @Value("${sharding.password:${spring.datasource.password}}") String password,
+            @Value("${sharding.pool-size:10}") int poolSize
+    ) {
+        List<DataSource> extraShards = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("shard-" + (extraShards.size() + 1));
+            shard.setJdbcUrl(url.trim());
+            shard.setUsername(username);
+            shard.setPassword(password);
+            shard.setDriverClassName(properties.determineDriverClassName());
+            shard.setMaximumPoolSize(poolSize);
+            extraShards.add(shard);
+        }
+        return new ShardRoutingDataSource(globalDataSource, extraShards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardSchemaInitializer shardSchemaInitializer() {
+        return new ShardSchemaInitializer();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardingHibernateProperties(ShardSchemaInitializer shardSchemaInitializer) {
+        return properties -> {
+            properties.put(AvailableSettings.CONNECTION_HANDLING, "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+            properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                    (IntegratorProvider) () -> List.of(shardSchemaInitializer));
+        };
+    }
+
+    /**
+     * Шарды готовятся после создания всех bean'ов (фабрика сессий уже построена), но до приёма запросов.
+     */
+    @Bean
+    public SmartInitializingSingleton shardInitialization(
+            ShardSchemaInitializer shardSchemaInitializer,
+            ShardRoutingDataSource shardRoutingDataSource,
+            ShardReferenceSync shardReferenceSync,
+            @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto
+    ) {
+        return () -> {
+            shardSchemaInitializer.initialize(shardRoutingDataSource, "update".equalsIgnoreCase(ddlAuto));
+            shardReferenceSync.syncAll();
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package warehouses.project.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Отключает HTML-экранирование ({@link XssProtectionConfig}) для строкового поля DTO.
+ * <p>
+ * Для полей, значения которых не выводятся как HTML и имеют фиксированный формат:
+ * коды, ID, имена констант. Не ставьте на пароли: их хеши уже посчитаны от экранированных значений.
+ */
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SkipXssEscaping {
+}
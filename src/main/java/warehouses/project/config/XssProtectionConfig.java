@@ -1,6 +1,9 @@
 package warehouses.project.config;
 
+import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,10 +15,12 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
 import java.io.IOException;
+import java.util.BitSet;
 
 /**
  * Конфигурация защиты от XSS атак.
  * Автоматически экранирует HTML-теги во всех строковых полях при десериализации JSON.
+ * Поля с {@link SkipXssEscaping} не экранируются.
  */
 @Configuration
 public class XssProtectionConfig {
@@ -23,8 +28,31 @@ public class XssProtectionConfig {
     /**
      * Кастомный десериализатор для защиты от XSS.
      * Экранирует HTML-теги в строковых значениях.
+     * <p>
+     * Строки без символов, которые заменяет {@link HtmlUtils#htmlEscape(String)},
+     * возвращаются как есть — без новой строки и StringBuilder.
      */
-    public static class XssStringDeserializer extends JsonDeserializer<String> {
+    public static class XssStringDeserializer extends JsonDeserializer<String> implements ContextualDeserializer {
+
+        /**
+         * Символы, для которых у htmlEscape есть ссылка: &lt;&gt;&amp;&quot;&#39; и сущности HTML 4 (&amp;nbsp;, &amp;copy; ...).
+         * Считается по самому htmlEscape, поэтому результат совпадает с ним символ в символ.
+         */
+        private static final BitSet ESCAPED_CHARS = new BitSet();
+
+        /**
+         * Выше U+2666 (&amp;diams;) ссылок в HTML 4.01 нет.
+         */
+        private static final char LAST_REFERENCED_CHAR = '\u2666';
+
+        static {
+            for (int c = Character.MIN_VALUE; c <= LAST_REFERENCED_CHAR; c++) {
+                if (HtmlUtils.htmlEscape(String.valueOf((char) c)).length() != 1) {
+                    ESCAPED_CHARS.set(c);
+                }
+            }
+        }
+
         @Override
         public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
             String value = p.getValueAsString();
@@ -32,7 +60,24 @@ public class XssProtectionConfig {
                 return null;
             }
             // Экранируем HTML-теги для защиты от XSS
-            return HtmlUtils.htmlEscape(value);
+            return needsEscaping(value) ? HtmlUtils.htmlEscape(value) : value;
+        }
+
+        @Override
+        public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property) {
+            if (property != null && property.getAnnotation(SkipXssEscaping.class) != null) {
+                return StringDeserializer.instance;
+            }
+            return this;
+        }
+
+        static boolean needsEscaping(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                if (ESCAPED_CHARS.get(value.charAt(i))) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 
@@ -51,4 +96,3 @@ public class XssProtectionConfig {
         return objectMapper;
     }
 }
-
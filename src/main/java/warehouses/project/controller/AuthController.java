@@ -17,6 +17,8 @@ import warehouses.project.dto.SignInRequest;
 import warehouses.project.dto.SignUpRequest;
 import warehouses.project.service.AuthenticationService;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
@@ -37,11 +39,15 @@ public class AuthController {
             @ApiResponse(
                     responseCode = "400",
                     description = "Ошибка валидации или пользователь уже существует"
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Слишком много одновременных входов и регистраций"
             )
     })
     @PostMapping("/sign-up")
-    public JwtAuthenticationResponse signUp(@RequestBody @Valid SignUpRequest request) {
-        return authenticationService.signUp(request);
+    public CompletableFuture<JwtAuthenticationResponse> signUp(@RequestBody @Valid SignUpRequest request) {
+        return authenticationService.signUpAsync(request);
     }
 
     @Operation(
@@ -57,10 +63,14 @@ public class AuthController {
             @ApiResponse(
                     responseCode = "401",
                     description = "Неверные учетные данные"
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Слишком много одновременных входов и регистраций"
             )
     })
     @PostMapping("/sign-in")
-    public JwtAuthenticationResponse signIn(@RequestBody @Valid SignInRequest request) {
-        return authenticationService.signIn(request);
+    public CompletableFuture<JwtAuthenticationResponse> signIn(@RequestBody @Valid SignInRequest request) {
+        return authenticationService.signInAsync(request);
     }
 }
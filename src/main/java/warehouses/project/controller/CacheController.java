@@ -0,0 +1,68 @@
+package warehouses.project.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import warehouses.project.dto.CacheStatsDto;
+import warehouses.project.service.CacheStatsService;
+
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+@Tag(name = "Кэш (ADMIN)", description = "Метрики кэша второго уровня. Доступно только администраторам.")
+@SecurityRequirement(name = "bearerAuth")
+public class CacheController {
+
+    private final CacheStatsService cacheStatsService;
+
+    @Operation(
+            summary = "Статистика кэша (ADMIN)",
+            description = "Попадания, промахи и записи кэша второго уровня и кэша natural id, всего и по регионам. "
+                    + "Счётчики растут только при spring.jpa.properties.hibernate.generate_statistics=true (statisticsEnabled)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Статистика кэша",
+                    content = @Content(schema = @Schema(implementation = CacheStatsDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/stats")
+    public ResponseEntity<CacheStatsDto> getStats() {
+        return ResponseEntity.ok(cacheStatsService.getStats());
+    }
+
+    @Operation(
+            summary = "Сбросить статистику кэша (ADMIN)",
+            description = "Обнуляет счётчики статистики Hibernate; содержимое кэша не затрагивается"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "204",
+                    description = "Счётчики сброшены"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/stats")
+    public ResponseEntity<Void> resetStats() {
+        cacheStatsService.resetStats();
+        return ResponseEntity.noContent().build();
+    }
+}
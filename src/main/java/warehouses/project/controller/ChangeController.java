@@ -0,0 +1,157 @@
+package warehouses.project.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import warehouses.project.dto.ChangeDto;
+import warehouses.project.dto.ChangeFeedDto;
+import warehouses.project.dto.ProductDto;
+import warehouses.project.dto.StockSyncDto;
+import warehouses.project.dto.WarehouseDto;
+import warehouses.project.model.ChangeLogEntry;
+import warehouses.project.model.Product;
+import warehouses.project.model.Stock;
+import warehouses.project.model.Warehouse;
+import warehouses.project.service.ChangeLogService;
+import warehouses.project.service.ProductService;
+import warehouses.project.service.StockService;
+import warehouses.project.service.WarehouseService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/changes")
+@RequiredArgsConstructor
+@Tag(name = "Журнал изменений", description = "Синхронизация остатков, товаров и складов по версиям изменений")
+@SecurityRequirement(name = "bearerAuth")
+public class ChangeController {
+
+    private static final int MAX_LIMIT = 5000;
+
+    private final ChangeLogService changeLogService;
+    private final StockService stockService;
+    private final ProductService productService;
+    private final WarehouseService warehouseService;
+
+    @Operation(
+            summary = "Изменения после версии",
+            description = "Созданные, изменённые и удалённые остатки, товары и склады в порядке фиксации. " +
+                    "Для upsert передаётся текущее состояние записи. Первый запрос — с since=0: " +
+                    "ответ с resyncRequired даёт курсор, с которого продолжать после полной загрузки списков"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Порция изменений",
+                    content = @Content(schema = @Schema(implementation = ChangeFeedDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный limit"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping
+    public ResponseEntity<ChangeFeedDto> getChanges(
+            @Parameter(description = "Курсор из nextCursor прошлой порции (0 — первая синхронизация)") @RequestParam(defaultValue = "0") String since,
+            @Parameter(description = "Сколько изменений вернуть (до " + MAX_LIMIT + ")") @RequestParam(defaultValue = "500") int limit
+    ) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        ChangeLogService.Feed feed = changeLogService.read(since, limit);
+
+        Map<Long, Stock> stocks = stockService.findByIds(idsOf(feed, ChangeLogEntry.TYPE_STOCK)).stream()
+                .collect(Collectors.toMap(Stock::getId, Function.identity()));
+        Map<Long, Product> products = productService.findByIds(idsOf(feed, ChangeLogEntry.TYPE_PRODUCT));
+        Map<Long, Warehouse> warehouses = warehouseService.findByIds(idsOf(feed, ChangeLogEntry.TYPE_WAREHOUSE)).stream()
+                .collect(Collectors.toMap(Warehouse::getId, Function.identity()));
+
+        List<ChangeDto> changes = feed.entries().stream()
+                .map(entry -> {
+                    ChangeDto.ChangeDtoBuilder change = ChangeDto.builder()
+                            .version(entry.getVersion())
+                            .entityType(entry.getEntityType())
+                            .entityId(entry.getEntityId())
+                            .operation(entry.getOperation())
+                            .changedAt(entry.getChangedAt());
+                    if (ChangeLogEntry.OPERATION_UPSERT.equals(entry.getOperation())) {
+                        switch (entry.getEntityType()) {
+                            case ChangeLogEntry.TYPE_STOCK -> change.stock(mapStock(stocks.get(entry.getEntityId())));
+                            case ChangeLogEntry.TYPE_PRODUCT -> change.product(mapProduct(products.get(entry.getEntityId())));
+                            case ChangeLogEntry.TYPE_WAREHOUSE -> change.warehouse(mapWarehouse(warehouses.get(entry.getEntityId())));
+                            default -> {
+                            }
+                        }
+                    }
+                    return change.build();
+                })
+                .collect(Collectors.toList());
+
+        return ResponseEntity.ok(ChangeFeedDto.builder()
+                .changes(changes)
+                .nextCursor(feed.cursor())
+                .nextVersion(feed.cursor().contains(".") ? null : Long.valueOf(feed.cursor()))
+                .hasMore(feed.hasMore())
+                .resyncRequired(feed.resyncRequired())
+                .build());
+    }
+
+    private static Set<Long> idsOf(ChangeLogService.Feed feed, String entityType) {
+        return feed.entries().stream()
+                .filter(entry -> entityType.equals(entry.getEntityType())
+                        && ChangeLogEntry.OPERATION_UPSERT.equals(entry.getOperation()))
+                .map(ChangeLogEntry::getEntityId)
+                .collect(Collectors.toSet());
+    }
+
+    private StockSyncDto mapStock(Stock stock) {
+        if (stock == null) {
+            return null;
+        }
+        return StockSyncDto.builder()
+                .id(stock.getId())
+                .productId(stock.getProduct().getId())
+                .warehouseId(stock.getWarehouse().getId())
+                .count(stock.getCount())
+                .minCount(stock.getMinCount())
+                .lastUpdate(stock.getLastUpdate())
+                .build();
+    }
+
+    private ProductDto mapProduct(Product product) {
+        if (product == null) {
+            return null;
+        }
+        return ProductDto.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .unit(product.getUnit())
+                .description(product.getDescription())
+                .build();
+    }
+
+    private WarehouseDto mapWarehouse(Warehouse warehouse) {
+        if (warehouse == null) {
+            return null;
+        }
+        return WarehouseDto.builder()
+                .id(warehouse.getId())
+                .name(warehouse.getName())
+                .location(warehouse.getLocation())
+                .build();
+    }
+}
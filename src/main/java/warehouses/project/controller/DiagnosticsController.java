@@ -0,0 +1,108 @@
+package warehouses.project.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import warehouses.project.config.ReplicaLagMonitor;
+import warehouses.project.dto.PinningReportDto;
+import warehouses.project.dto.ReplicaStatusDto;
+import warehouses.project.service.PinningMonitorService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/diagnostics")
+@RequiredArgsConstructor
+@Tag(name = "Диагностика (ADMIN)", description = "Диагностика виртуальных потоков и реплик чтения. Доступно только администраторам.")
+@SecurityRequirement(name = "bearerAuth")
+public class DiagnosticsController {
+
+    private final PinningMonitorService pinningMonitorService;
+    private final ObjectProvider<ReplicaLagMonitor> replicaLagMonitor;
+
+    @Operation(
+            summary = "Удержания потоков-носителей (ADMIN)",
+            description = "Места, где виртуальный поток блокировался, не отпуская поток-носитель (synchronized, native-вызовы). " +
+                    "События собираются только при spring.threads.virtual.enabled=true на Java 21+"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Сводка удержаний",
+                    content = @Content(schema = @Schema(implementation = PinningReportDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/pinning")
+    public ResponseEntity<PinningReportDto> getPinning() {
+        return ResponseEntity.ok(pinningMonitorService.getReport());
+    }
+
+    @Operation(
+            summary = "Сбросить сводку удержаний (ADMIN)",
+            description = "Обнуляет накопленные события, например перед замером"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "204",
+                    description = "Сводка сброшена"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/pinning")
+    public ResponseEntity<Void> resetPinning() {
+        pinningMonitorService.reset();
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+            summary = "Состояние реплик чтения (ADMIN)",
+            description = "Отставание каждой реплики и получает ли она чтения. Пустой список — чтение с реплик выключено"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Состояние реплик"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/replicas")
+    public ResponseEntity<List<ReplicaStatusDto>> getReplicas() {
+        ReplicaLagMonitor monitor = replicaLagMonitor.getIfAvailable();
+        if (monitor == null) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok(monitor.getStatuses().stream()
+                .map(this::mapToDto)
+                .toList());
+    }
+
+    private ReplicaStatusDto mapToDto(ReplicaLagMonitor.ReplicaStatus status) {
+        return ReplicaStatusDto.builder()
+                .name(status.name())
+                .lagMillis(status.lagMillis())
+                .available(status.available())
+                .build();
+    }
+}
@@ -18,9 +18,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import warehouses.project.dto.ProductDto;
+import warehouses.project.dto.ProductSuggestionDto;
 import warehouses.project.model.Product;
 import warehouses.project.service.ProductService;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/products")
 @RequiredArgsConstructor
@@ -54,6 +57,26 @@ public class ProductController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(
+            summary = "Подсказки по названию товара",
+            description = "Возвращает до 10 товаров, название которых начинается с префикса; первыми — самые часто движущиеся"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Список подсказок",
+                    content = @Content(schema = @Schema(implementation = ProductSuggestionDto.class))
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestionDto>> suggest(
+            @Parameter(description = "Начало названия товара", required = true) @RequestParam String prefix,
+            @Parameter(description = "Количество подсказок (не больше 10)") @RequestParam(defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(productService.suggest(prefix, limit));
+    }
+
     @Operation(
             summary = "Получить товар по ID",
             description = "Получает информацию о товаре по его идентификатору"
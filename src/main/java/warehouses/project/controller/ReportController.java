@@ -0,0 +1,119 @@
+package warehouses.project.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import warehouses.project.dto.MovementReportRowDto;
+import warehouses.project.dto.MovementRollupRebuildResultDto;
+import warehouses.project.model.Warehouse;
+import warehouses.project.repository.MovementRollupView;
+import warehouses.project.service.MovementRollupService;
+import warehouses.project.service.WarehouseService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+@Tag(name = "Отчёты", description = "Отчёты по дневным сводкам движений")
+@SecurityRequirement(name = "bearerAuth")
+public class ReportController {
+
+    private final MovementRollupService movementRollupService;
+    private final WarehouseService warehouseService;
+
+    @Operation(
+            summary = "Приход и расход по дням и складам",
+            description = "Сколько единиц пришло на склад и ушло со склада за каждый день периода, по типам операций. " +
+                    "Считается по дневным сводкам, без загрузки операций"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Строки отчёта по возрастанию дня"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный или слишком длинный период"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping("/movements")
+    public ResponseEntity<List<MovementReportRowDto>> getMovements(
+            @Parameter(description = "Дата начала периода (формат: yyyy-MM-dd)", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @Parameter(description = "Дата окончания периода (формат: yyyy-MM-dd)", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @Parameter(description = "Фильтр по ID склада") @RequestParam(required = false) Long warehouseId,
+            @Parameter(description = "Фильтр по ID товара") @RequestParam(required = false) Long productId,
+            @Parameter(description = "Фильтр по типу операции (incoming, write-off, transfer)")
+            @RequestParam(required = false) String transactionType
+    ) {
+        List<MovementRollupView> rows = movementRollupService.summarize(fromDate, toDate, warehouseId, productId, transactionType);
+        Map<Long, String> warehouseNames = warehouseService.findByIds(
+                        rows.stream().map(MovementRollupView::getWarehouseId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Warehouse::getId, Warehouse::getName));
+        return ResponseEntity.ok(rows.stream()
+                .map(row -> MovementReportRowDto.builder()
+                        .date(row.getDate())
+                        .warehouseId(row.getWarehouseId())
+                        .warehouseName(warehouseNames.get(row.getWarehouseId()))
+                        .transactionType(row.getTransactionType())
+                        .quantityIn(row.getQuantityIn())
+                        .quantityOut(row.getQuantityOut())
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    @Operation(
+            summary = "Пересобрать сводки движений (ADMIN)",
+            description = "Пересобирает дневные сводки за период по журналу движений. " +
+                    "Текущий день лучше пересобирать при остановленных операциях"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Сводки пересобраны",
+                    content = @Content(schema = @Schema(implementation = MovementRollupRebuildResultDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный или слишком длинный период"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/movements/rebuild")
+    public ResponseEntity<MovementRollupRebuildResultDto> rebuildMovements(
+            @Parameter(description = "Дата начала периода (формат: yyyy-MM-dd)", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @Parameter(description = "Дата окончания периода (формат: yyyy-MM-dd)", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate
+    ) {
+        MovementRollupService.RebuildResult result = movementRollupService.rebuild(fromDate, toDate);
+        return ResponseEntity.ok(MovementRollupRebuildResultDto.builder()
+                .from(result.from())
+                .to(result.to())
+                .days(result.days())
+                .rows(result.rows())
+                .elapsedMillis(result.elapsedMillis())
+                .build());
+    }
+}
@@ -13,21 +13,34 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import warehouses.project.dto.*;
 import warehouses.project.model.*;
+import warehouses.project.service.IdempotencyService;
+import warehouses.project.service.PartitionedShipmentExecutor;
+import warehouses.project.service.ShardRouter;
+import warehouses.project.service.ShardTransferService;
+import warehouses.project.service.ShipmentBatchService;
+import warehouses.project.service.ShipmentImportJob;
+import warehouses.project.service.ShipmentImportService;
 import warehouses.project.service.ShipmentService;
 import warehouses.project.service.UserService;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
@@ -38,7 +51,16 @@ import java.util.stream.Collectors;
 public class ShipmentController {
 
     private final ShipmentService shipmentService;
+    private final PartitionedShipmentExecutor shipmentExecutor;
     private final UserService userService;
+    private final ShipmentImportService shipmentImportService;
+    private final ShipmentBatchService shipmentBatchService;
+    private final IdempotencyService idempotencyService;
+    private final ShardRouter shardRouter;
+    private final ShardTransferService shardTransferService;
+
+    private static final String IDEMPOTENCY_KEY_DESCRIPTION =
+            "Ключ идемпотентности: повтор запроса с тем же ключом возвращает сохранённый ответ без повторного проведения";
 
     @Operation(
             summary = "Получить все операции",
@@ -77,6 +99,48 @@ public class ShipmentController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(
+            summary = "Получить операции порциями по курсору",
+            description = "Keyset-пагинация операций (новые первыми) с теми же фильтрами. " +
+                    "Без подсчёта общего количества: для следующей порции передайте nextCursor в параметре after"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Порция операций",
+                    content = @Content(schema = @Schema(implementation = CursorPage.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный курсор"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ShipmentDto>> scrollShipments(
+            @Parameter(description = "Фильтр по типу операции (incoming, write-off, outgoing, transfer)")
+            @RequestParam(required = false) String transactionType,
+            @Parameter(description = "Фильтр по ID склада")
+            @RequestParam(required = false) Long warehouseId,
+            @Parameter(description = "Дата начала периода (формат: yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @Parameter(description = "Дата окончания периода (формат: yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @Parameter(description = "Курсор из nextCursor предыдущей порции (пусто — первая порция)")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Количество элементов в порции")
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        Pageable pageable = PageRequest.of(0, size, Sort.by("id").descending());
+
+        LocalDateTime from = fromDate != null ? fromDate.atStartOfDay() : null;
+        LocalDateTime to = toDate != null ? toDate.atTime(23, 59, 59) : null;
+
+        Slice<Shipment> shipments = shipmentService.scroll(
+                transactionType, warehouseId, from, to, CursorPage.decodeCursor(after), pageable);
+        return ResponseEntity.ok(CursorPage.from(shipments.map(this::mapToDto), ShipmentDto::getId));
+    }
+
     @Operation(
             summary = "Получить операцию по ID",
             description = "Получает информацию об операции по её идентификатору"
@@ -114,18 +178,29 @@ public class ShipmentController {
             @ApiResponse(
                     responseCode = "400",
                     description = "Ошибка валидации"
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Ключ идемпотентности уже использован с другим запросом"
             )
     })
     @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
     @PostMapping("/incoming")
-    public ResponseEntity<ShipmentDto> createIncoming(
+    public CompletableFuture<ResponseEntity<ShipmentDto>> createIncoming(
             @Valid @RequestBody CreateShipmentRequest request,
+            @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             Authentication authentication
     ) {
         User user = userService.getByUsername(authentication.getName());
         List<ShipmentItem> items = mapToShipmentItems(request.getItems());
-        Shipment created = shipmentService.createIncoming(request.getWarehouseId(), items, user.getId());
-        return ResponseEntity.ok(mapToDto(created));
+        return shardRouter.onWarehouse(request.getWarehouseId(), () ->
+                idempotencyService.execute(idempotencyKey, user.getId(), "incoming", request, ShipmentDto.class, recorder -> {
+                    if (shipmentExecutor.isEnabled()) {
+                        return shipmentExecutor.submitIncoming(request.getWarehouseId(), items, user.getId(), recorder.mapping(this::mapToDto));
+                    }
+                    return CompletableFuture.completedFuture(recorder.inTransaction(() ->
+                            mapToDto(shipmentService.createIncoming(request.getWarehouseId(), items, user.getId()))));
+                })).thenApply(ResponseEntity::ok);
     }
 
     @Operation(
@@ -141,16 +216,29 @@ public class ShipmentController {
             @ApiResponse(
                     responseCode = "400",
                     description = "Ошибка валидации или недостаточно товара на складе"
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Ключ идемпотентности уже использован с другим запросом"
             )
     })
     @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
     @PostMapping("/write-off")
-    public ResponseEntity<ShipmentDto> createWriteOff(
-            @Valid @RequestBody CreateShipmentRequest request
+    public CompletableFuture<ResponseEntity<ShipmentDto>> createWriteOff(
+            @Valid @RequestBody CreateShipmentRequest request,
+            @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
     ) {
+        Long userId = idempotencyKey != null ? userService.getByUsername(authentication.getName()).getId() : null;
         List<ShipmentItem> items = mapToShipmentItems(request.getItems());
-        Shipment created = shipmentService.createWriteOff(request.getWarehouseId(), items);
-        return ResponseEntity.ok(mapToDto(created));
+        return shardRouter.onWarehouse(request.getWarehouseId(), () ->
+                idempotencyService.execute(idempotencyKey, userId, "write-off", request, ShipmentDto.class, recorder -> {
+                    if (shipmentExecutor.isEnabled()) {
+                        return shipmentExecutor.submitWriteOff(request.getWarehouseId(), items, recorder.mapping(this::mapToDto));
+                    }
+                    return CompletableFuture.completedFuture(recorder.inTransaction(() ->
+                            mapToDto(shipmentService.createWriteOff(request.getWarehouseId(), items))));
+                })).thenApply(ResponseEntity::ok);
     }
 
     @Operation(
@@ -166,20 +254,191 @@ public class ShipmentController {
             @ApiResponse(
                     responseCode = "400",
                     description = "Ошибка валидации или недостаточно товара на складе"
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Ключ идемпотентности уже использован с другим запросом"
             )
     })
     @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
     @PostMapping("/transfer")
-    public ResponseEntity<ShipmentDto> createTransfer(
-            @Valid @RequestBody CreateTransferRequest request
+    public CompletableFuture<ResponseEntity<ShipmentDto>> createTransfer(
+            @Valid @RequestBody CreateTransferRequest request,
+            @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
     ) {
+        Long userId = idempotencyKey != null ? userService.getByUsername(authentication.getName()).getId() : null;
         List<ShipmentItem> items = mapToShipmentItems(request.getItems());
-        Shipment created = shipmentService.createTransfer(
-                request.getFromWarehouseId(),
-                request.getToWarehouseId(),
-                items
-        );
-        return ResponseEntity.ok(mapToDto(created));
+        // перемещение между шардами — несколько транзакций, поэтому его ответ сохраняется после проведения
+        boolean crossShard = shardRouter.isCrossShard(request.getFromWarehouseId(), request.getToWarehouseId());
+        return shardRouter.onWarehouse(request.getFromWarehouseId(), () ->
+                idempotencyService.execute(idempotencyKey, userId, "transfer", request, ShipmentDto.class, recorder -> {
+                    if (shipmentExecutor.isEnabled()) {
+                        return shipmentExecutor.submitTransfer(request.getFromWarehouseId(), request.getToWarehouseId(), items,
+                                crossShard ? this::mapToDto : recorder.mapping(this::mapToDto));
+                    }
+                    if (crossShard) {
+                        return CompletableFuture.completedFuture(mapToDto(shardTransferService.transfer(
+                                request.getFromWarehouseId(), request.getToWarehouseId(), items)));
+                    }
+                    return CompletableFuture.completedFuture(recorder.inTransaction(() -> mapToDto(shipmentService.createTransfer(
+                            request.getFromWarehouseId(),
+                            request.getToWarehouseId(),
+                            items
+                    ))));
+                })).thenApply(ResponseEntity::ok);
+    }
+
+    @Operation(
+            summary = "Пакетное проведение операций",
+            description = "Проводит приходы, списания и перемещения одним запросом. Документы проводятся порциями " +
+                    "в общей транзакции; ошибка документа не отменяет остальные — результат возвращается по каждому документу"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Результаты по документам",
+                    content = @Content(schema = @Schema(implementation = BatchShipmentResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Ошибка валидации или слишком много документов"
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Ключ идемпотентности уже использован с другим запросом"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<BatchShipmentResponse>> createBatch(
+            @Valid @RequestBody BatchShipmentRequest request,
+            @Parameter(description = IDEMPOTENCY_KEY_DESCRIPTION) @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
+    ) {
+        User user = userService.getByUsername(authentication.getName());
+        List<ShipmentBatchService.Document> documents = request.getDocuments().stream()
+                .map(dto -> new ShipmentBatchService.Document(
+                        dto.getType(),
+                        dto.getWarehouseId(),
+                        dto.getToWarehouseId(),
+                        mapToShipmentItems(dto.getItems())))
+                .collect(Collectors.toList());
+        // порции пакета — отдельные транзакции, поэтому ответ сохраняется после выполнения всего пакета
+        return idempotencyService.execute(idempotencyKey, user.getId(), "batch", request, BatchShipmentResponse.class,
+                recorder -> CompletableFuture.completedFuture(
+                        mapBatchResponse(request, shipmentBatchService.execute(documents, user.getId()))))
+                .thenApply(ResponseEntity::ok);
+    }
+
+    private BatchShipmentResponse mapBatchResponse(BatchShipmentRequest request, List<ShipmentBatchService.Result> results) {
+        List<BatchShipmentResultDto> resultDtos = new ArrayList<>(results.size());
+        int succeeded = 0;
+        for (int i = 0; i < results.size(); i++) {
+            ShipmentBatchService.Result result = results.get(i);
+            if (result.isSuccess()) {
+                succeeded++;
+            }
+            resultDtos.add(BatchShipmentResultDto.builder()
+                    .index(i)
+                    .reference(request.getDocuments().get(i).getReference())
+                    .success(result.isSuccess())
+                    .shipmentId(result.shipmentId())
+                    .error(result.error())
+                    .build());
+        }
+        return BatchShipmentResponse.builder()
+                .succeeded(succeeded)
+                .failed(results.size() - succeeded)
+                .results(resultDtos)
+                .build();
+    }
+
+    @Operation(
+            summary = "Импорт приходов из файла",
+            description = "Принимает CSV (productId,count) или NDJSON ({\"productId\":1,\"count\":10}) и проводит его " +
+                    "в фоне порциями: каждая порция строк — отдельный приход. Возвращает задание для опроса прогресса"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "Импорт поставлен в очередь",
+                    content = @Content(schema = @Schema(implementation = ShipmentImportJobDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Неподдерживаемый формат"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Склад не найден"
+            ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Ключ идемпотентности уже использован для другого файла"
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Очередь импортов заполнена"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ShipmentImportJobDto> importIncoming(
+            @Parameter(description = "Файл CSV или NDJSON", required = true) @RequestParam("file") MultipartFile file,
+            @Parameter(description = "ID склада", required = true) @RequestParam Long warehouseId,
+            @Parameter(description = "Формат: csv или ndjson (по умолчанию — по расширению файла)") @RequestParam(required = false) String format,
+            @Parameter(description = "Ключ идемпотентности: повтор запроса с тем же ключом возвращает уже созданное задание")
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
+    ) throws IOException {
+        User user = userService.getByUsername(authentication.getName());
+        ShipmentImportJob job = shipmentImportService.submit(file, warehouseId, format, user.getId(), idempotencyKey);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(mapImportJobToDto(job));
+    }
+
+    @Operation(
+            summary = "Прогресс импорта",
+            description = "Состояние фонового импорта: обработанные и проведённые строки, ошибки строк, созданные приходы"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Состояние импорта",
+                    content = @Content(schema = @Schema(implementation = ShipmentImportJobDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Задание не найдено"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<ShipmentImportJobDto> getImportJob(
+            @Parameter(description = "ID задания импорта", required = true) @PathVariable String jobId
+    ) {
+        return ResponseEntity.ok(mapImportJobToDto(shipmentImportService.getJob(jobId)));
+    }
+
+    private ShipmentImportJobDto mapImportJobToDto(ShipmentImportJob job) {
+        return ShipmentImportJobDto.builder()
+                .jobId(job.getId())
+                .status(job.getStatus().name())
+                .warehouseId(job.getWarehouseId())
+                .fileName(job.getFileName())
+                .format(job.getFormat())
+                .processedLines(job.getProcessedLines())
+                .importedLines(job.getImportedLines())
+                .failedLines(job.getFailedLines())
+                .shipmentIds(job.getShipmentIds())
+                .errors(job.getErrors().stream()
+                        .map(error -> new ImportLineErrorDto(error.line(), error.message()))
+                        .toList())
+                .failureMessage(job.getFailureMessage())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
     }
 
     private ShipmentDto mapToDto(Shipment shipment) {
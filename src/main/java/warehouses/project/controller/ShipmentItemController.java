@@ -12,10 +12,12 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import warehouses.project.dto.CursorPage;
 import warehouses.project.dto.ProductDto;
 import warehouses.project.dto.ShipmentItemDto;
 import warehouses.project.model.ShipmentItem;
@@ -53,6 +55,33 @@ public class ShipmentItemController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(
+            summary = "Получить элементы операций порциями по курсору",
+            description = "Keyset-пагинация элементов операций. " +
+                    "Без подсчёта общего количества: для следующей порции передайте nextCursor в параметре after"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Порция элементов операций",
+                    content = @Content(schema = @Schema(implementation = CursorPage.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный курсор"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ShipmentItemDto>> scrollShipmentItems(
+            @Parameter(description = "Курсор из nextCursor предыдущей порции (пусто — первая порция)") @RequestParam(required = false) String after,
+            @Parameter(description = "Количество элементов в порции") @RequestParam(defaultValue = "10") int size
+    ) {
+        Pageable pageable = PageRequest.of(0, size, Sort.by("id").descending());
+        Slice<ShipmentItem> items = shipmentItemService.scroll(CursorPage.decodeCursor(after), pageable);
+        return ResponseEntity.ok(CursorPage.from(items.map(this::mapToDto), ShipmentItemDto::getId));
+    }
+
     @Operation(
             summary = "Получить элементы операции по ID операции",
             description = "Получает список всех элементов конкретной операции с пагинацией"
@@ -0,0 +1,116 @@
+package warehouses.project.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import warehouses.project.dto.StockAlertDto;
+import warehouses.project.dto.StockThresholdRequest;
+import warehouses.project.model.Product;
+import warehouses.project.model.Stock;
+import warehouses.project.model.Warehouse;
+import warehouses.project.service.LowStockAlertService;
+import warehouses.project.service.ProductService;
+import warehouses.project.service.ShardRouter;
+import warehouses.project.service.StockService;
+import warehouses.project.service.WarehouseService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stock/alerts")
+@RequiredArgsConstructor
+@Tag(name = "Предупреждения об остатках", description = "Пороги остатков и предупреждения о заканчивающихся товарах")
+@SecurityRequirement(name = "bearerAuth")
+public class StockAlertController {
+
+    private final LowStockAlertService lowStockAlertService;
+    private final StockService stockService;
+    private final ProductService productService;
+    private final WarehouseService warehouseService;
+    private final ShardRouter shardRouter;
+
+    @Operation(
+            summary = "Текущие предупреждения",
+            description = "Товары, остаток которых на складе ниже порога (сначала с наименьшим остатком)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Список предупреждений"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping
+    public ResponseEntity<List<StockAlertDto>> getActiveAlerts() {
+        return ResponseEntity.ok(lowStockAlertService.getActive());
+    }
+
+    @Operation(
+            summary = "Поток предупреждений (SSE)",
+            description = "События low-stock (остаток опустился ниже порога) и restored (предупреждение снято)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Поток событий text/event-stream"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts() {
+        return lowStockAlertService.subscribe();
+    }
+
+    @Operation(
+            summary = "Задать порог остатка",
+            description = "Задаёт порог остатка товара на складе: ниже minCount появляется предупреждение, " +
+                    "с restoreCount оно снимается. Пустой minCount убирает порог"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Порог задан; в ответе — текущее состояние остатка",
+                    content = @Content(schema = @Schema(implementation = StockAlertDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректные пороги"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Товар или склад не найден"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @PutMapping("/thresholds")
+    public ResponseEntity<StockAlertDto> setThreshold(@Valid @RequestBody StockThresholdRequest request) {
+        Product product = productService.getById(request.getProductId());
+        Warehouse warehouse = warehouseService.getById(request.getWarehouseId());
+        Stock stock = shardRouter.onWarehouse(warehouse.getId(),
+                () -> stockService.setThreshold(product, warehouse, request.getMinCount(), request.getRestoreCount()));
+        return ResponseEntity.ok(StockAlertDto.builder()
+                .stockId(stock.getId())
+                .productId(product.getId())
+                .productName(product.getName())
+                .warehouseId(warehouse.getId())
+                .warehouseName(warehouse.getName())
+                .count(stock.getCount())
+                .minCount(stock.getMinCount())
+                .restoreCount(stock.getRestoreCount())
+                .low(stock.isLowStock())
+                .at(LocalDateTime.now())
+                .build());
+    }
+}
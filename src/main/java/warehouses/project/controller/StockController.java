@@ -12,15 +12,29 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import warehouses.project.dto.CursorPage;
 import warehouses.project.dto.ProductDto;
+import warehouses.project.dto.StockAsOfDto;
 import warehouses.project.dto.StockDto;
 import warehouses.project.dto.WarehouseDto;
+import warehouses.project.model.Product;
 import warehouses.project.model.Stock;
+import warehouses.project.repository.ProductQuantityView;
+import warehouses.project.service.ProductService;
+import warehouses.project.service.StockLedgerService;
 import warehouses.project.service.StockService;
+import warehouses.project.service.StockStreamService;
+
+import java.time.LocalDate;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/stock")
@@ -29,7 +43,12 @@ import warehouses.project.service.StockService;
 @SecurityRequirement(name = "bearerAuth")
 public class StockController {
 
+    private static final int MAX_AS_OF_SIZE = 10_000;
+
     private final StockService stockService;
+    private final StockLedgerService stockLedgerService;
+    private final ProductService productService;
+    private final StockStreamService stockStreamService;
 
     @Operation(
             summary = "Получить все остатки",
@@ -56,6 +75,105 @@ public class StockController {
         return ResponseEntity.ok(response);
     }
 
+    @Operation(
+            summary = "Получить остатки порциями по курсору",
+            description = "Keyset-пагинация остатков с теми же фильтрами. " +
+                    "Без подсчёта общего количества: для следующей порции передайте nextCursor в параметре after"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Порция остатков",
+                    content = @Content(schema = @Schema(implementation = CursorPage.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректный курсор"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<StockDto>> scrollStock(
+            @Parameter(description = "Поиск по названию товара") @RequestParam(required = false) String productName,
+            @Parameter(description = "Фильтр по ID склада") @RequestParam(required = false) Long warehouseId,
+            @Parameter(description = "Курсор из nextCursor предыдущей порции (пусто — первая порция)") @RequestParam(required = false) String after,
+            @Parameter(description = "Количество элементов в порции") @RequestParam(defaultValue = "10") int size
+    ) {
+        Pageable pageable = PageRequest.of(0, size, Sort.by("id").descending());
+        Slice<Stock> stocks = stockService.scroll(productName, warehouseId, CursorPage.decodeCursor(after), pageable);
+        return ResponseEntity.ok(CursorPage.from(stocks.map(this::mapToDto), StockDto::getId));
+    }
+
+    @Operation(
+            summary = "Получить остатки склада на дату",
+            description = "Остатки на конец указанного дня, посчитанные по журналу движений от ближайшего снимка. " +
+                    "Порции по возрастанию ID товара; товары с нулевым остатком не возвращаются. " +
+                    "Для следующей порции передайте nextCursor в параметре after"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Порция остатков на дату",
+                    content = @Content(schema = @Schema(implementation = CursorPage.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Дата раньше начала журнала движений или некорректный курсор"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Склад не найден"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping("/as-of")
+    public ResponseEntity<CursorPage<StockAsOfDto>> getStockAsOf(
+            @Parameter(description = "Дата (остатки на конец дня)", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @Parameter(description = "ID склада", required = true) @RequestParam Long warehouseId,
+            @Parameter(description = "Курсор из nextCursor предыдущей порции (пусто — первая порция)") @RequestParam(required = false) String after,
+            @Parameter(description = "Количество товаров в порции (до " + MAX_AS_OF_SIZE + ")") @RequestParam(defaultValue = "1000") int size
+    ) {
+        if (size < 1 || size > MAX_AS_OF_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_AS_OF_SIZE);
+        }
+        Slice<ProductQuantityView> balance = stockLedgerService.getBalanceAsOf(
+                date, warehouseId, CursorPage.decodeCursor(after), size);
+        Map<Long, Product> products = productService.findByIds(
+                balance.getContent().stream().map(ProductQuantityView::getProductId).toList());
+        Slice<StockAsOfDto> response = balance.map(row -> {
+            Product product = products.get(row.getProductId());
+            return StockAsOfDto.builder()
+                    .productId(row.getProductId())
+                    .productName(product != null ? product.getName() : null)
+                    .unit(product != null ? product.getUnit() : null)
+                    .count(row.getQuantity())
+                    .build();
+        });
+        return ResponseEntity.ok(CursorPage.from(response, StockAsOfDto::getProductId));
+    }
+
+    @Operation(
+            summary = "Поток изменений остатков (SSE)",
+            description = "После фиксации каждой операции присылает событие stock с изменениями остатков " +
+                    "(товар, склад, delta), подходящими под фильтры. Клиент загружает остатки один раз и дальше применяет " +
+                    "изменения; медленный клиент отключается — после переподключения остатки нужно перечитать"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Поток событий text/event-stream"
+            )
+    })
+    @PreAuthorize("hasAnyRole('STOREKEEPER', 'ADMIN')")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStock(
+            @Parameter(description = "Только изменения этого склада") @RequestParam(required = false) Long warehouseId,
+            @Parameter(description = "Только изменения этого товара") @RequestParam(required = false) Long productId
+    ) {
+        return stockStreamService.subscribe(warehouseId, productId);
+    }
+
     @Operation(
             summary = "Получить остаток по ID",
             description = "Получает информацию об остатке по его идентификатору"
@@ -0,0 +1,122 @@
+package warehouses.project.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import warehouses.project.dto.StockRebuildResultDto;
+import warehouses.project.dto.StockSnapshotDto;
+import warehouses.project.model.StockSnapshot;
+import warehouses.project.service.StockLedgerService;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/stock/ledger")
+@RequiredArgsConstructor
+@Tag(name = "Журнал движений (ADMIN)", description = "Снимки журнала движений и пересчёт остатков по журналу. Доступно только администраторам.")
+@SecurityRequirement(name = "bearerAuth")
+public class StockLedgerController {
+
+    private final StockLedgerService stockLedgerService;
+
+    @Operation(
+            summary = "Список снимков (ADMIN)",
+            description = "Последние снимки остатков, от новых к старым"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Список снимков"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/snapshots")
+    public ResponseEntity<List<StockSnapshotDto>> getSnapshots(
+            @Parameter(description = "Сколько снимков вернуть") @RequestParam(defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(stockLedgerService.getSnapshots(Math.max(1, limit)).stream()
+                .map(this::mapSnapshotToDto)
+                .collect(Collectors.toList()));
+    }
+
+    @Operation(
+            summary = "Создать снимок (ADMIN)",
+            description = "Сворачивает движения после последнего снимка в новый снимок (обычно выполняется по расписанию)"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Новый снимок каждого шарда (или последний, если новых движений нет)"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/snapshots")
+    public ResponseEntity<List<StockSnapshotDto>> createSnapshot() {
+        return ResponseEntity.ok(stockLedgerService.createSnapshot().stream()
+                .map(this::mapSnapshotToDto)
+                .collect(Collectors.toList()));
+    }
+
+    @Operation(
+            summary = "Пересчитать остатки по журналу (ADMIN)",
+            description = "Пересчитывает таблицу остатков от последнего снимка по журналу движений, параллельно по частям. " +
+                    "Операции с остатками части ждут, пока она пересчитывается"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Остатки пересчитаны",
+                    content = @Content(schema = @Schema(implementation = StockRebuildResultDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав"
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Нет снимка или пересчёт не удался"
+            )
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/rebuild")
+    public ResponseEntity<StockRebuildResultDto> rebuild(
+            @Parameter(description = "Пересчитать только этот склад") @RequestParam(required = false) Long warehouseId
+    ) {
+        StockLedgerService.RebuildResult result = stockLedgerService.rebuild(warehouseId);
+        return ResponseEntity.ok(StockRebuildResultDto.builder()
+                .snapshots(result.snapshots().stream().map(this::mapSnapshotToDto).collect(Collectors.toList()))
+                .warehouseId(result.warehouseId())
+                .partitions(result.partitions())
+                .elapsedMillis(result.elapsedMillis())
+                .build());
+    }
+
+    private StockSnapshotDto mapSnapshotToDto(StockSnapshot snapshot) {
+        return StockSnapshotDto.builder()
+                .id(snapshot.getId())
+                .takenAt(snapshot.getTakenAt())
+                .movementBoundary(snapshot.getMovementBoundary())
+                .baseline(snapshot.getBaseline())
+                .pairs(snapshot.getPairs())
+                .buildMillis(snapshot.getBuildMillis())
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Документ пакета операций: приход, списание или перемещение")
+public class BatchShipmentDocumentDto {
+    @Schema(description = "Тип операции: incoming, write-off или transfer", example = "incoming", required = true)
+    @NotBlank(message = "Тип операции не может быть пустым")
+    private String type;
+
+    @Schema(description = "ID склада (для перемещения — склад-источник)", example = "1", required = true)
+    @NotNull(message = "ID склада не может быть пустым")
+    private Long warehouseId;
+
+    @Schema(description = "ID склада-назначения (только для перемещения)", example = "2")
+    private Long toWarehouseId;
+
+    @Schema(description = "Ссылка на документ во внешней системе; возвращается в результате", example = "ERP-2024-000123")
+    private String reference;
+
+    @Schema(description = "Список товаров", required = true)
+    @NotEmpty(message = "Список товаров не может быть пустым")
+    @Valid
+    private List<ShipmentItemDto> items;
+}
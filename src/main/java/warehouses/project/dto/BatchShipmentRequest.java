@@ -0,0 +1,23 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Пакет операций разных типов")
+public class BatchShipmentRequest {
+    @Schema(description = "Документы в порядке проведения", required = true)
+    @NotEmpty(message = "Список документов не может быть пустым")
+    @Valid
+    private List<BatchShipmentDocumentDto> documents;
+}
@@ -0,0 +1,25 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Результаты проведения пакета операций")
+public class BatchShipmentResponse {
+    @Schema(description = "Проведено документов", example = "98")
+    private Integer succeeded;
+
+    @Schema(description = "Не проведено документов", example = "2")
+    private Integer failed;
+
+    @Schema(description = "Результаты в порядке документов запроса")
+    private List<BatchShipmentResultDto> results;
+}
@@ -0,0 +1,29 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Результат проведения одного документа пакета")
+public class BatchShipmentResultDto {
+    @Schema(description = "Позиция документа в пакете (с 0)", example = "0")
+    private Integer index;
+
+    @Schema(description = "Ссылка на документ из запроса", example = "ERP-2024-000123")
+    private String reference;
+
+    @Schema(description = "Проведён ли документ", example = "true")
+    private Boolean success;
+
+    @Schema(description = "ID созданной операции", example = "1")
+    private Long shipmentId;
+
+    @Schema(description = "Причина ошибки", example = "Not enough stock for product: Ноутбук")
+    private String error;
+}
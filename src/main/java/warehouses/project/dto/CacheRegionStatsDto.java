@@ -0,0 +1,29 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Статистика одного региона кэша второго уровня")
+public class CacheRegionStatsDto {
+    @Schema(description = "Имя региона", example = "warehouses.project.model.Product")
+    private String region;
+
+    @Schema(description = "Попадания", example = "1500")
+    private Long hitCount;
+
+    @Schema(description = "Промахи", example = "20")
+    private Long missCount;
+
+    @Schema(description = "Записи в кэш", example = "20")
+    private Long putCount;
+
+    @Schema(description = "Элементов в памяти (-1, если провайдер не сообщает)", example = "20")
+    private Long elementCountInMemory;
+}
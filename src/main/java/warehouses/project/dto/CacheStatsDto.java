@@ -0,0 +1,37 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Статистика кэша второго уровня Hibernate")
+public class CacheStatsDto {
+    @Schema(description = "Собирается ли статистика (hibernate.generate_statistics)", example = "true")
+    private Boolean statisticsEnabled;
+
+    @Schema(description = "Попадания в кэш сущностей", example = "1500")
+    private Long hitCount;
+
+    @Schema(description = "Промахи кэша сущностей", example = "20")
+    private Long missCount;
+
+    @Schema(description = "Записи в кэш сущностей", example = "20")
+    private Long putCount;
+
+    @Schema(description = "Попадания в кэш natural id", example = "900")
+    private Long naturalIdHitCount;
+
+    @Schema(description = "Промахи кэша natural id", example = "5")
+    private Long naturalIdMissCount;
+
+    @Schema(description = "Статистика по регионам")
+    private List<CacheRegionStatsDto> regions;
+}
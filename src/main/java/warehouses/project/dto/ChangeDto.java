@@ -0,0 +1,43 @@
+package warehouses.project.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Изменение записи в журнале изменений")
+public class ChangeDto {
+    @Schema(description = "Версия изменения", example = "1042")
+    private Long version;
+
+    @Schema(description = "Тип записи (stock, product, warehouse)", example = "stock")
+    private String entityType;
+
+    @Schema(description = "ID записи (пусто для resync)", example = "7")
+    private Long entityId;
+
+    @Schema(description = "Операция: upsert — запись создана или изменена, delete — удалена, " +
+            "resync — изменены все записи типа, их нужно перечитать", example = "upsert")
+    private String operation;
+
+    @Schema(description = "Время изменения", example = "2024-01-15T10:30:00")
+    private LocalDateTime changedAt;
+
+    @Schema(description = "Текущее состояние остатка (для upsert остатка)")
+    private StockSyncDto stock;
+
+    @Schema(description = "Текущее состояние товара (для upsert товара)")
+    private ProductDto product;
+
+    @Schema(description = "Текущее состояние склада (для upsert склада)")
+    private WarehouseDto warehouse;
+}
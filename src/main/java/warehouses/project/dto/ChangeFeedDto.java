@@ -0,0 +1,33 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Порция журнала изменений")
+public class ChangeFeedDto {
+    @Schema(description = "Изменения по возрастанию версии (по одной на запись)")
+    private List<ChangeDto> changes;
+
+    @Schema(description = "Курсор для следующего запроса (параметр since): версия, при шардировании — версии шардов через точку",
+            example = "1042")
+    private String nextCursor;
+
+    @Schema(description = "Версия для следующего запроса, если курсор — одна версия (без шардирования)", example = "1042")
+    private Long nextVersion;
+
+    @Schema(description = "Есть ли ещё изменения после nextCursor", example = "false")
+    private boolean hasMore;
+
+    @Schema(description = "Нужна полная загрузка остатков, товаров и складов, после неё — продолжить с nextCursor " +
+            "(первая синхронизация или журнал уже очищен)", example = "false")
+    private boolean resyncRequired;
+}
@@ -0,0 +1,74 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Порция результатов с курсором на следующую (без подсчёта общего количества)")
+public class CursorPage<T> {
+    private static final String CURSOR_PREFIX = "id:";
+
+    @Schema(description = "Элементы порции")
+    private List<T> content;
+
+    @Schema(description = "Курсор следующей порции — передайте его в параметре after", example = "aWQ6MTA0Mg")
+    private String nextCursor;
+
+    @Schema(description = "Есть ли следующая порция", example = "true")
+    private boolean hasNext;
+
+    /**
+     * Собрать ответ из Slice, отсортированного по ID по убыванию.
+     *
+     * @param idOf ID элемента — из него строится курсор следующей порции
+     */
+    public static <T> CursorPage<T> from(Slice<T> slice, Function<T, Long> idOf) {
+        List<T> content = slice.getContent();
+        String next = slice.hasNext() && !content.isEmpty()
+                ? encodeCursor(idOf.apply(content.get(content.size() - 1)))
+                : null;
+        return CursorPage.<T>builder()
+                .content(content)
+                .nextCursor(next)
+                .hasNext(slice.hasNext())
+                .build();
+    }
+
+    public static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разобрать курсор из параметра after.
+     *
+     * @return ID последнего полученного элемента или null для первой порции
+     * @throws IllegalArgumentException если курсор повреждён
+     */
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+            }
+            return Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+        }
+    }
+}
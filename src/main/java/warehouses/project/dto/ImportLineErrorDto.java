@@ -0,0 +1,20 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Ошибка строки файла импорта")
+public class ImportLineErrorDto {
+    @Schema(description = "Номер строки (с 1)", example = "42")
+    private Long line;
+
+    @Schema(description = "Описание ошибки", example = "Товар не найден: 999")
+    private String message;
+}
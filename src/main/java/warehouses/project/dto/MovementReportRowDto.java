@@ -0,0 +1,34 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Приход и расход склада за день по типу операции")
+public class MovementReportRowDto {
+    @Schema(description = "День", example = "2024-01-15")
+    private LocalDate date;
+
+    @Schema(description = "ID склада", example = "1")
+    private Long warehouseId;
+
+    @Schema(description = "Название склада", example = "Центральный склад")
+    private String warehouseName;
+
+    @Schema(description = "Тип операции", example = "incoming")
+    private String transactionType;
+
+    @Schema(description = "Сколько единиц пришло на склад", example = "120")
+    private Long quantityIn;
+
+    @Schema(description = "Сколько единиц ушло со склада", example = "0")
+    private Long quantityOut;
+}
@@ -0,0 +1,31 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Результат пересборки дневных сводок движений")
+public class MovementRollupRebuildResultDto {
+    @Schema(description = "Начало периода", example = "2024-01-01")
+    private LocalDate from;
+
+    @Schema(description = "Конец периода", example = "2024-01-31")
+    private LocalDate to;
+
+    @Schema(description = "Пересобрано дней", example = "31")
+    private Integer days;
+
+    @Schema(description = "Строк сводки", example = "15000")
+    private Long rows;
+
+    @Schema(description = "Время пересборки, мс", example = "850")
+    private Long elapsedMillis;
+}
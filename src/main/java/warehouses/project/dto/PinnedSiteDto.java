@@ -0,0 +1,31 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Место в коде, где виртуальный поток удерживал поток-носитель")
+public class PinnedSiteDto {
+    @Schema(description = "Первый кадр стека вне JDK", example = "com.mysql.cj.protocol.a.NativeProtocol.readMessage:512")
+    private String frame;
+
+    @Schema(description = "Сколько раз", example = "42")
+    private Long count;
+
+    @Schema(description = "Суммарное время удержания, мс", example = "1260")
+    private Long totalMillis;
+
+    @Schema(description = "Наибольшее время удержания, мс", example = "95")
+    private Long maxMillis;
+
+    @Schema(description = "Верх стека первого такого события")
+    private List<String> stackTrace;
+}
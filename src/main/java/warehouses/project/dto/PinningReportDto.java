@@ -0,0 +1,31 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Удержания потоков-носителей виртуальными потоками (события JFR jdk.VirtualThreadPinned)")
+public class PinningReportDto {
+    @Schema(description = "Запросы обрабатываются в виртуальных потоках", example = "true")
+    private Boolean virtualThreads;
+
+    @Schema(description = "События удержания собираются", example = "true")
+    private Boolean monitoring;
+
+    @Schema(description = "Удержания короче порога не учитываются, мс", example = "20")
+    private Long thresholdMillis;
+
+    @Schema(description = "Всего событий", example = "42")
+    private Long eventCount;
+
+    @Schema(description = "Места удержания, сначала с наибольшим суммарным временем")
+    private List<PinnedSiteDto> sites;
+}
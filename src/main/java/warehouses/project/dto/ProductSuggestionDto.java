@@ -0,0 +1,20 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Подсказка автодополнения названия товара")
+public class ProductSuggestionDto {
+    @Schema(description = "ID товара", example = "1")
+    private Long id;
+
+    @Schema(description = "Название товара", example = "Ноутбук Lenovo")
+    private String name;
+}
@@ -0,0 +1,23 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Состояние реплики чтения по последней проверке")
+public class ReplicaStatusDto {
+    @Schema(description = "Имя пула реплики", example = "replica-0")
+    private String name;
+
+    @Schema(description = "Отставание от основной БД, мс (пусто — реплика не ответила)", example = "120")
+    private Long lagMillis;
+
+    @Schema(description = "Реплика получает чтения", example = "true")
+    private Boolean available;
+}
@@ -0,0 +1,59 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Состояние фонового импорта приходов из файла")
+public class ShipmentImportJobDto {
+    @Schema(description = "ID задания импорта", example = "3f2b8c1e-6a0d-4c1e-9b7a-2d5f0e8c4a11")
+    private String jobId;
+
+    @Schema(description = "Статус: QUEUED, RUNNING, COMPLETED, FAILED", example = "RUNNING")
+    private String status;
+
+    @Schema(description = "ID склада", example = "1")
+    private Long warehouseId;
+
+    @Schema(description = "Имя файла", example = "receipt-2024-01-15.csv")
+    private String fileName;
+
+    @Schema(description = "Формат файла: csv или ndjson", example = "csv")
+    private String format;
+
+    @Schema(description = "Обработано строк", example = "12000")
+    private Long processedLines;
+
+    @Schema(description = "Проведено строк", example = "11990")
+    private Long importedLines;
+
+    @Schema(description = "Строк с ошибками", example = "10")
+    private Long failedLines;
+
+    @Schema(description = "ID созданных приходов (по одному на порцию строк)")
+    private List<Long> shipmentIds;
+
+    @Schema(description = "Ошибки строк (не больше shipments.import.max-errors)")
+    private List<ImportLineErrorDto> errors;
+
+    @Schema(description = "Причина прерывания импорта (для FAILED)")
+    private String failureMessage;
+
+    @Schema(description = "Дата создания задания", example = "2024-01-15T10:30:00")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Дата начала обработки", example = "2024-01-15T10:30:01")
+    private LocalDateTime startedAt;
+
+    @Schema(description = "Дата завершения", example = "2024-01-15T10:31:20")
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,46 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Предупреждение о заканчивающемся товаре на складе")
+public class StockAlertDto {
+    @Schema(description = "ID записи остатка", example = "1")
+    private Long stockId;
+
+    @Schema(description = "ID товара", example = "1")
+    private Long productId;
+
+    @Schema(description = "Название товара", example = "Ноутбук Dell XPS 15")
+    private String productName;
+
+    @Schema(description = "ID склада", example = "1")
+    private Long warehouseId;
+
+    @Schema(description = "Название склада", example = "Центральный склад")
+    private String warehouseName;
+
+    @Schema(description = "Остаток", example = "3")
+    private Integer count;
+
+    @Schema(description = "Порог остатка", example = "10")
+    private Integer minCount;
+
+    @Schema(description = "Остаток, с которого предупреждение снимается", example = "11")
+    private Integer restoreCount;
+
+    @Schema(description = "true — остаток ниже порога, false — предупреждение снято", example = "true")
+    private boolean low;
+
+    @Schema(description = "Когда предупреждение появилось или было снято", example = "2024-01-15T10:30:00")
+    private LocalDateTime at;
+}
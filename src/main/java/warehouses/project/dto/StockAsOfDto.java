@@ -0,0 +1,26 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Остаток товара на складе на дату")
+public class StockAsOfDto {
+    @Schema(description = "ID товара", example = "1")
+    private Long productId;
+
+    @Schema(description = "Название товара", example = "Ноутбук Dell XPS 15")
+    private String productName;
+
+    @Schema(description = "Единица измерения", example = "шт")
+    private String unit;
+
+    @Schema(description = "Количество товара на конец дня", example = "100")
+    private Long count;
+}
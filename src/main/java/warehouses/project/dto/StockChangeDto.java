@@ -0,0 +1,23 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Изменение остатка товара на складе")
+public class StockChangeDto {
+    @Schema(description = "ID товара", example = "1")
+    private Long productId;
+
+    @Schema(description = "ID склада", example = "1")
+    private Long warehouseId;
+
+    @Schema(description = "Изменение количества: положительное — приход, отрицательное — расход", example = "-5")
+    private Integer delta;
+}
@@ -0,0 +1,26 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Событие потока остатков: изменения одной операции")
+public class StockChangesDto {
+    @Schema(description = "ID операции (пусто — изменение не из операции)", example = "42")
+    private Long shipmentId;
+
+    @Schema(description = "Время изменения", example = "2024-01-15T10:30:00")
+    private LocalDateTime at;
+
+    @Schema(description = "Изменения остатков, подходящие под фильтр подписки")
+    private List<StockChangeDto> changes;
+}
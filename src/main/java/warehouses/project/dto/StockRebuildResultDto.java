@@ -0,0 +1,28 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Результат пересчёта остатков по журналу движений")
+public class StockRebuildResultDto {
+    @Schema(description = "Снимки, от которых шёл пересчёт (по одному на пересчитанный шард)")
+    private List<StockSnapshotDto> snapshots;
+
+    @Schema(description = "Пересчитанный склад (null — все склады)", example = "1")
+    private Long warehouseId;
+
+    @Schema(description = "Число частей, пересчитанных параллельно", example = "8")
+    private Integer partitions;
+
+    @Schema(description = "Время пересчёта, мс", example = "42000")
+    private Long elapsedMillis;
+}
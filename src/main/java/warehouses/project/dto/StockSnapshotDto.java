@@ -0,0 +1,34 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Снимок остатков журнала движений")
+public class StockSnapshotDto {
+    @Schema(description = "ID снимка", example = "12")
+    private Long id;
+
+    @Schema(description = "Когда установлена граница снимка", example = "2024-05-31T23:55:00")
+    private LocalDateTime takenAt;
+
+    @Schema(description = "Граница снимка: учтены движения журнала с ID меньше этого", example = "1048576")
+    private Long movementBoundary;
+
+    @Schema(description = "Первый снимок, скопированный из текущих остатков", example = "false")
+    private Boolean baseline;
+
+    @Schema(description = "Число пар (товар, склад) с ненулевым количеством", example = "200000")
+    private Integer pairs;
+
+    @Schema(description = "Время построения, мс", example = "5400")
+    private Long buildMillis;
+}
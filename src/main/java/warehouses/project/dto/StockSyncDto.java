@@ -0,0 +1,34 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Остаток товара на складе (компактная форма для синхронизации)")
+public class StockSyncDto {
+    @Schema(description = "ID записи остатка", example = "1")
+    private Long id;
+
+    @Schema(description = "ID товара", example = "1")
+    private Long productId;
+
+    @Schema(description = "ID склада", example = "1")
+    private Long warehouseId;
+
+    @Schema(description = "Количество товара", example = "100")
+    private Integer count;
+
+    @Schema(description = "Порог остатка", example = "10")
+    private Integer minCount;
+
+    @Schema(description = "Дата последнего обновления", example = "2024-01-15T10:30:00")
+    private LocalDateTime lastUpdate;
+}
@@ -0,0 +1,32 @@
+package warehouses.project.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Порог остатка товара на складе")
+public class StockThresholdRequest {
+    @Schema(description = "ID товара", example = "1", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotNull(message = "ID товара обязателен")
+    private Long productId;
+
+    @Schema(description = "ID склада", example = "1", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotNull(message = "ID склада обязателен")
+    private Long warehouseId;
+
+    @Schema(description = "Порог: ниже него появляется предупреждение (пусто — убрать порог)", example = "10")
+    @Min(value = 0, message = "Порог не может быть отрицательным")
+    private Integer minCount;
+
+    @Schema(description = "Остаток, с которого предупреждение снимается (пусто — порог плюс запас по умолчанию)", example = "15")
+    @Min(value = 0, message = "Порог не может быть отрицательным")
+    private Integer restoreCount;
+}
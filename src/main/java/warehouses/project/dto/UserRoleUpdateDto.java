@@ -5,6 +5,7 @@ import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import warehouses.project.config.SkipXssEscaping;
 
 @Data
 @NoArgsConstructor
@@ -13,5 +14,6 @@ import lombok.NoArgsConstructor;
 public class UserRoleUpdateDto {
     @NotBlank(message = "Роль обязательна")
     @Schema(description = "Новая роль", example = "ROLE_ADMIN")
+    @SkipXssEscaping
     private String role;
 }
\ No newline at end of file
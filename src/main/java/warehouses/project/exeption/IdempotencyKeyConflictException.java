@@ -0,0 +1,8 @@
+package warehouses.project.exeption;
+
+// Ключ идемпотентности повторно использован с другим запросом
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String key) {
+        super("Ключ идемпотентности '" + key + "' уже использован с другим запросом");
+    }
+}
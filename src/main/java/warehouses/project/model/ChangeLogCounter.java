@@ -0,0 +1,23 @@
+package warehouses.project.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Единственная строка с отметкой очистки журнала изменений (версии выдаёт AUTO_INCREMENT change_log).
+ */
+@Data
+@Entity
+@Table(name = "change_log_counter")
+public class ChangeLogCounter {
+    public static final long ID = 1L;
+
+    @Id
+    private Long id;
+
+    /**
+     * Записи с версиями до этой включительно удалены из журнала.
+     */
+    @Column(name = "purged_version", nullable = false)
+    private Long purgedVersion;
+}
@@ -0,0 +1,48 @@
+package warehouses.project.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись журнала изменений для синхронизации клиентов: запись сущности создана, изменена или удалена.
+ * Версия — AUTO_INCREMENT, выдаётся при записи строки перед фиксацией транзакции; порядок версий
+ * может расходиться с порядком фиксации, поэтому читатели останавливаются на пропусках (см. ChangeLogService).
+ */
+@Data
+@Entity
+@Table(name = "change_log", indexes = {
+        @Index(name = "idx_change_log_changed_at", columnList = "changed_at")
+})
+public class ChangeLogEntry {
+    public static final String TYPE_STOCK = "stock";
+    public static final String TYPE_PRODUCT = "product";
+    public static final String TYPE_WAREHOUSE = "warehouse";
+
+    public static final String OPERATION_UPSERT = "upsert";
+    public static final String OPERATION_DELETE = "delete";
+    /**
+     * Изменены все записи типа (например, пересчёт остатков): клиенту нужно перечитать их целиком.
+     */
+    public static final String OPERATION_RESYNC = "resync";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long version;
+
+    @Column(name = "entity_type", nullable = false, length = 20)
+    private String entityType;
+
+    /**
+     * ID записи (null для resync).
+     */
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    @Column(nullable = false, length = 10)
+    private String operation;
+
+    @Column(name = "changed_at", nullable = false, columnDefinition = "DATETIME(6)")
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,41 @@
+package warehouses.project.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Сводка движений за день: сколько единиц товара пришло на склад и ушло со склада операциями одного типа.
+ * Строки обновляются в той же транзакции, что и операция, и читаются только агрегатами.
+ */
+@Data
+@Entity
+@Table(name = "movement_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_movement_rollups_key", columnNames = {"date", "warehouse_id", "product_id", "transaction_type"})
+}, indexes = {
+        @Index(name = "idx_movement_rollups_warehouse_date", columnList = "warehouse_id, date")
+})
+public class MovementRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate date;
+
+    @Column(name = "warehouse_id", nullable = false)
+    private Long warehouseId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "transaction_type", nullable = false, length = 20)
+    private String transactionType;
+
+    @Column(name = "quantity_in", nullable = false)
+    private Long quantityIn;
+
+    @Column(name = "quantity_out", nullable = false)
+    private Long quantityOut;
+}
@@ -0,0 +1,43 @@
+package warehouses.project.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Состояние перемещения между складами разных шардов. Запись есть в обоих шардах под одним ID —
+ * ID операции перемещения в шарде склада-источника.
+ * <p>
+ * В шарде источника: RESERVED — товар списан и ждёт прихода на склад-назначение, CONFIRMED — приход проведён,
+ * CANCELLED — списание возвращено. В шарде назначения запись появляется один раз: CONFIRMED вместе с приходом
+ * или CANCELLED, если перемещение отменено раньше, — тогда приход по нему уже не проводится.
+ */
+@Data
+@Entity
+@Table(name = "shard_transfers", indexes = {
+        @Index(name = "idx_shard_transfers_status_created_at", columnList = "status, created_at")
+})
+public class ShardTransfer {
+    public static final String STATUS_RESERVED = "RESERVED";
+    public static final String STATUS_CONFIRMED = "CONFIRMED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    @Id
+    private Long id;
+
+    @Column(name = "from_warehouse_id", nullable = false)
+    private Long fromWarehouseId;
+
+    @Column(name = "to_warehouse_id", nullable = false)
+    private Long toWarehouseId;
+
+    @Column(nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
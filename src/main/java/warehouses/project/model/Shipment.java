@@ -8,7 +8,11 @@ import java.time.LocalDate;
 import java.util.List;
 @Data
 @Entity
-@Table(name = "shipments")
+@Table(name = "shipments", indexes = {
+        @Index(name = "idx_shipments_warehouse_date", columnList = "warehouse_id, date"),
+        @Index(name = "idx_shipments_type_date", columnList = "transaction_type, date"),
+        @Index(name = "idx_shipments_date", columnList = "date")
+})
 public class Shipment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,11 +20,11 @@ public class Shipment {
 
     private String transactionType;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "warehouse_id")
     private Warehouse warehouse;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
@@ -5,19 +5,28 @@ import lombok.Data;
 
 @Data
 @Entity
-@Table(name = "shipmentitems")
+@Table(name = "shipmentitems", indexes = {
+        @Index(name = "idx_shipmentitems_product", columnList = "product_id")
+})
 public class ShipmentItem {
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * Идентификатор выделяется блоками из таблицы-последовательности (pooled hi/lo),
+     * а не через AUTO_INCREMENT: иначе Hibernate не может объединять INSERT в JDBC batch.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "shipment_item_seq")
+    @SequenceGenerator(name = "shipment_item_seq", sequenceName = "shipmentitems_seq", allocationSize = ShipmentItem.ID_ALLOCATION_SIZE)
     private Long id;
 
     private Integer count;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "shipment_id")
     private Shipment shipment;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
@@ -6,7 +6,11 @@ import lombok.Data;
 import java.time.LocalDateTime;
 @Data
 @Entity
-@Table(name = "stock")
+@Table(name = "stock", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stock_product_warehouse", columnNames = {"product_id", "warehouse_id"})
+}, indexes = {
+        @Index(name = "idx_stock_low_stock", columnList = "low_stock")
+})
 public class Stock {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -17,11 +21,30 @@ public class Stock {
     @Column(name = "last_update")
     private LocalDateTime lastUpdate;
 
-    @ManyToOne
+    /**
+     * Порог остатка: ниже него товар на складе считается заканчивающимся (null — без порога).
+     */
+    @Column(name = "min_count")
+    private Integer minCount;
+
+    /**
+     * Остаток, с которого предупреждение снимается (не меньше minCount): разрыв между порогами
+     * не даёт предупреждению появляться и исчезать при колебаниях остатка около порога.
+     */
+    @Column(name = "restore_count")
+    private Integer restoreCount;
+
+    /**
+     * Остаток ниже порога и предупреждение ещё не снято.
+     */
+    @Column(name = "low_stock", nullable = false, columnDefinition = "BOOLEAN NOT NULL DEFAULT FALSE")
+    private boolean lowStock;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "warehouse_id")
     private Warehouse warehouse;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
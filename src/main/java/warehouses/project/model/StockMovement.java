@@ -0,0 +1,58 @@
+package warehouses.project.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Запись журнала движений остатков: одно изменение пары (товар, склад) в одной операции.
+ * Журнал только дополняется; строки пишутся в той же транзакции, что и изменение stock.
+ * Ссылки хранятся как ID, а не связи: журнал пишется пакетным JDBC и читается только агрегатами.
+ */
+@Data
+@Entity
+@Table(name = "stock_movements", indexes = {
+        @Index(name = "idx_stock_movements_created_at", columnList = "created_at"),
+        @Index(name = "idx_stock_movements_warehouse_created_at", columnList = "warehouse_id, created_at"),
+        @Index(name = "idx_stock_movements_shipment", columnList = "shipment_id"),
+        @Index(name = "idx_stock_movements_shipment_date", columnList = "shipment_date")
+})
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "warehouse_id", nullable = false)
+    private Long warehouseId;
+
+    /**
+     * Изменение количества: положительное — приход, отрицательное — расход.
+     */
+    @Column(nullable = false)
+    private Integer delta;
+
+    /**
+     * Операция, которая изменила остаток (null — изменение не из операции).
+     */
+    @Column(name = "shipment_id")
+    private Long shipmentId;
+
+    /**
+     * Тип и дата операции (null — изменение не из операции). Хранятся в журнале, потому что операции в шарде
+     * движения может не быть: приход перемещения из другого шарда, отменённое перемещение.
+     * По ним пересобираются дневные сводки.
+     */
+    @Column(name = "transaction_type", length = 20)
+    private String transactionType;
+
+    @Column(name = "shipment_date")
+    private LocalDate shipmentDate;
+
+    @Column(name = "created_at", nullable = false, columnDefinition = "DATETIME(6)")
+    private LocalDateTime createdAt;
+}
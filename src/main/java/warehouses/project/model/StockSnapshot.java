@@ -0,0 +1,52 @@
+package warehouses.project.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Снимок остатков: количества всех пар (товар, склад) с учётом движений журнала с ID меньше
+ * {@link #movementBoundary}. Строки снимка — {@link StockSnapshotItem}.
+ */
+@Data
+@Entity
+@Table(name = "stock_snapshots", indexes = {
+        @Index(name = "idx_stock_snapshots_taken_at", columnList = "taken_at")
+})
+public class StockSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Когда установлена граница снимка. Движения с created_at намного раньше в снимке, позже — нет
+     * (с точностью до {@code stock.ledger.max-clock-skew}); по этому времени выбирается снимок для остатков на дату.
+     */
+    @Column(name = "taken_at", nullable = false, columnDefinition = "DATETIME(6)")
+    private LocalDateTime takenAt;
+
+    /**
+     * Граница снимка: учтены движения с ID строго меньше. Все они на момент построения уже зафиксированы,
+     * поэтому поздно зафиксированное движение не может оказаться по другую сторону границы.
+     */
+    @Column(name = "movement_boundary", nullable = false)
+    private Long movementBoundary;
+
+    /**
+     * Снимок построен по текущей таблице stock (первый снимок), а не по предыдущему снимку и журналу.
+     */
+    @Column(nullable = false)
+    private Boolean baseline;
+
+    /**
+     * Число пар (товар, склад) в снимке.
+     */
+    private Integer pairs;
+
+    /**
+     * Сколько строилось, мс.
+     */
+    @Column(name = "build_millis")
+    private Long buildMillis;
+}
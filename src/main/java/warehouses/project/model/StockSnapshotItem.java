@@ -0,0 +1,32 @@
+package warehouses.project.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Количество товара на складе в снимке остатков.
+ */
+@Data
+@Entity
+@Table(name = "stock_snapshot_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stock_snapshot_items_pair", columnNames = {"snapshot_id", "product_id", "warehouse_id"})
+}, indexes = {
+        @Index(name = "idx_stock_snapshot_items_warehouse", columnList = "snapshot_id, warehouse_id, product_id")
+})
+public class StockSnapshotItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "snapshot_id", nullable = false)
+    private Long snapshotId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "warehouse_id", nullable = false)
+    private Long warehouseId;
+
+    @Column(nullable = false)
+    private Integer count;
+}
@@ -2,11 +2,14 @@ package warehouses.project.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 @Data
 @Entity
 @Table(name = "warehouses")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Warehouse {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -15,6 +18,11 @@ public class Warehouse {
     private String name;
     private String location;
 
+    /**
+     * Шард, в котором хранятся операции и остатки склада (null — шард 0). После создания склада не меняется.
+     */
+    private Integer shard;
+
     @OneToMany(mappedBy = "warehouse")
     private List<Shipment> shipments;
 
@@ -0,0 +1,44 @@
+package warehouses.project.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import warehouses.project.model.ChangeLogEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Журнал изменений. Порция после версии читается поиском по первичному ключу (AUTO_INCREMENT).
+ */
+@Repository
+public interface ChangeLogRepository extends JpaRepository<ChangeLogEntry, Long>, ChangeLogRepositoryCustom {
+
+    List<ChangeLogEntry> findByVersionGreaterThanOrderByVersionAsc(Long version, Pageable pageable);
+
+    /**
+     * Последняя версия среди записей старше момента (null — таких нет).
+     */
+    @Query("SELECT MAX(e.version) FROM ChangeLogEntry e WHERE e.changedAt < :before")
+    Long findMaxVersionBefore(LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM ChangeLogEntry e WHERE e.version <= :version")
+    int deleteUpTo(Long version);
+
+    /**
+     * Создать строку с отметкой очистки, если её нет.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO change_log_counter (id, purged_version) VALUES (1, 0)", nativeQuery = true)
+    int initCounter();
+
+    @Query(value = "SELECT purged_version FROM change_log_counter WHERE id = 1", nativeQuery = true)
+    Long findPurgedVersion();
+
+    @Modifying
+    @Query(value = "UPDATE change_log_counter SET purged_version = GREATEST(purged_version, :version) WHERE id = 1", nativeQuery = true)
+    int updatePurgedVersion(Long version);
+}
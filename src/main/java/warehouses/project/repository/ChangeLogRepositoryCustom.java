@@ -0,0 +1,20 @@
+package warehouses.project.repository;
+
+import warehouses.project.model.ChangeLogEntry;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ChangeLogRepositoryCustom {
+
+    /**
+     * Записать строки журнала одним JDBC batch (в текущей транзакции).
+     * Версии выдаёт AUTO_INCREMENT, время изменения — часы БД.
+     */
+    void appendAll(List<ChangeLogEntry> entries);
+
+    /**
+     * Текущее время по часам БД (по ним проставляется changed_at).
+     */
+    LocalDateTime currentTime();
+}
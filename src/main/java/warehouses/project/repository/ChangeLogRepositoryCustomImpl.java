@@ -0,0 +1,40 @@
+package warehouses.project.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import warehouses.project.model.ChangeLogEntry;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ChangeLogRepositoryCustomImpl implements ChangeLogRepositoryCustom {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void appendAll(List<ChangeLogEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO change_log (entity_type, entity_id, operation, changed_at) VALUES (?, ?, ?, NOW(6))",
+                entries,
+                entries.size(),
+                (ps, entry) -> {
+                    ps.setString(1, entry.getEntityType());
+                    if (entry.getEntityId() != null) {
+                        ps.setLong(2, entry.getEntityId());
+                    } else {
+                        ps.setNull(2, Types.BIGINT);
+                    }
+                    ps.setString(3, entry.getOperation());
+                });
+    }
+
+    @Override
+    public LocalDateTime currentTime() {
+        return jdbcTemplate.queryForObject("SELECT NOW(6)", LocalDateTime.class);
+    }
+}
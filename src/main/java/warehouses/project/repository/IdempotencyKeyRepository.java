@@ -0,0 +1,32 @@
+package warehouses.project.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import warehouses.project.model.IdempotencyKey;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Репозиторий сохранённых ответов по ключам идемпотентности.
+ */
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long> {
+
+    /**
+     * Сохранённый ответ по ключу пользователя (в том числе просроченный — срок проверяет вызывающий).
+     */
+    Optional<IdempotencyKey> findByUserIdAndKey(Long userId, String key);
+
+    /**
+     * Удалить просроченные ключи одним запросом.
+     *
+     * @return число удалённых строк
+     */
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.expiresAt < :threshold")
+    int deleteExpired(@Param("threshold") LocalDateTime threshold);
+}
@@ -0,0 +1,66 @@
+package warehouses.project.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import warehouses.project.model.MovementRollup;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Дневные сводки движений (день × склад × товар × тип операции).
+ */
+@Repository
+public interface MovementRollupRepository extends JpaRepository<MovementRollup, Long>, MovementRollupRepositoryCustom {
+
+    /**
+     * Приход и расход по дням и складам за период [from, to]; остальные фильтры необязательны.
+     */
+    @Query("SELECT r.date AS date, r.warehouseId AS warehouseId, r.transactionType AS transactionType, " +
+            "SUM(r.quantityIn) AS quantityIn, SUM(r.quantityOut) AS quantityOut " +
+            "FROM MovementRollup r " +
+            "WHERE r.date BETWEEN :from AND :to " +
+            "AND (:warehouseId IS NULL OR r.warehouseId = :warehouseId) " +
+            "AND (:productId IS NULL OR r.productId = :productId) " +
+            "AND (:transactionType IS NULL OR r.transactionType = :transactionType) " +
+            "GROUP BY r.date, r.warehouseId, r.transactionType " +
+            "ORDER BY r.date, r.warehouseId, r.transactionType")
+    List<MovementRollupView> summarize(LocalDate from, LocalDate to, Long warehouseId, Long productId, String transactionType);
+
+    @Modifying
+    @Query("DELETE FROM MovementRollup r WHERE r.date = :date")
+    int deleteByDate(LocalDate date);
+
+    /**
+     * Дописать тип и дату операции движениям дня, записанным до появления этих колонок в журнале
+     * (по операциям, которые есть в шарде). Повторный вызов ничего не меняет.
+     *
+     * @return число дополненных движений
+     */
+    @Modifying
+    @Query(value = "UPDATE stock_movements m JOIN shipments s ON s.id = m.shipment_id " +
+            "SET m.transaction_type = s.transaction_type, m.shipment_date = s.date " +
+            "WHERE s.date = :date AND m.transaction_type IS NULL",
+            nativeQuery = true)
+    int fillMovementShipmentDetails(LocalDate date);
+
+    /**
+     * Пересобрать сводки дня по журналу движений: движения операций этого дня, свёрнутые
+     * по (склад, товар, тип операции), положительные — в приход, отрицательные — в расход.
+     * Тип и дата операции берутся из самого журнала, а не из shipments: в шарде нет операций
+     * приходов перемещений из других шардов и удалённых при отмене перемещений, а их движения в сводках есть.
+     *
+     * @return число строк сводки
+     */
+    @Modifying
+    @Query(value = "INSERT INTO movement_rollups (date, warehouse_id, product_id, transaction_type, quantity_in, quantity_out) " +
+            "SELECT m.shipment_date, m.warehouse_id, m.product_id, m.transaction_type, " +
+            "SUM(GREATEST(m.delta, 0)), SUM(GREATEST(-m.delta, 0)) " +
+            "FROM stock_movements m " +
+            "WHERE m.shipment_date = :date AND m.transaction_type IS NOT NULL " +
+            "GROUP BY m.shipment_date, m.warehouse_id, m.product_id, m.transaction_type",
+            nativeQuery = true)
+    int rebuildDate(LocalDate date);
+}
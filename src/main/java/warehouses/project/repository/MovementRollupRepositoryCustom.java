@@ -0,0 +1,14 @@
+package warehouses.project.repository;
+
+import warehouses.project.model.MovementRollup;
+
+import java.util.List;
+
+public interface MovementRollupRepositoryCustom {
+
+    /**
+     * Прибавить приход и расход к сводкам одним JDBC batch (INSERT ... ON DUPLICATE KEY UPDATE),
+     * в текущей транзакции. Строки обновляются в порядке списка.
+     */
+    void addAll(List<MovementRollup> rollups);
+}
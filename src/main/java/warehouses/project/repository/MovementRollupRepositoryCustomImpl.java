@@ -0,0 +1,36 @@
+package warehouses.project.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import warehouses.project.model.MovementRollup;
+
+import java.sql.Date;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class MovementRollupRepositoryCustomImpl implements MovementRollupRepositoryCustom {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void addAll(List<MovementRollup> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO movement_rollups (date, warehouse_id, product_id, transaction_type, quantity_in, quantity_out) " +
+                        "VALUES (?, ?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE quantity_in = quantity_in + VALUES(quantity_in), " +
+                        "quantity_out = quantity_out + VALUES(quantity_out)",
+                rollups,
+                rollups.size(),
+                (ps, rollup) -> {
+                    ps.setDate(1, Date.valueOf(rollup.getDate()));
+                    ps.setLong(2, rollup.getWarehouseId());
+                    ps.setLong(3, rollup.getProductId());
+                    ps.setString(4, rollup.getTransactionType());
+                    ps.setLong(5, rollup.getQuantityIn());
+                    ps.setLong(6, rollup.getQuantityOut());
+                });
+    }
+}
@@ -0,0 +1,18 @@
+package warehouses.project.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Проекция: приход и расход склада за день по типу операции.
+ */
+public interface MovementRollupView {
+    LocalDate getDate();
+
+    Long getWarehouseId();
+
+    String getTransactionType();
+
+    Long getQuantityIn();
+
+    Long getQuantityOut();
+}
@@ -0,0 +1,10 @@
+package warehouses.project.repository;
+
+/**
+ * Проекция: число строк операций (движений) по товару.
+ */
+public interface ProductMovementView {
+    Long getProductId();
+
+    Long getMovements();
+}
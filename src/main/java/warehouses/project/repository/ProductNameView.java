@@ -0,0 +1,10 @@
+package warehouses.project.repository;
+
+/**
+ * Проекция товара: только ID и название (для построения индексов поиска в памяти).
+ */
+public interface ProductNameView {
+    Long getId();
+
+    String getName();
+}
@@ -0,0 +1,10 @@
+package warehouses.project.repository;
+
+/**
+ * Проекция: количество товара (на складе на момент времени).
+ */
+public interface ProductQuantityView {
+    Long getProductId();
+
+    Long getQuantity();
+}
@@ -6,12 +6,20 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import warehouses.project.model.Product;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Репозиторий для товаров
  */
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
     Page<Product> findByNameContainingIgnoreCase(String name, Pageable pageable);
+
+    Page<Product> findByIdIn(Collection<Long> ids, Pageable pageable);
+
+    List<Product> findByNameStartingWithIgnoreCase(String prefix, Pageable pageable);
+
+    // ID и названия всех товаров — для загрузки индексов поиска
+    List<ProductNameView> findAllProjectedBy();
 }
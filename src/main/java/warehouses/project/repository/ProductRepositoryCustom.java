@@ -0,0 +1,22 @@
+package warehouses.project.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+import warehouses.project.model.Product;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Загрузка товаров через API сессии Hibernate, чтобы использовать кэш второго уровня.
+ */
+public interface ProductRepositoryCustom {
+
+    /**
+     * Товары по набору ID: сначала из кэша второго уровня, недостающие — одним запросом IN (...).
+     * В отличие от {@code findAllById} (JPQL-запрос, кэш не читает).
+     *
+     * @return найденные товары; отсутствующих ID в результате нет
+     */
+    @Transactional(readOnly = true)
+    List<Product> loadAllById(Collection<Long> ids);
+}
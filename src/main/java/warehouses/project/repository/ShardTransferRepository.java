@@ -0,0 +1,45 @@
+package warehouses.project.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import warehouses.project.model.ShardTransfer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Состояния перемещений между шардами (в каждом шарде — свои).
+ */
+@Repository
+public interface ShardTransferRepository extends JpaRepository<ShardTransfer, Long> {
+
+    /**
+     * Создать запись, если её нет. Параллельная вставка той же записи ждёт фиксации первой
+     * и ничего не вставляет — так подтверждение и отмена перемещения не могут пройти обе.
+     *
+     * @return 1 — запись создана, 0 — уже была
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO shard_transfers (id, from_warehouse_id, to_warehouse_id, status, created_at, updated_at) " +
+            "VALUES (:id, :fromWarehouseId, :toWarehouseId, :status, :now, :now)",
+            nativeQuery = true)
+    int insertIfAbsent(Long id, Long fromWarehouseId, Long toWarehouseId, String status, LocalDateTime now);
+
+    @Query("SELECT t.status FROM ShardTransfer t WHERE t.id = :id")
+    Optional<String> findStatusById(Long id);
+
+    /**
+     * Сменить состояние, если запись в ожидаемом состоянии.
+     *
+     * @return 1 — состояние сменено, 0 — запись уже в другом состоянии
+     */
+    @Modifying
+    @Query("UPDATE ShardTransfer t SET t.status = :status, t.updatedAt = :now WHERE t.id = :id AND t.status = :expected")
+    int updateStatus(Long id, String expected, String status, LocalDateTime now);
+
+    List<ShardTransfer> findByStatusAndCreatedAtBefore(String status, LocalDateTime before, Pageable pageable);
+}
@@ -1,7 +1,10 @@
 package warehouses.project.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import org.springframework.stereotype.Repository;
 import warehouses.project.model.ShipmentItem;
@@ -13,6 +16,20 @@ import java.util.List;
  */
 @Repository
 public interface ShipmentItemRepository extends JpaRepository<ShipmentItem, Long> {
+    // Списки строк загружают товар тем же запросом (операция нужна только по ID)
+    @Override
+    @EntityGraph(attributePaths = {"product"})
+    Page<ShipmentItem> findAll(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"product"})
     Page<ShipmentItem> findByShipmentId(Long shipmentId, Pageable pageable);
 
+    // Частота движения товаров: число строк операций по каждому товару
+    @Query("SELECT i.product.id AS productId, COUNT(i) AS movements FROM ShipmentItem i GROUP BY i.product.id")
+    List<ProductMovementView> countMovementsByProduct();
+
+    // Keyset-пагинация: следующая порция после строки с ID afterId
+    @EntityGraph(attributePaths = {"product"})
+    Slice<ShipmentItem> findByIdLessThan(Long afterId, Pageable pageable);
+
 }
\ No newline at end of file
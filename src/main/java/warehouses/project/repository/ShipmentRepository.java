@@ -1,49 +1,29 @@
 package warehouses.project.repository;
 
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 import warehouses.project.model.Shipment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
-import java.time.LocalDate;
-import java.util.List;
+import java.util.Optional;
 
 /**
- * Репозиторий операций (приход, списание, отгрузка)
+ * Репозиторий операций (приход, списание, отгрузка).
+ * Фильтрация списков — через {@link ShipmentSpecifications}.
  */
 @Repository
-public interface ShipmentRepository extends JpaRepository<Shipment, Long> {
-    //  Фильтрация по складу
-    Page<Shipment> findByWarehouseId(Long warehouseId, Pageable pageable);
-
-    //  Фильтрация по диапазону дат
-    Page<Shipment> findByDateBetween(LocalDate startDate, LocalDate endDate, Pageable pageable);
-
-    //  Фильтрация по типу операции
-    Page<Shipment> findByTransactionType(String transactionType, Pageable pageable);
-
-    //  Фильтрация по типу операции и складу
-    Page<Shipment> findByTransactionTypeAndWarehouseId(String transactionType, Long warehouseId, Pageable pageable);
-
-    //  Фильтрация по типу операции и диапазону дат
-    Page<Shipment> findByTransactionTypeAndDateBetween(String transactionType, LocalDate from, LocalDate to, Pageable pageable);
-
-    //  Фильтрация по складу и диапазону дат
-    Page<Shipment> findByWarehouseIdAndDateBetween(Long warehouseId, LocalDate from, LocalDate to, Pageable pageable);
-
-    //  Комплексная фильтрация
-    @Query("SELECT s FROM Shipment s WHERE " +
-           "(:transactionType IS NULL OR s.transactionType = :transactionType) AND " +
-           "(:warehouseId IS NULL OR s.warehouse.id = :warehouseId) AND " +
-           "(:startDate IS NULL OR s.date >= :startDate) AND " +
-           "(:endDate IS NULL OR s.date <= :endDate)")
-    Page<Shipment> filterShipments(
-            String transactionType,
-            Long warehouseId,
-            LocalDate startDate,
-            LocalDate endDate,
-            Pageable pageable
-    );
+public interface ShipmentRepository extends JpaRepository<Shipment, Long>, JpaSpecificationExecutor<Shipment> {
+    //  Операция со складом, пользователем и строками (с товарами) — для карточки операции
+    @EntityGraph(attributePaths = {"warehouse", "user", "items", "items.product"})
+    Optional<Shipment> findWithDetailsById(Long id);
+
+    //  Фильтрация; склад и пользователь подгружаются тем же запросом,
+    //  строки и их товары — пакетно (hibernate.default_batch_fetch_size)
+    @Override
+    @EntityGraph(attributePaths = {"warehouse", "user"})
+    Page<Shipment> findAll(Specification<Shipment> spec, Pageable pageable);
 }
@@ -0,0 +1,64 @@
+package warehouses.project.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import warehouses.project.model.Shipment;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Условия фильтрации операций.
+ * <p>
+ * В запрос попадают только реально заданные условия — без конструкций
+ * {@code (:param IS NULL OR ...)}, которые не дают MySQL выбрать индекс
+ * (idx_shipments_warehouse_date, idx_shipments_type_date).
+ */
+public final class ShipmentSpecifications {
+
+    private ShipmentSpecifications() {
+    }
+
+    /**
+     * Комплексный фильтр; null-параметры пропускаются.
+     */
+    public static Specification<Shipment> filter(String transactionType, Long warehouseId, LocalDate startDate, LocalDate endDate) {
+        List<Specification<Shipment>> conditions = new ArrayList<>(4);
+        if (transactionType != null) {
+            conditions.add(hasTransactionType(transactionType));
+        }
+        if (warehouseId != null) {
+            conditions.add(hasWarehouse(warehouseId));
+        }
+        if (startDate != null) {
+            conditions.add(dateFrom(startDate));
+        }
+        if (endDate != null) {
+            conditions.add(dateTo(endDate));
+        }
+        return Specification.allOf(conditions);
+    }
+
+    public static Specification<Shipment> hasTransactionType(String transactionType) {
+        return (root, query, cb) -> cb.equal(root.get("transactionType"), transactionType);
+    }
+
+    public static Specification<Shipment> hasWarehouse(Long warehouseId) {
+        return (root, query, cb) -> cb.equal(root.get("warehouse").get("id"), warehouseId);
+    }
+
+    public static Specification<Shipment> dateFrom(LocalDate startDate) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("date"), startDate);
+    }
+
+    public static Specification<Shipment> dateTo(LocalDate endDate) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("date"), endDate);
+    }
+
+    /**
+     * Условие keyset-пагинации: операции старше (с меньшим ID), чем afterId.
+     */
+    public static Specification<Shipment> idLessThan(Long afterId) {
+        return (root, query, cb) -> cb.lessThan(root.get("id"), afterId);
+    }
+}
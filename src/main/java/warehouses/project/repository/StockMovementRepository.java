@@ -0,0 +1,64 @@
+package warehouses.project.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import warehouses.project.model.StockMovement;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Журнал движений остатков (только дополняется).
+ */
+@Repository
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long>, StockMovementRepositoryCustom {
+
+    /**
+     * Остатки склада от снимка: строки снимка плюс (sign = 1) или минус (sign = -1) движения с ID в [minId, maxId)
+     * и created_at в [from, to). Порция товаров с ID больше afterProductId по возрастанию ID; нулевые остатки не возвращаются.
+     */
+    @Query(value = "SELECT t.product_id AS productId, SUM(t.qty) AS quantity FROM (" +
+            "  SELECT product_id, count AS qty FROM stock_snapshot_items" +
+            "  WHERE snapshot_id = :snapshotId AND warehouse_id = :warehouseId AND product_id > :afterProductId" +
+            "  UNION ALL" +
+            "  SELECT product_id, :sign * delta FROM stock_movements" +
+            "  WHERE warehouse_id = :warehouseId AND created_at >= :from AND created_at < :to" +
+            "    AND id >= :minId AND id < :maxId AND product_id > :afterProductId" +
+            ") t GROUP BY t.product_id HAVING SUM(t.qty) <> 0 ORDER BY t.product_id LIMIT :limit",
+            nativeQuery = true)
+    List<ProductQuantityView> balanceFromSnapshot(Long snapshotId, Long warehouseId, LocalDateTime from, LocalDateTime to,
+                                                  long minId, long maxId, int sign, long afterProductId, int limit);
+
+    /**
+     * Остатки склада на момент from: текущие остатки минус движения начиная с from.
+     */
+    @Query(value = "SELECT t.product_id AS productId, SUM(t.qty) AS quantity FROM (" +
+            "  SELECT product_id, count AS qty FROM stock" +
+            "  WHERE warehouse_id = :warehouseId AND product_id > :afterProductId" +
+            "  UNION ALL" +
+            "  SELECT product_id, -delta FROM stock_movements" +
+            "  WHERE warehouse_id = :warehouseId AND created_at >= :from AND product_id > :afterProductId" +
+            ") t GROUP BY t.product_id HAVING SUM(t.qty) <> 0 ORDER BY t.product_id LIMIT :limit",
+            nativeQuery = true)
+    List<ProductQuantityView> balanceFromStock(Long warehouseId, LocalDateTime from, long afterProductId, int limit);
+
+    /**
+     * Последний ID журнала (в транзакции READ UNCOMMITTED — включая ещё не зафиксированные движения).
+     */
+    @Query(value = "SELECT MAX(id) FROM stock_movements", nativeQuery = true)
+    Long findMaxId();
+
+    /**
+     * Число движений с ID в [fromId, toId) (поиск по первичному ключу).
+     */
+    @Query(value = "SELECT COUNT(*) FROM stock_movements WHERE id >= :fromId AND id < :toId", nativeQuery = true)
+    long countInIdRange(long fromId, long toId);
+
+    /**
+     * Следующий после последнего ID журнала — блокирующим чтением (последнее зафиксированное значение;
+     * вставки в конец журнала ждут конца транзакции).
+     */
+    @Query(value = "SELECT COALESCE(MAX(id), 0) + 1 FROM stock_movements FOR SHARE", nativeQuery = true)
+    long lockNextId();
+}
@@ -0,0 +1,14 @@
+package warehouses.project.repository;
+
+import warehouses.project.model.StockMovement;
+
+import java.util.List;
+
+public interface StockMovementRepositoryCustom {
+
+    /**
+     * Дописать движения в журнал одним JDBC batch (в текущей транзакции).
+     * ID строкам не проставляются: журнал только пишется и читается агрегатами.
+     */
+    void appendAll(List<StockMovement> movements);
+}
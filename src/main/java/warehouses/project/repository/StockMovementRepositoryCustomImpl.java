@@ -0,0 +1,45 @@
+package warehouses.project.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import warehouses.project.model.StockMovement;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class StockMovementRepositoryCustomImpl implements StockMovementRepositoryCustom {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void appendAll(List<StockMovement> movements) {
+        if (movements.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO stock_movements (product_id, warehouse_id, delta, shipment_id, transaction_type, shipment_date, created_at) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                movements,
+                movements.size(),
+                (ps, movement) -> {
+                    ps.setLong(1, movement.getProductId());
+                    ps.setLong(2, movement.getWarehouseId());
+                    ps.setInt(3, movement.getDelta());
+                    if (movement.getShipmentId() != null) {
+                        ps.setLong(4, movement.getShipmentId());
+                    } else {
+                        ps.setNull(4, Types.BIGINT);
+                    }
+                    ps.setString(5, movement.getTransactionType());
+                    if (movement.getShipmentDate() != null) {
+                        ps.setDate(6, Date.valueOf(movement.getShipmentDate()));
+                    } else {
+                        ps.setNull(6, Types.DATE);
+                    }
+                    ps.setTimestamp(7, Timestamp.valueOf(movement.getCreatedAt()));
+                });
+    }
+}
@@ -2,12 +2,18 @@ package warehouses.project.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import warehouses.project.model.Product;
 import warehouses.project.model.Stock;
 import warehouses.project.model.Warehouse;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalDouble;
@@ -17,16 +23,145 @@ import java.util.OptionalDouble;
  * Эти данные не редактируются напрямую — только через Shipments.
  */
 @Repository
-public interface StockRepository extends JpaRepository<Stock, Long> {
+public interface StockRepository extends JpaRepository<Stock, Long>, StockRepositoryCustom {
     // Найти запись остатков по товару и складу
     Optional<Stock> findByProductAndWarehouse(Product product, Warehouse warehouse);
 
+    // Списки остатков загружают товар и склад тем же запросом, что и сами остатки
+    @Override
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    Page<Stock> findAll(Pageable pageable);
+
     // Фильтрация по названию товара (через вложенные поля)
+    @EntityGraph(attributePaths = {"product", "warehouse"})
     Page<Stock> findByProductNameContainingIgnoreCase(String productName, Pageable pageable);
 
     // Фильтрация по складу
+    @EntityGraph(attributePaths = {"product", "warehouse"})
     Page<Stock> findByWarehouseId(Long warehouseId, Pageable pageable);
 
+    // Фильтрация по набору товаров (ID найдены индексом названий)
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    Page<Stock> findByProductIdIn(Collection<Long> productIds, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    Page<Stock> findByProductIdInAndWarehouseId(Collection<Long> productIds, Long warehouseId, Pageable pageable);
+
     // Фильтрация по названию товара и складу одновременно
+    @EntityGraph(attributePaths = {"product", "warehouse"})
     Page<Stock> findByProductNameContainingIgnoreCaseAndWarehouseId(String productName, Long warehouseId, Pageable pageable);
+
+    // Keyset-пагинация: следующая порция после остатка с ID afterId (порядок по ID по убыванию)
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    Slice<Stock> findByIdLessThan(Long afterId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    Slice<Stock> findByWarehouseIdAndIdLessThan(Long warehouseId, Long afterId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    Slice<Stock> findByProductNameContainingIgnoreCaseAndIdLessThan(String productName, Long afterId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    Slice<Stock> findByProductNameContainingIgnoreCaseAndWarehouseIdAndIdLessThan(String productName, Long warehouseId, Long afterId, Pageable pageable);
+
+    /**
+     * Отметить остаток заканчивающимся, если он только что опустился ниже порога.
+     *
+     * @return 1, если порог пересечён вниз; 0 — иначе (порога нет, остаток выше или отметка уже стоит)
+     */
+    @Modifying
+    @Query(value = "UPDATE stock SET low_stock = TRUE " +
+            "WHERE product_id = :productId AND warehouse_id = :warehouseId AND low_stock = FALSE AND count < min_count",
+            nativeQuery = true)
+    int markLowIfBelowMin(Long productId, Long warehouseId);
+
+    /**
+     * Снять отметку, если остаток поднялся до restore_count или порог убран.
+     *
+     * @return 1, если отметка снята; 0 — иначе
+     */
+    @Modifying
+    @Query(value = "UPDATE stock SET low_stock = FALSE " +
+            "WHERE product_id = :productId AND warehouse_id = :warehouseId AND low_stock = TRUE " +
+            "AND (min_count IS NULL OR count >= restore_count)",
+            nativeQuery = true)
+    int clearLowIfRestored(Long productId, Long warehouseId);
+
+    /**
+     * Задать пороги остатка (null — убрать порог).
+     */
+    @Modifying
+    @Query(value = "UPDATE stock SET min_count = :minCount, restore_count = :restoreCount " +
+            "WHERE product_id = :productId AND warehouse_id = :warehouseId",
+            nativeQuery = true)
+    int updateThreshold(Long productId, Long warehouseId, Integer minCount, Integer restoreCount);
+
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    Optional<Stock> findByProductIdAndWarehouseId(Long productId, Long warehouseId);
+
+    // Все остатки ниже порога (их немного: выбираются по индексу idx_stock_low_stock)
+    @EntityGraph(attributePaths = {"product", "warehouse"})
+    List<Stock> findByLowStockTrue();
+
+    /**
+     * Создание пустой строки остатка, если её ещё нет (без гонки на дубликаты).
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO stock (product_id, warehouse_id, count, last_update) " +
+            "VALUES (:productId, :warehouseId, 0, :now)",
+            nativeQuery = true)
+    int insertIfAbsent(Long productId, Long warehouseId, LocalDateTime now);
+
+    /**
+     * Заблокировать строку остатка до конца транзакции, создав её с нулевым остатком при отсутствии
+     * (upsert без изменений берёт ту же блокировку, что и изменение остатка).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stock (product_id, warehouse_id, count, last_update) VALUES (:productId, :warehouseId, 0, :now) " +
+            "ON DUPLICATE KEY UPDATE id = id",
+            nativeQuery = true)
+    int lockRow(Long productId, Long warehouseId, LocalDateTime now);
+
+    /**
+     * Заблокировать строки stock части товаров до конца транзакции — в том же порядке (товар, склад),
+     * в котором их блокируют операции, поэтому взаимной блокировки с ними нет. Операции с этими остатками
+     * ждут, а уже начатые завершаются раньше, чем блокировка будет получена.
+     * В READ COMMITTED блокируются только подходящие строки.
+     */
+    @Query(value = "SELECT id FROM stock " +
+            "WHERE MOD(product_id, :partitions) = :partition AND (:warehouseId IS NULL OR warehouse_id = :warehouseId) " +
+            "ORDER BY product_id, warehouse_id FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockPartition(int partitions, int partition, Long warehouseId);
+
+    /**
+     * Пересчитать остатки части товаров (MOD(product_id, partitions) = partition): снимок + движения журнала
+     * с ID от fromId. Существующие строки части входят в выборку с нулём, поэтому строка без записей
+     * в снимке и журнале получает нулевой остаток.
+     * <p>
+     * Отметка low_stock пересчитывается тем же запросом по новому остатку с тем же гистерезисом, что при
+     * приходе и расходе: стоящая отметка снимается только при остатке от restore_count (или без порога),
+     * снятая ставится при остатке ниже min_count.
+     *
+     * @return число затронутых строк (по правилам MySQL для upsert)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stock (product_id, warehouse_id, count, last_update) " +
+            "SELECT t.product_id, t.warehouse_id, SUM(t.delta), :now FROM (" +
+            "  SELECT product_id, warehouse_id, 0 AS delta FROM stock" +
+            "  WHERE MOD(product_id, :partitions) = :partition AND (:warehouseId IS NULL OR warehouse_id = :warehouseId)" +
+            "  UNION ALL" +
+            "  SELECT product_id, warehouse_id, count FROM stock_snapshot_items" +
+            "  WHERE snapshot_id = :snapshotId AND MOD(product_id, :partitions) = :partition" +
+            "    AND (:warehouseId IS NULL OR warehouse_id = :warehouseId)" +
+            "  UNION ALL" +
+            "  SELECT product_id, warehouse_id, delta FROM stock_movements" +
+            "  WHERE id >= :fromId AND MOD(product_id, :partitions) = :partition" +
+            "    AND (:warehouseId IS NULL OR warehouse_id = :warehouseId)" +
+            ") t GROUP BY t.product_id, t.warehouse_id " +
+            "ON DUPLICATE KEY UPDATE count = VALUES(count), last_update = VALUES(last_update), " +
+            "low_stock = IF(low_stock, min_count IS NOT NULL AND IFNULL(count < restore_count, FALSE), " +
+            "IFNULL(count < min_count, FALSE))",
+            nativeQuery = true)
+    int replayPartition(Long snapshotId, long fromId, int partitions, int partition, Long warehouseId, LocalDateTime now);
 }
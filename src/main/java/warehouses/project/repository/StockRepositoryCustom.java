@@ -0,0 +1,30 @@
+package warehouses.project.repository;
+
+import java.time.LocalDateTime;
+
+public interface StockRepositoryCustom {
+
+    /**
+     * Атомарное увеличение остатка. Если строки (товар, склад) ещё нет — она создаётся
+     * (опирается на уникальный ключ uk_stock_product_warehouse).
+     * Тем же запросом снимается отметка low_stock, если остаток поднялся до restore_count или порог убран.
+     */
+    RowChange increase(Long productId, Long warehouseId, int amount, LocalDateTime now);
+
+    /**
+     * Атомарное уменьшение остатка: срабатывает только если товара достаточно.
+     * Тем же запросом ставится отметка low_stock, если остаток опустился ниже min_count.
+     *
+     * @return изменённая строка; null, если товара не хватает или строки нет
+     */
+    RowChange decreaseIfAvailable(Long productId, Long warehouseId, int amount, LocalDateTime now);
+
+    /**
+     * Результат изменения строки остатка.
+     *
+     * @param stockId         ID строки stock
+     * @param lowStockChanged отметка low_stock переключилась этим изменением
+     */
+    record RowChange(long stockId, boolean lowStockChanged) {
+    }
+}
@@ -0,0 +1,86 @@
+package warehouses.project.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Строка остатка меняется одним запросом вместе с отметкой low_stock, а ID строки и переключение отметки
+ * возвращаются через LAST_INSERT_ID(expr): значение {@code id * 4 + 2 * старая отметка + новая отметка}
+ * приходит клиенту как сгенерированный ключ, без отдельного SELECT.
+ * <p>
+ * MySQL выполняет присваивания SET слева направо, поэтому в выражении для low_stock count — уже новый,
+ * а low_stock — ещё старый.
+ */
+@RequiredArgsConstructor
+public class StockRepositoryCustomImpl implements StockRepositoryCustom {
+
+    private static final String INCREASE = "INSERT INTO stock (product_id, warehouse_id, count, last_update) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE count = count + VALUES(count), last_update = VALUES(last_update), " +
+            "low_stock = LAST_INSERT_ID(id * 4 + 2 * low_stock " +
+            "+ (low_stock AND min_count IS NOT NULL AND IFNULL(count < restore_count, FALSE))) % 2";
+
+    private static final String DECREASE = "UPDATE stock SET count = count - ?, last_update = ?, " +
+            "low_stock = LAST_INSERT_ID(id * 4 + 2 * low_stock + (low_stock OR IFNULL(count < min_count, FALSE))) % 2 " +
+            "WHERE product_id = ? AND warehouse_id = ? AND count >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Новая строка (1 затронутая строка) возвращает свой AUTO_INCREMENT ID без отметки,
+     * обновлённая (2 по правилам MySQL для upsert) — закодированное значение.
+     */
+    @Override
+    public RowChange increase(Long productId, Long warehouseId, int amount, LocalDateTime now) {
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        int updated = jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INCREASE, Statement.RETURN_GENERATED_KEYS);
+            ps.setLong(1, productId);
+            ps.setLong(2, warehouseId);
+            ps.setInt(3, amount);
+            ps.setTimestamp(4, Timestamp.valueOf(now));
+            return ps;
+        }, keys);
+        long key = firstKey(keys);
+        return updated == 1 ? new RowChange(key, false) : decode(key);
+    }
+
+    @Override
+    public RowChange decreaseIfAvailable(Long productId, Long warehouseId, int amount, LocalDateTime now) {
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        int updated = jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(DECREASE, Statement.RETURN_GENERATED_KEYS);
+            ps.setInt(1, amount);
+            ps.setTimestamp(2, Timestamp.valueOf(now));
+            ps.setLong(3, productId);
+            ps.setLong(4, warehouseId);
+            ps.setInt(5, amount);
+            return ps;
+        }, keys);
+        return updated == 0 ? null : decode(firstKey(keys));
+    }
+
+    private static RowChange decode(long value) {
+        boolean wasLow = ((value >> 1) & 1) == 1;
+        boolean isLow = (value & 1) == 1;
+        return new RowChange(value >> 2, wasLow != isLow);
+    }
+
+    /**
+     * Драйвер MySQL на upsert с двумя затронутыми строками отдаёт несколько ключей подряд — нужен первый.
+     */
+    private static long firstKey(GeneratedKeyHolder keys) {
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        if (keyList.isEmpty() || keyList.get(0).isEmpty()) {
+            throw new IllegalStateException("Stock row id was not returned");
+        }
+        return ((Number) keyList.get(0).values().iterator().next()).longValue();
+    }
+}
@@ -0,0 +1,45 @@
+package warehouses.project.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import warehouses.project.model.StockSnapshotItem;
+
+/**
+ * Строки снимков остатков. Снимки строятся и читаются агрегирующими запросами в БД,
+ * строки в Java не загружаются.
+ */
+@Repository
+public interface StockSnapshotItemRepository extends JpaRepository<StockSnapshotItem, Long> {
+
+    /**
+     * Первый снимок — копия текущей таблицы stock.
+     *
+     * @return число пар в снимке
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stock_snapshot_items (snapshot_id, product_id, warehouse_id, count) " +
+            "SELECT :snapshotId, product_id, warehouse_id, count FROM stock WHERE count <> 0",
+            nativeQuery = true)
+    int copyFromStock(Long snapshotId);
+
+    /**
+     * Новый снимок = предыдущий снимок + движения журнала с ID в [fromId, toId), свёрнутые по парам (товар, склад).
+     *
+     * @return число пар в снимке
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stock_snapshot_items (snapshot_id, product_id, warehouse_id, count) " +
+            "SELECT :snapshotId, t.product_id, t.warehouse_id, SUM(t.delta) FROM (" +
+            "  SELECT product_id, warehouse_id, count AS delta FROM stock_snapshot_items WHERE snapshot_id = :previousSnapshotId" +
+            "  UNION ALL" +
+            "  SELECT product_id, warehouse_id, delta FROM stock_movements WHERE id >= :fromId AND id < :toId" +
+            ") t GROUP BY t.product_id, t.warehouse_id HAVING SUM(t.delta) <> 0",
+            nativeQuery = true)
+    int compact(Long snapshotId, Long previousSnapshotId, long fromId, long toId);
+
+    @Modifying
+    @Query("DELETE FROM StockSnapshotItem i WHERE i.snapshotId = :snapshotId")
+    int deleteBySnapshotId(Long snapshotId);
+}
@@ -0,0 +1,42 @@
+package warehouses.project.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import warehouses.project.model.StockSnapshot;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Снимки остатков (заголовки; строки — в {@link StockSnapshotItemRepository}).
+ */
+@Repository
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+
+    /**
+     * Последний снимок.
+     */
+    Optional<StockSnapshot> findFirstByOrderByTakenAtDesc();
+
+    /**
+     * Самый ранний снимок: раньше его границы журнала нет.
+     */
+    Optional<StockSnapshot> findFirstByOrderByTakenAtAsc();
+
+    /**
+     * Ближайший снимок не позже момента.
+     */
+    Optional<StockSnapshot> findFirstByTakenAtLessThanEqualOrderByTakenAtDesc(LocalDateTime moment);
+
+    /**
+     * Ближайший снимок позже момента.
+     */
+    Optional<StockSnapshot> findFirstByTakenAtGreaterThanOrderByTakenAtAsc(LocalDateTime moment);
+
+    /**
+     * Снимки от новых к старым.
+     */
+    List<StockSnapshot> findAllByOrderByTakenAtDesc(Pageable pageable);
+}
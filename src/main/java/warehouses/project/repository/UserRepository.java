@@ -13,7 +13,7 @@ import java.util.Optional;
  * Только администратор может выполнять CRUD.
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     /**
      * Поиск пользователя по имени.
      *
@@ -38,6 +38,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     boolean existsByEmail(String email);
 
+    /**
+     * ID и роль пользователя по имени — для кэша статусов при аутентификации по токену.
+     *
+     * @param username имя пользователя
+     * @return Optional с проекцией, если пользователь существует
+     */
+    Optional<UserStatusView> findStatusByUsername(String username);
+
     // Для будущей авторизации (по email)
     Optional<User> findByEmail(String email);
 }
@@ -0,0 +1,22 @@
+package warehouses.project.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+import warehouses.project.model.User;
+
+import java.util.Optional;
+
+/**
+ * Загрузка пользователя через API сессии Hibernate, чтобы использовать кэш natural id.
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Поиск пользователя по имени через кэш natural id и кэш второго уровня:
+     * при попадании в оба кэша запрос к БД не выполняется.
+     *
+     * @param username имя пользователя
+     * @return Optional с пользователем, если найден
+     */
+    @Transactional(readOnly = true)
+    Optional<User> findByNaturalUsername(String username);
+}
@@ -0,0 +1,12 @@
+package warehouses.project.repository;
+
+import warehouses.project.model.Role;
+
+/**
+ * Проекция пользователя для проверки токена: только ID и роль.
+ */
+public interface UserStatusView {
+    Long getId();
+
+    Role getRole();
+}
@@ -3,13 +3,25 @@ package warehouses.project.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import warehouses.project.model.Warehouse;
 
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Репозиторий для складов
  */
 @Repository
 public interface WarehouseRepository extends JpaRepository<Warehouse, Long> {
     Page<Warehouse> findByNameContainingIgnoreCase(String name, Pageable pageable);
+
+    // Шард склада (склады без шарда — в шарде 0)
+    @Query("SELECT COALESCE(w.shard, 0) FROM Warehouse w WHERE w.id = :id")
+    Optional<Integer> findShardById(Long id);
+
+    // Число складов по шардам: [шард, количество]
+    @Query("SELECT COALESCE(w.shard, 0), COUNT(w) FROM Warehouse w GROUP BY COALESCE(w.shard, 0)")
+    List<Object[]> countByShard();
 }
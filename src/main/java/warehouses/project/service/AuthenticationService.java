@@ -1,6 +1,8 @@
 package warehouses.project.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -11,9 +13,14 @@ import warehouses.project.dto.SignUpRequest;
 import warehouses.project.model.Role;
 import warehouses.project.model.User;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Сервис аутентификации и регистрации пользователей.
  * Обрабатывает регистрацию новых пользователей и вход в систему.
+ * <p>
+ * Хеширование паролей выполняется в ограниченном пуле {@code passwordHashingExecutor}:
+ * при переполнении его очереди запрос отклоняется сразу с RejectedExecutionException.
  */
 @Service
 @RequiredArgsConstructor
@@ -22,6 +29,28 @@ public class AuthenticationService {
     private final JwtService jwtService;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
+    @Qualifier("passwordHashingExecutor")
+    private final AsyncTaskExecutor passwordHashingExecutor;
+
+    /**
+     * Регистрация пользователя в пуле хеширования паролей
+     *
+     * @param request данные пользователя
+     * @return токен
+     */
+    public CompletableFuture<JwtAuthenticationResponse> signUpAsync(SignUpRequest request) {
+        return passwordHashingExecutor.submitCompletable(() -> signUp(request));
+    }
+
+    /**
+     * Аутентификация пользователя в пуле хеширования паролей
+     *
+     * @param request данные пользователя
+     * @return токен
+     */
+    public CompletableFuture<JwtAuthenticationResponse> signInAsync(SignInRequest request) {
+        return passwordHashingExecutor.submitCompletable(() -> signIn(request));
+    }
 
     /**
      * Регистрация пользователя
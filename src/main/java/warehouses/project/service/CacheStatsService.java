@@ -0,0 +1,66 @@
+package warehouses.project.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+import warehouses.project.dto.CacheRegionStatsDto;
+import warehouses.project.dto.CacheStatsDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Метрики кэша второго уровня Hibernate (справочники Product, Warehouse, User).
+ */
+@Service
+@RequiredArgsConstructor
+public class CacheStatsService {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CacheStatsDto getStats() {
+        Statistics statistics = statistics();
+
+        List<CacheRegionStatsDto> regions = new ArrayList<>();
+        String[] regionNames = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regionNames);
+        for (String regionName : regionNames) {
+            CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            regions.add(CacheRegionStatsDto.builder()
+                    .region(regionName)
+                    .hitCount(region.getHitCount())
+                    .missCount(region.getMissCount())
+                    .putCount(region.getPutCount())
+                    .elementCountInMemory(region.getElementCountInMemory())
+                    .build());
+        }
+
+        return CacheStatsDto.builder()
+                .statisticsEnabled(statistics.isStatisticsEnabled())
+                .hitCount(statistics.getSecondLevelCacheHitCount())
+                .missCount(statistics.getSecondLevelCacheMissCount())
+                .putCount(statistics.getSecondLevelCachePutCount())
+                .naturalIdHitCount(statistics.getNaturalIdCacheHitCount())
+                .naturalIdMissCount(statistics.getNaturalIdCacheMissCount())
+                .regions(regions)
+                .build();
+    }
+
+    /**
+     * Сбросить счётчики (например, перед замером).
+     */
+    public void resetStats() {
+        statistics().clear();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -0,0 +1,293 @@
+package warehouses.project.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.model.ChangeLogEntry;
+import warehouses.project.repository.ChangeLogRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Журнал изменений остатков, товаров и складов для синхронизации клиентов по версиям.
+ * <p>
+ * Сервисы отмечают изменённые записи в текущей транзакции; перед её фиксацией отметки пишутся в change_log
+ * одним batch. Версии выдаёт AUTO_INCREMENT при вставке, без общей блокировки, поэтому транзакция с версией N
+ * может зафиксироваться позже транзакции с версией N+1. Читатель идёт по версиям подряд и останавливается
+ * на пропуске: пропущенная версия принадлежит транзакции, которая ещё фиксируется, или откаченной.
+ * Пропуск перестаёт задерживать чтение, когда запись за ним старше {@code changes.commit-grace} по часам БД:
+ * строки пишутся непосредственно перед фиксацией, и за это время транзакция успевает зафиксироваться.
+ * <p>
+ * Журнал хранится {@code changes.retention}. Клиент, отставший сильнее (или синхронизирующийся впервые),
+ * получает признак resyncRequired и курсор, с которого продолжать после полной загрузки.
+ * <p>
+ * При шардировании у каждого шарда свой журнал (изменение пишется в транзакции своего шарда), а версии шарда
+ * лежат в его диапазоне ID ({@link ShardRouter#idBase}). Курсор — версии всех шардов через точку; порция
+ * сливается из журналов шардов по времени изменения, и курсор каждого шарда сдвигается только по его записям.
+ * Без шардирования курсор — просто версия.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChangeLogService {
+
+    private final ChangeLogRepository changeLogRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    @Value("${changes.retention:P30D}")
+    private Duration retention;
+
+    @Value("${changes.commit-grace:PT10S}")
+    private Duration commitGrace;
+
+    /**
+     * Порция журнала.
+     *
+     * @param cursor         курсор для следующего запроса (since)
+     * @param resyncRequired клиенту нужно загрузить данные целиком и продолжить с cursor
+     */
+    public record Feed(List<ChangeLogEntry> entries, String cursor, boolean hasMore, boolean resyncRequired) {
+    }
+
+    /**
+     * Порция журнала одного шарда: зафиксированные записи подряд после его версии курсора.
+     */
+    private record ShardFeed(List<ChangeLogEntry> entries, boolean hasMore, boolean resyncRequired) {
+    }
+
+    @PostConstruct
+    void initCounter() {
+        transactionTemplate.executeWithoutResult(status -> changeLogRepository.initCounter());
+    }
+
+    /**
+     * Отметить изменение строки остатка (ID берётся из запроса, изменившего строку).
+     */
+    public void recordStock(Long stockId) {
+        pending().put(ChangeLogEntry.TYPE_STOCK, stockId, ChangeLogEntry.OPERATION_UPSERT);
+    }
+
+    /**
+     * Отметить, что изменены все записи типа и клиентам нужно перечитать их целиком.
+     */
+    public void recordResync(String entityType) {
+        pending().put(entityType, null, ChangeLogEntry.OPERATION_RESYNC);
+    }
+
+    public void recordProduct(Long productId, boolean deleted) {
+        pending().put(ChangeLogEntry.TYPE_PRODUCT, productId, operation(deleted));
+    }
+
+    public void recordWarehouse(Long warehouseId, boolean deleted) {
+        pending().put(ChangeLogEntry.TYPE_WAREHOUSE, warehouseId, operation(deleted));
+    }
+
+    /**
+     * Изменения после курсора since: в каждом шарде — по возрастанию версий до первого пропуска моложе
+     * {@code changes.commit-grace}, между шардами — по времени изменения.
+     * Из нескольких изменений одной записи в порции остаётся последнее.
+     *
+     * @param since курсор из прошлой порции ("0" — первая синхронизация)
+     */
+    public Feed read(String since, int limit) {
+        long[] cursor = parseCursor(since);
+        if (cursor == null) {
+            return resync();
+        }
+        List<ShardFeed> feeds = shardRouter.onEachShard(() -> readShard(cursor[shardIndex()], limit));
+        if (feeds.stream().anyMatch(ShardFeed::resyncRequired)) {
+            return resync();
+        }
+
+        int[] taken = new int[feeds.size()];
+        List<ChangeLogEntry> merged = new ArrayList<>(limit);
+        while (merged.size() < limit) {
+            int earliest = -1;
+            for (int shard = 0; shard < feeds.size(); shard++) {
+                List<ChangeLogEntry> entries = feeds.get(shard).entries();
+                if (taken[shard] < entries.size() && (earliest < 0 || entries.get(taken[shard]).getChangedAt()
+                        .isBefore(feeds.get(earliest).entries().get(taken[earliest]).getChangedAt()))) {
+                    earliest = shard;
+                }
+            }
+            if (earliest < 0) {
+                break;
+            }
+            merged.add(feeds.get(earliest).entries().get(taken[earliest]++));
+        }
+        long[] next = cursor.clone();
+        boolean hasMore = false;
+        for (int shard = 0; shard < feeds.size(); shard++) {
+            ShardFeed feed = feeds.get(shard);
+            if (taken[shard] > 0) {
+                next[shard] = feed.entries().get(taken[shard] - 1).getVersion();
+            }
+            hasMore |= feed.hasMore() || taken[shard] < feed.entries().size();
+        }
+
+        Map<List<Object>, ChangeLogEntry> latest = new LinkedHashMap<>();
+        for (ChangeLogEntry entry : merged) {
+            List<Object> key = Arrays.asList(entry.getEntityType(), entry.getEntityId());
+            latest.remove(key);
+            latest.put(key, entry);
+        }
+        return new Feed(new ArrayList<>(latest.values()), formatCursor(next), hasMore, false);
+    }
+
+    /**
+     * Записи текущего шарда после версии since (не больше limit).
+     */
+    private ShardFeed readShard(long since, int limit) {
+        Long purged = changeLogRepository.findPurgedVersion();
+        if (purged != null && since < purged) {
+            return new ShardFeed(List.of(), false, true);
+        }
+        LocalDateTime settledBefore = changeLogRepository.currentTime().minus(commitGrace);
+        List<ChangeLogEntry> rows = changeLogRepository.findByVersionGreaterThanOrderByVersionAsc(since, PageRequest.of(0, limit + 1));
+        Long purgedAfterRead = changeLogRepository.findPurgedVersion();
+        if (purgedAfterRead != null && since < purgedAfterRead) {
+            // журнал успели очистить между проверкой и чтением
+            return new ShardFeed(List.of(), false, true);
+        }
+        List<ChangeLogEntry> committed = new ArrayList<>(rows.size());
+        long previous = since;
+        for (ChangeLogEntry entry : rows) {
+            if (entry.getVersion() != previous + 1 && !entry.getChangedAt().isBefore(settledBefore)) {
+                break;
+            }
+            committed.add(entry);
+            previous = entry.getVersion();
+        }
+        boolean hasMore = committed.size() > limit;
+        return new ShardFeed(hasMore ? committed.subList(0, limit) : committed, hasMore, false);
+    }
+
+    /**
+     * Полная загрузка: в каждом шарде продолжать с последней версии, после которой не может зафиксироваться более ранняя.
+     */
+    private Feed resync() {
+        List<Long> versions = shardRouter.onEachShard(() -> {
+            Long purged = changeLogRepository.findPurgedVersion();
+            Long settled = changeLogRepository.findMaxVersionBefore(changeLogRepository.currentTime().minus(commitGrace));
+            long floor = Math.max(ShardRouter.idBase(shardIndex()) - 1, 0L);
+            return Math.max(floor, Math.max(settled != null ? settled : 0L, purged != null ? purged : 0L));
+        });
+        return new Feed(List.of(), formatCursor(versions.stream().mapToLong(Long::longValue).toArray()), false, true);
+    }
+
+    /**
+     * Версии шардов из курсора; null — нужна полная загрузка (первая синхронизация, курсор не разобран
+     * или записан при другом числе шардов).
+     */
+    private long[] parseCursor(String since) {
+        if (since == null || since.isBlank() || since.equals("0")) {
+            return null;
+        }
+        String[] parts = since.split("\\.");
+        if (parts.length != shardRouter.getShardCount()) {
+            return null;
+        }
+        long[] cursor = new long[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                cursor[i] = Long.parseLong(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return cursor;
+    }
+
+    private static String formatCursor(long[] cursor) {
+        return Arrays.stream(cursor).mapToObj(Long::toString).collect(Collectors.joining("."));
+    }
+
+    private int shardIndex() {
+        Integer shard = shardRouter.currentShard();
+        return shard != null ? shard : 0;
+    }
+
+    /**
+     * Удалить записи старше {@code changes.retention} (при шардировании — в каждом шарде).
+     */
+    @Scheduled(fixedDelayString = "${changes.purge-interval:PT1H}")
+    public void purgeExpired() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        shardRouter.forEachShard(shard -> {
+            Long upTo = changeLogRepository.findMaxVersionBefore(before);
+            if (upTo == null) {
+                return;
+            }
+            Integer deleted = transactionTemplate.execute(status -> {
+                changeLogRepository.updatePurgedVersion(upTo);
+                return changeLogRepository.deleteUpTo(upTo);
+            });
+            if (deleted != null && deleted > 0) {
+                log.info("Purged {} change log entries up to version {} in shard {}", deleted, upTo, shard);
+            }
+        });
+    }
+
+    private static String operation(boolean deleted) {
+        return deleted ? ChangeLogEntry.OPERATION_DELETE : ChangeLogEntry.OPERATION_UPSERT;
+    }
+
+    private Pending pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Changes must be recorded inside a transaction");
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Изменения текущей транзакции: пишутся в журнал перед фиксацией.
+     */
+    private final class Pending implements TransactionSynchronization {
+        private final Map<List<Object>, String> entities = new LinkedHashMap<>();
+
+        private void put(String entityType, Long entityId, String operation) {
+            entities.put(Arrays.asList(entityType, entityId), operation);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            List<ChangeLogEntry> entries = new ArrayList<>(entities.size());
+            entities.forEach((key, operation) -> entries.add(entry((String) key.get(0), (Long) key.get(1), operation)));
+            changeLogRepository.appendAll(entries);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeLogService.this);
+        }
+
+        private ChangeLogEntry entry(String entityType, Long entityId, String operation) {
+            ChangeLogEntry entry = new ChangeLogEntry();
+            entry.setEntityType(entityType);
+            entry.setEntityId(entityId);
+            entry.setOperation(operation);
+            return entry;
+        }
+    }
+}
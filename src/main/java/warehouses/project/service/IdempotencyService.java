@@ -0,0 +1,353 @@
+package warehouses.project.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.exeption.IdempotencyKeyConflictException;
+import warehouses.project.model.IdempotencyKey;
+import warehouses.project.repository.IdempotencyKeyRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Идемпотентность запросов с заголовком {@code Idempotency-Key}.
+ * <p>
+ * Ответ на запрос с ключом сохраняется в таблицу idempotency_keys — в той же транзакции, что и созданная
+ * операция, поэтому операция без сохранённого ответа (и наоборот) невозможна. Последние ответы держатся
+ * также в ограниченном кэше в памяти. Повтор с тем же ключом получает сохранённый ответ без повторного
+ * выполнения; повтор, пришедший пока первый запрос ещё выполняется, ждёт его результата.
+ * Тот же ключ с другим телом запроса — {@link IdempotencyKeyConflictException} (422).
+ * <p>
+ * Ключи действуют {@code idempotency.ttl} и принадлежат пользователю: одинаковые ключи
+ * разных пользователей не пересекаются. Неудачные запросы не сохраняются — их можно повторить с тем же ключом.
+ * <p>
+ * При шардировании ключ хранится в шарде, выбранном на момент вызова {@link #execute} (шард склада операции),
+ * рядом с операцией, — так ответ и операция по-прежнему фиксируются вместе. Ключ ищется во всех шардах:
+ * повтор того же ключа с операцией на складе другого шарда получает сохранённый ответ или 422, а не выполняется
+ * второй раз. Одновременные запросы с одним ключом на разные шарды через разные узлы этим не различаются —
+ * уникальный индекс действует в пределах шарда.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final Duration ttl;
+    private final Cache<String, StoredResponse> completed;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Без XSS-модуля основного ObjectMapper: сохранённый ответ уже экранирован,
+     * при повторе его нельзя экранировать ещё раз.
+     */
+    private final ObjectMapper storageMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    public IdempotencyService(
+            IdempotencyKeyRepository repository,
+            TransactionTemplate transactionTemplate,
+            ShardRouter shardRouter,
+            @Value("${idempotency.ttl:24h}") Duration ttl,
+            @Value("${idempotency.cache.max-size:10000}") long cacheMaxSize
+    ) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.ttl = ttl;
+        this.completed = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(cacheMaxSize)
+                .build();
+    }
+
+    /**
+     * Выполнить запрос не более одного раза на ключ.
+     *
+     * @param key          значение заголовка Idempotency-Key; null — запрос выполняется как обычно
+     * @param endpoint     операция (входит в отпечаток запроса)
+     * @param request      тело запроса (его отпечаток сравнивается при повторе)
+     * @param responseType тип ответа для восстановления из БД
+     * @param action       выполнение запроса; должно передать ответ в {@link Recorder} внутри своей транзакции
+     * @return ответ выполнения или сохранённый ответ
+     * @throws IdempotencyKeyConflictException если ключ уже использован с другим запросом
+     */
+    public <T> CompletableFuture<T> execute(String key, Long userId, String endpoint, Object request,
+                                            Class<T> responseType, Function<Recorder<T>, CompletableFuture<T>> action) {
+        if (key == null) {
+            return action.apply(new Recorder<>(null, null, null, null, null));
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be 1.." + MAX_KEY_LENGTH + " characters");
+        }
+        String scope = userId + ":" + key;
+        String requestHash = hash(endpoint, request);
+
+        StoredResponse cached = completed.getIfPresent(scope);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(replay(cached, key, requestHash, responseType));
+        }
+
+        InFlight own = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(scope, own);
+        if (running != null) {
+            if (!running.requestHash().equals(requestHash)) {
+                throw new IdempotencyKeyConflictException(key);
+            }
+            log.debug("Request with idempotency key {} is in flight, waiting for it", key);
+            return running.result().thenApply(responseType::cast);
+        }
+
+        try {
+            Optional<StoredResponse> persisted = findPersisted(userId, key);
+            if (persisted.isPresent()) {
+                completed.put(scope, persisted.get());
+                T response = replay(persisted.get(), key, requestHash, responseType);
+                finish(scope, own, response, null);
+                return CompletableFuture.completedFuture(response);
+            }
+        } catch (RuntimeException e) {
+            finish(scope, own, null, e);
+            throw e;
+        }
+
+        Recorder<T> recorder = new Recorder<>(userId, key, endpoint, requestHash, shardRouter.currentShard());
+        CompletableFuture<T> execution;
+        try {
+            execution = action.apply(recorder);
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+        return execution.handle((response, failure) -> {
+            try {
+                T result = failure == null
+                        ? completed(scope, recorder, response)
+                        : recoverFailure(scope, recorder, responseType, failure);
+                finish(scope, own, result, null);
+                return result;
+            } catch (RuntimeException e) {
+                finish(scope, own, null, e);
+                throw e;
+            }
+        });
+    }
+
+    private <T> T completed(String scope, Recorder<T> recorder, T response) {
+        StoredResponse stored = recorder.stored != null ? recorder.stored : storeAfterCommit(recorder, response);
+        completed.put(scope, stored);
+        return response;
+    }
+
+    /**
+     * Ключ мог сохранить параллельный запрос на другом узле (уникальный индекс не дал сохранить
+     * наш ответ и откатил операцию) — тогда это повтор, а не ошибка. Иначе ошибка пробрасывается.
+     */
+    private <T> T recoverFailure(String scope, Recorder<T> recorder, Class<T> responseType, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (cause instanceof DataIntegrityViolationException) {
+            Optional<StoredResponse> persisted = inShard(recorder.shard, () -> findInShard(recorder.userId, recorder.key));
+            if (persisted.isPresent()) {
+                T replayed = replay(persisted.get(), recorder.key, recorder.requestHash, responseType);
+                completed.put(scope, persisted.get());
+                return replayed;
+            }
+        }
+        throw cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+    }
+
+    /**
+     * Удалить просроченные ключи.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        shardRouter.forEachShard(shard -> {
+            Integer deleted = transactionTemplate.execute(status -> repository.deleteExpired(now));
+            if (deleted != null && deleted > 0) {
+                log.info("Purged {} expired idempotency keys in shard {}", deleted, shard);
+            }
+        });
+    }
+
+    /**
+     * Сохраняет ответ запроса с ключом в текущей транзакции.
+     * Для запроса без ключа ничего не делает.
+     */
+    public final class Recorder<T> {
+
+        private final Long userId;
+        private final String key;
+        private final String endpoint;
+        private final String requestHash;
+        private final Integer shard;
+        private volatile StoredResponse stored;
+
+        private Recorder(Long userId, String key, String endpoint, String requestHash, Integer shard) {
+            this.userId = userId;
+            this.key = key;
+            this.endpoint = endpoint;
+            this.requestHash = requestHash;
+            this.shard = shard;
+        }
+
+        /**
+         * Сохранить ответ в текущей транзакции. Если транзакция откатится и операция будет выполнена
+         * повторно (групповая фиксация), ответ сохраняется заново.
+         *
+         * @return тот же ответ
+         */
+        public T record(T response) {
+            if (key != null) {
+                stored = save(this, response);
+            }
+            return response;
+        }
+
+        /**
+         * Функция "результат → ответ", которая сохраняет ответ (для вызова внутри транзакции операции).
+         */
+        public <S> Function<S, T> mapping(Function<S, T> mapper) {
+            return source -> record(mapper.apply(source));
+        }
+
+        /**
+         * Выполнить действие и сохранить его ответ в одной транзакции.
+         * Без ключа — просто выполнить действие.
+         */
+        public T inTransaction(Supplier<T> action) {
+            if (key == null) {
+                return action.get();
+            }
+            return transactionTemplate.execute(status -> record(action.get()));
+        }
+    }
+
+    private StoredResponse save(Recorder<?> recorder, Object response) {
+        String body;
+        try {
+            body = storageMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize idempotent response", e);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyKey entity = new IdempotencyKey();
+        entity.setUserId(recorder.userId);
+        entity.setKey(recorder.key);
+        entity.setEndpoint(recorder.endpoint);
+        entity.setRequestHash(recorder.requestHash);
+        entity.setResponseBody(body);
+        entity.setCreatedAt(now);
+        entity.setExpiresAt(now.plus(ttl));
+        repository.save(entity);
+        return new StoredResponse(recorder.requestHash, body, response);
+    }
+
+    /**
+     * Запрос, который не сохранил ответ в своей транзакции (например, пакет из нескольких транзакций), —
+     * сохраняем после выполнения отдельной транзакцией.
+     */
+    private StoredResponse storeAfterCommit(Recorder<?> recorder, Object response) {
+        try {
+            return inShard(recorder.shard, () -> transactionTemplate.execute(status -> save(recorder, response)));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Idempotency key {} was stored concurrently", recorder.key);
+            return new StoredResponse(recorder.requestHash, null, response);
+        }
+    }
+
+    /**
+     * Выполнить действие в шарде ключа: ответ может сохраняться в другом потоке, чем был выбран шард.
+     */
+    private <T> T inShard(Integer shard, Supplier<T> action) {
+        return shard != null ? shardRouter.inShard(shard, action) : action.get();
+    }
+
+    /**
+     * Найти сохранённый ответ ключа (при шардировании — во всех шардах: операция с тем же ключом
+     * могла пойти на склад другого шарда).
+     */
+    private Optional<StoredResponse> findPersisted(Long userId, String key) {
+        if (!shardRouter.isSharded()) {
+            return findInShard(userId, key);
+        }
+        return shardRouter.onEachShard(() -> findInShard(userId, key)).stream()
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+
+    private Optional<StoredResponse> findInShard(Long userId, String key) {
+        return repository.findByUserIdAndKey(userId, key)
+                .filter(entity -> entity.getExpiresAt().isAfter(LocalDateTime.now()))
+                .map(entity -> new StoredResponse(entity.getRequestHash(), entity.getResponseBody(), null));
+    }
+
+    private <T> T replay(StoredResponse stored, String key, String requestHash, Class<T> responseType) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyConflictException(key);
+        }
+        log.debug("Replaying stored response for idempotency key {}", key);
+        if (responseType.isInstance(stored.response())) {
+            return responseType.cast(stored.response());
+        }
+        try {
+            return storageMapper.readValue(stored.body(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read stored idempotent response", e);
+        }
+    }
+
+    private void finish(String scope, InFlight own, Object response, Throwable failure) {
+        inFlight.remove(scope, own);
+        if (failure != null) {
+            own.result().completeExceptionally(failure);
+        } else {
+            own.result().complete(response);
+        }
+    }
+
+    private String hash(String endpoint, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(storageMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash request", e);
+        }
+    }
+
+    /**
+     * Сохранённый ответ: тело в JSON (для восстановления) и, если есть, сам объект ответа.
+     */
+    private record StoredResponse(String requestHash, String body, Object response) {
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<Object> result) {
+    }
+}
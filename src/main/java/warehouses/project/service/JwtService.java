@@ -1,6 +1,10 @@
 package warehouses.project.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -9,22 +13,68 @@ import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import warehouses.project.model.Role;
 import warehouses.project.model.User;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Сервис для работы с JWT токенами.
  * Обеспечивает генерацию, валидацию и извлечение данных из JWT токенов.
+ * <p>
+ * Ключ подписи и парсер создаются один раз. Проверенные токены кэшируются по SHA-256
+ * до момента истечения ({@code exp}), поэтому повторные запросы того же клиента
+ * не разбирают JSON и не считают HMAC.
  */
 @Service
 public class JwtService {
-    @Value("${token.signing.key}")
-    private String jwtSigningKey;
+
+    private final Key signingKey;
+    private final JwtParser parser;
+    private final Cache<String, Claims> verifiedTokens;
+
+    public JwtService(
+            @Value("${token.signing.key}") String jwtSigningKey,
+            @Value("${security.jwt.verified-cache.max-size:10000}") long verifiedCacheSize
+    ) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSigningKey));
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        this.verifiedTokens = verifiedCacheSize > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(verifiedCacheSize)
+                        .expireAfter(new UntilTokenExpiration())
+                        .build()
+                : null;
+    }
+
+    /**
+     * Проверка подписи и срока действия токена с разбором claims — один раз на токен.
+     *
+     * @param token токен
+     * @return claims (данные токена)
+     * @throws io.jsonwebtoken.JwtException если токен некорректен, подделан или просрочен
+     */
+    public Claims verify(String token) {
+        if (verifiedTokens == null) {
+            return parser.parseClaimsJws(token).getBody();
+        }
+        String key = hash(token);
+        Claims claims = verifiedTokens.getIfPresent(key);
+        if (claims != null && !isExpired(claims)) {
+            return claims;
+        }
+        claims = parser.parseClaimsJws(token).getBody();
+        verifiedTokens.put(key, claims);
+        return claims;
+    }
 
     /**
      * Извлечение имени пользователя из токена
@@ -33,7 +83,27 @@ public class JwtService {
      * @return имя пользователя
      */
     public String extractUserName(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).getSubject();
+    }
+
+    /**
+     * Пользователь из claims токена, без обращения к БД.
+     *
+     * @param claims проверенные claims токена
+     * @return пользователь с ID, именем, email и ролью из токена или null, если в токене нет ID или роли
+     */
+    public User extractUser(Claims claims) {
+        Object id = claims.get("id");
+        Object role = claims.get("role");
+        if (!(id instanceof Number) || role == null || claims.getSubject() == null) {
+            return null;
+        }
+        return User.builder()
+                .id(((Number) id).longValue())
+                .username(claims.getSubject())
+                .email(claims.get("email", String.class))
+                .role(Role.valueOf(role.toString()))
+                .build();
     }
 
     /**
@@ -60,21 +130,18 @@ public class JwtService {
      * @return true, если токен валиден
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String userName = extractUserName(token);
-        return (userName.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(verify(token), userDetails);
     }
 
     /**
-     * Извлечение данных из токена
+     * Проверка уже разобранного токена на соответствие пользователю
      *
-     * @param token           токен
-     * @param claimsResolvers функция извлечения данных
-     * @param <T>             тип данных
-     * @return данные
+     * @param claims      проверенные claims токена
+     * @param userDetails данные пользователя
+     * @return true, если токен валиден
      */
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolvers) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolvers.apply(claims);
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && !isExpired(claims);
     }
 
     /**
@@ -88,49 +155,56 @@ public class JwtService {
         return Jwts.builder().setClaims(extraClaims).setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + 100000 * 60 * 24))
-                .signWith(SignatureAlgorithm.HS256, getSigningKey()).compact();
+                .signWith(signingKey, SignatureAlgorithm.HS256).compact();
     }
 
     /**
      * Проверка токена на просроченность
      *
-     * @param token токен
+     * @param claims claims токена
      * @return true, если токен просрочен
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private static boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.before(new Date());
     }
 
     /**
-     * Извлечение даты истечения токена
-     *
-     * @param token токен
-     * @return дата истечения
+     * SHA-256 токена — ключ кэша, чтобы не хранить сами токены.
      */
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
-     * Извлечение всех данных из токена.
-     *
-     * @param token токен
-     * @return claims (данные токена)
+     * Запись кэша живёт до {@code exp} токена (токены без exp — не дольше часа).
      */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getSigningKey())
-                .parseClaimsJws(token)
-                .getBody();
-    }
+    private static final class UntilTokenExpiration implements Expiry<String, Claims> {
 
-    /**
-     * Получение ключа для подписи токена
-     *
-     * @return ключ
-     */
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSigningKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        private static final long NO_EXPIRATION_TTL_NANOS = TimeUnit.HOURS.toNanos(1);
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return NO_EXPIRATION_TTL_NANOS;
+            }
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(expiration.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
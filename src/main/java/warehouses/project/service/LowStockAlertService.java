@@ -0,0 +1,208 @@
+package warehouses.project.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import warehouses.project.dto.StockAlertDto;
+import warehouses.project.model.Stock;
+import warehouses.project.repository.StockRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Предупреждения о заканчивающихся товарах.
+ * <p>
+ * Пересечение порога определяет {@link StockService} при изменении остатка; после фиксации транзакции
+ * {@link LowStockEvent} попадает в ограниченную очередь, и операция дальше не ждёт. Отдельный поток читает
+ * очередь, берёт актуальную строку остатка и сверяет её отметку low_stock с текущими предупреждениями:
+ * повторное или устаревшее событие ничего не меняет. Изменения рассылаются подписчикам потока
+ * (SSE, через {@link SseBroadcaster}).
+ * <p>
+ * Если очередь переполнена, событие не теряется молча: текущие предупреждения перечитываются из БД
+ * (остатки ниже порога выбираются по индексу).
+ */
+@Slf4j
+@Service
+public class LowStockAlertService {
+
+    private static final String EVENT_LOW = "low-stock";
+    private static final String EVENT_RESTORED = "restored";
+
+    private final StockRepository stockRepository;
+    private final ShardRouter shardRouter;
+    private final BlockingQueue<LowStockEvent> queue;
+    private final SseBroadcaster<StockAlertDto> broadcaster;
+
+    private final Map<List<Long>, StockAlertDto> active = new ConcurrentHashMap<>();
+    private volatile boolean resyncNeeded;
+    private Thread worker;
+
+    public LowStockAlertService(
+            StockRepository stockRepository,
+            ShardRouter shardRouter,
+            @Value("${stock.alerts.queue-capacity:10000}") int queueCapacity,
+            @Qualifier("sseSenderExecutor") Executor sseSenderExecutor,
+            @Value("${stock.alerts.stream-buffer-size:100}") int streamBufferSize,
+            @Value("${stock.alerts.stream-timeout:PT30M}") Duration streamTimeout,
+            @Value("${sse.send-timeout:PT10S}") Duration sendTimeout
+    ) {
+        this.stockRepository = stockRepository;
+        this.shardRouter = shardRouter;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.broadcaster = new SseBroadcaster<>("low-stock", sseSenderExecutor, streamBufferSize, streamTimeout.toMillis(), sendTimeout);
+    }
+
+    @PostConstruct
+    void start() {
+        worker = new Thread(this::drain, "low-stock-alerts");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        worker.interrupt();
+        broadcaster.close();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActive() {
+        resyncNeeded = true;
+    }
+
+    /**
+     * Перечитать предупреждения из БД (например, после массового пересчёта stock, который меняет
+     * отметки low_stock без {@link LowStockEvent}). Выполняется потоком предупреждений.
+     */
+    public void requestResync() {
+        resyncNeeded = true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLowStock(LowStockEvent event) {
+        if (!queue.offer(event)) {
+            log.warn("Low stock alert queue is full, alerts will be reloaded from the database");
+            resyncNeeded = true;
+        }
+    }
+
+    /**
+     * Текущие предупреждения: сначала с наименьшим остатком.
+     */
+    public List<StockAlertDto> getActive() {
+        List<StockAlertDto> alerts = new ArrayList<>(active.values());
+        alerts.sort(Comparator.comparing(StockAlertDto::getCount));
+        return alerts;
+    }
+
+    /**
+     * Подписаться на появление и снятие предупреждений.
+     */
+    public SseEmitter subscribe() {
+        return broadcaster.subscribe(alert -> alert);
+    }
+
+    @Scheduled(fixedDelayString = "${sse.heartbeat:PT15S}")
+    public void heartbeat() {
+        broadcaster.heartbeat();
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (resyncNeeded) {
+                    resyncNeeded = false;
+                    queue.clear();
+                    resync();
+                }
+                LowStockEvent event = queue.poll(1, TimeUnit.SECONDS);
+                if (event != null) {
+                    apply(event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Low stock alert processing failed", e);
+            }
+        }
+    }
+
+    private void apply(LowStockEvent event) {
+        Stock stock = shardRouter.onWarehouse(event.warehouseId(),
+                () -> stockRepository.findByProductIdAndWarehouseId(event.productId(), event.warehouseId()).orElse(null));
+        List<Long> key = List.of(event.productId(), event.warehouseId());
+        if (stock != null && stock.isLowStock()) {
+            if (!active.containsKey(key)) {
+                StockAlertDto alert = toAlert(stock);
+                active.put(key, alert);
+                broadcast(EVENT_LOW, alert);
+            }
+        } else {
+            StockAlertDto previous = active.remove(key);
+            if (previous != null) {
+                StockAlertDto restored = stock != null ? toAlert(stock) : previous;
+                restored.setLow(false);
+                broadcast(EVENT_RESTORED, restored);
+            }
+        }
+    }
+
+    private void resync() {
+        Map<List<Long>, StockAlertDto> current = new ConcurrentHashMap<>();
+        for (List<Stock> shard : shardRouter.onEachShard(stockRepository::findByLowStockTrue)) {
+            for (Stock stock : shard) {
+                current.put(List.of(stock.getProduct().getId(), stock.getWarehouse().getId()), toAlert(stock));
+            }
+        }
+        for (Map.Entry<List<Long>, StockAlertDto> entry : current.entrySet()) {
+            if (active.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                broadcast(EVENT_LOW, entry.getValue());
+            }
+        }
+        for (List<Long> key : List.copyOf(active.keySet())) {
+            if (!current.containsKey(key)) {
+                StockAlertDto restored = active.remove(key);
+                restored.setLow(false);
+                broadcast(EVENT_RESTORED, restored);
+            }
+        }
+        log.info("Low stock alerts loaded: {} active", active.size());
+    }
+
+    private void broadcast(String name, StockAlertDto alert) {
+        broadcaster.publish(name, alert);
+    }
+
+    private static StockAlertDto toAlert(Stock stock) {
+        return StockAlertDto.builder()
+                .stockId(stock.getId())
+                .productId(stock.getProduct().getId())
+                .productName(stock.getProduct().getName())
+                .warehouseId(stock.getWarehouse().getId())
+                .warehouseName(stock.getWarehouse().getName())
+                .count(stock.getCount())
+                .minCount(stock.getMinCount())
+                .restoreCount(stock.getRestoreCount())
+                .low(stock.isLowStock())
+                .at(LocalDateTime.now())
+                .build();
+    }
+}
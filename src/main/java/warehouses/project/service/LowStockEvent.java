@@ -0,0 +1,8 @@
+package warehouses.project.service;
+
+/**
+ * Остаток пересёк порог: опустился ниже min_count (low = true) или поднялся до restore_count (low = false).
+ * Публикуется внутри транзакции {@link StockService}; слушатели получают его после фиксации.
+ */
+public record LowStockEvent(Long productId, Long warehouseId, boolean low) {
+}
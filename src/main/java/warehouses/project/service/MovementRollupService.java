@@ -0,0 +1,160 @@
+package warehouses.project.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.model.MovementRollup;
+import warehouses.project.model.Shipment;
+import warehouses.project.repository.MovementRollupRepository;
+import warehouses.project.repository.MovementRollupView;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Дневные сводки движений (день × склад × товар × тип операции) для отчётов.
+ * <p>
+ * Сводки обновляются в транзакции операции ({@link #record}): изменения остатков сворачиваются
+ * по парам (товар, склад) так же, как в журнале движений, и прибавляются к строкам сводки одним batch-upsert.
+ * Поэтому отчёт за период читает не больше строк, чем дней × складов × товаров, а не все операции со строками.
+ * <p>
+ * {@link #rebuild} пересобирает сводки по журналу движений (например, после сбоя или за дни до появления сводок);
+ * дни раньше начала журнала пересобрать нельзя. Текущий день лучше пересобирать при остановленных операциях:
+ * операция, проведённая во время пересборки, может не попасть в сводку.
+ * <p>
+ * При шардировании сводки склада лежат в его шарде (их пишет транзакция операции): отчёт по складу читает
+ * один шард, отчёт по всем складам — все шарды, а пересборка идёт в каждом шарде по его журналу
+ * (тип и дата операции хранятся в самих движениях).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MovementRollupService {
+
+    private static final Comparator<MovementRollup> LOCK_ORDER = Comparator
+            .comparing(MovementRollup::getProductId)
+            .thenComparing(MovementRollup::getWarehouseId);
+
+    private static final Comparator<MovementRollupView> REPORT_ORDER = Comparator
+            .comparing(MovementRollupView::getDate)
+            .thenComparing(MovementRollupView::getWarehouseId)
+            .thenComparing(MovementRollupView::getTransactionType);
+
+    private final MovementRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    /** Пересборки идут по одной; не synchronized, чтобы виртуальный поток не держал носитель на время SQL. */
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    @Value("${reports.movements.max-days:366}")
+    private int maxDays;
+
+    /**
+     * Результат пересборки сводок.
+     */
+    public record RebuildResult(LocalDate from, LocalDate to, int days, long rows, long elapsedMillis) {
+    }
+
+    /**
+     * Прибавить к сводкам изменения остатков операции (в её транзакции).
+     * Строки сводки обновляются в порядке (товар, склад), как и строки stock.
+     */
+    @Transactional
+    public void record(Shipment shipment, Collection<StockDelta> deltas) {
+        Map<List<Long>, Long> net = new HashMap<>();
+        for (StockDelta delta : deltas) {
+            net.merge(List.of(delta.product().getId(), delta.warehouse().getId()), (long) delta.amount(), Long::sum);
+        }
+        List<MovementRollup> rollups = new ArrayList<>(net.size());
+        net.forEach((pair, amount) -> {
+            if (amount == 0) {
+                return;
+            }
+            MovementRollup rollup = new MovementRollup();
+            rollup.setDate(shipment.getDate());
+            rollup.setProductId(pair.get(0));
+            rollup.setWarehouseId(pair.get(1));
+            rollup.setTransactionType(shipment.getTransactionType());
+            rollup.setQuantityIn(Math.max(amount, 0));
+            rollup.setQuantityOut(Math.max(-amount, 0));
+            rollups.add(rollup);
+        });
+        rollups.sort(LOCK_ORDER);
+        rollupRepository.addAll(rollups);
+    }
+
+    /**
+     * Приход и расход по дням и складам за период [from, to].
+     *
+     * @throws IllegalArgumentException если период пустой или длиннее {@code reports.movements.max-days}
+     */
+    public List<MovementRollupView> summarize(LocalDate from, LocalDate to, Long warehouseId, Long productId, String transactionType) {
+        checkRange(from, to);
+        if (warehouseId != null) {
+            return shardRouter.onWarehouse(warehouseId,
+                    () -> rollupRepository.summarize(from, to, warehouseId, productId, transactionType));
+        }
+        // склад закреплён за одним шардом, поэтому строки разных шардов не совпадают по (день, склад, тип)
+        List<MovementRollupView> rows = new ArrayList<>();
+        shardRouter.onEachShard(() -> rollupRepository.summarize(from, to, null, productId, transactionType))
+                .forEach(rows::addAll);
+        rows.sort(REPORT_ORDER);
+        return rows;
+    }
+
+    /**
+     * Пересобрать сводки за период [from, to] по журналу движений — каждый день в своей транзакции
+     * (при шардировании — в каждом шарде).
+     *
+     * @throws IllegalArgumentException если период пустой или длиннее {@code reports.movements.max-days}
+     */
+    public RebuildResult rebuild(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        rebuildLock.lock();
+        try {
+            return rebuildDays(from, to);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private RebuildResult rebuildDays(LocalDate from, LocalDate to) {
+        long started = System.nanoTime();
+        long rows = 0;
+        int days = 0;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            LocalDate day = date;
+            long[] dayRows = new long[1];
+            shardRouter.forEachShard(shard -> dayRows[0] += transactionTemplate.execute(status -> {
+                rollupRepository.fillMovementShipmentDetails(day);
+                rollupRepository.deleteByDate(day);
+                return rollupRepository.rebuildDate(day);
+            }));
+            rows += dayRows[0];
+            days++;
+        }
+        long elapsed = (System.nanoTime() - started) / 1_000_000;
+        log.info("Movement rollups rebuilt for {}..{}: {} rows in {} ms", from, to, rows, elapsed);
+        return new RebuildResult(from, to, days, rows, elapsed);
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Period end " + to + " is before its start " + from);
+        }
+        if (ChronoUnit.DAYS.between(from, to) + 1 > maxDays) {
+            throw new IllegalArgumentException("Period is longer than " + maxDays + " days");
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package warehouses.project.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.model.Product;
+import warehouses.project.model.Shipment;
+import warehouses.project.model.ShipmentItem;
+import warehouses.project.model.Warehouse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Режим выполнения операций "один писатель на склад".
+ * <p>
+ * Операции раскладываются по очередям по ID склада (перемещение — по складу-источнику).
+ * Каждую очередь разбирает ровно один поток, который забирает из неё до {@code max-batch}
+ * операций и проводит их одной транзакцией (group commit). Списания со склада проводит только
+ * его поток, но приход перемещения меняет строки stock склада-назначения, который разбирает другой поток.
+ * Поэтому групповая транзакция сначала блокирует строки остатков всех операций группы
+ * в порядке {@link StockDelta#LOCK_ORDER} ({@link StockService#lockRows}) — как порция пакета
+ * в {@link ShipmentBatchService}: группы со встречными перемещениями не блокируют друг друга взаимно.
+ * <p>
+ * Если групповая транзакция упала, она откатывается, и операции группы проводятся
+ * по одной — ошибка одной операции не влияет на остальные.
+ * <p>
+ * При шардировании группа фиксируется отдельной транзакцией в каждом шарде её складов. У перемещения
+ * между шардами ({@link ShardTransferService}) в группу попадает только резерв в шарде источника,
+ * а подтверждение в шарде назначения идёт в {@code shardTransferExecutor}, чтобы писатель его не ждал.
+ * <p>
+ * Включается свойством {@code shipments.execution.mode=partitioned}; по умолчанию
+ * ({@code direct}) операции выполняются в потоке запроса, как и раньше.
+ */
+@Slf4j
+@Service
+public class PartitionedShipmentExecutor {
+
+    private final ShipmentService shipmentService;
+    private final StockService stockService;
+    private final WarehouseService warehouseService;
+    private final ProductService productService;
+    private final ShardRouter shardRouter;
+    private final ShardTransferService shardTransferService;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor transferExecutor;
+
+    @Value("${shipments.execution.mode:direct}")
+    private String mode;
+
+    @Value("${shipments.execution.partitions:8}")
+    private int partitionCount;
+
+    @Value("${shipments.execution.max-batch:32}")
+    private int maxBatch;
+
+    @Value("${shipments.execution.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private Partition[] partitions = new Partition[0];
+
+    public PartitionedShipmentExecutor(
+            ShipmentService shipmentService,
+            StockService stockService,
+            WarehouseService warehouseService,
+            ProductService productService,
+            ShardRouter shardRouter,
+            ShardTransferService shardTransferService,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("shardTransferExecutor") Executor transferExecutor
+    ) {
+        this.shipmentService = shipmentService;
+        this.stockService = stockService;
+        this.warehouseService = warehouseService;
+        this.productService = productService;
+        this.shardRouter = shardRouter;
+        this.shardTransferService = shardTransferService;
+        this.transactionTemplate = transactionTemplate;
+        this.transferExecutor = transferExecutor;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i);
+            partitions[i].worker.start();
+        }
+        log.info("Shipments are executed in partitioned mode: {} partitions, group commit up to {}", partitionCount, maxBatch);
+    }
+
+    @PreDestroy
+    void stop() {
+        for (Partition partition : partitions) {
+            partition.worker.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return "partitioned".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Поставить приход в очередь склада.
+     *
+     * @param inTransaction выполняется в той же транзакции, что и операция (например, построение
+     *                      и сохранение ответа); его результат становится результатом future
+     */
+    public <T> CompletableFuture<T> submitIncoming(Long warehouseId, List<ShipmentItem> items, Long userId, Function<Shipment, T> inTransaction) {
+        return submit(warehouseId, new LockKeys(warehouseId, null, items, true), () -> inTransaction.apply(
+                shipmentService.createIncoming(warehouseId, ShipmentService.copyItems(items), userId)));
+    }
+
+    public <T> CompletableFuture<T> submitWriteOff(Long warehouseId, List<ShipmentItem> items, Function<Shipment, T> inTransaction) {
+        return submit(warehouseId, new LockKeys(warehouseId, null, items, false), () -> inTransaction.apply(
+                shipmentService.createWriteOff(warehouseId, ShipmentService.copyItems(items))));
+    }
+
+    /**
+     * Перемещение попадает в очередь склада-источника: там идёт списание, которое может не пройти.
+     * Приход на склад-назначение — атомарный upsert, его порядок относительно других операций не важен.
+     * У перемещения между шардами в транзакции группы проводится только резерв; подтверждение и inTransaction
+     * выполняются после фиксации группы в {@code shardTransferExecutor}.
+     */
+    public <T> CompletableFuture<T> submitTransfer(Long fromWarehouseId, Long toWarehouseId, List<ShipmentItem> items, Function<Shipment, T> inTransaction) {
+        if (shardRouter.isCrossShard(fromWarehouseId, toWarehouseId)) {
+            CompletableFuture<ShardTransferService.PendingTransfer> reserved = submit(fromWarehouseId,
+                    new LockKeys(fromWarehouseId, null, items, false),
+                    () -> shardTransferService.reserve(fromWarehouseId, toWarehouseId, ShipmentService.copyItems(items)));
+            return reserved.thenApplyAsync(pending -> inTransaction.apply(shardTransferService.complete(pending)), transferExecutor);
+        }
+        return submit(fromWarehouseId, new LockKeys(fromWarehouseId, toWarehouseId, items, false), () -> inTransaction.apply(
+                shipmentService.createTransfer(fromWarehouseId, toWarehouseId, ShipmentService.copyItems(items))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> submit(Long warehouseId, LockKeys lockKeys, Supplier<T> action) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Partitioned shipment execution is disabled");
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Command command = new Command(action, lockKeys, (CompletableFuture<Object>) (CompletableFuture<?>) result,
+                shardRouter.shardOf(warehouseId));
+        Partition partition = partitions[Math.floorMod(warehouseId.hashCode(), partitions.length)];
+        if (!partition.queue.offer(command)) {
+            throw new RejectedExecutionException("Очередь операций склада " + warehouseId + " переполнена");
+        }
+        return result;
+    }
+
+    /**
+     * Разложить группу по шардам (с сохранением порядка операций внутри шарда) и зафиксировать каждую часть.
+     */
+    private void commitGroup(List<Command> group) {
+        Map<Integer, List<Command>> byShard = new LinkedHashMap<>();
+        for (Command command : group) {
+            byShard.computeIfAbsent(command.shard, shard -> new ArrayList<>()).add(command);
+        }
+        byShard.forEach((shard, commands) -> shardRouter.runInShard(shard, () -> commitShardGroup(commands)));
+    }
+
+    private void commitShardGroup(List<Command> group) {
+        try {
+            List<Object> results = transactionTemplate.execute(status -> {
+                stockService.lockRows(lockDeltas(group));
+                List<Object> created = new ArrayList<>(group.size());
+                for (Command command : group) {
+                    created.add(command.action.get());
+                }
+                return created;
+            });
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).result.complete(results.get(i));
+            }
+        } catch (RuntimeException groupFailure) {
+            if (group.size() == 1) {
+                group.get(0).result.completeExceptionally(groupFailure);
+                return;
+            }
+            log.debug("Group commit of {} shipments failed, retrying one by one: {}", group.size(), groupFailure.getMessage());
+            for (Command command : group) {
+                try {
+                    command.result.complete(transactionTemplate.execute(status -> command.action.get()));
+                } catch (RuntimeException e) {
+                    command.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Изменения остатков группы для предварительной блокировки: склады и товары загружаются одним запросом.
+     * Неизвестные ID пропускаются — ошибку выдаст проведение самой операции.
+     */
+    private List<StockDelta> lockDeltas(List<Command> group) {
+        Set<Long> warehouseIds = new LinkedHashSet<>();
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (Command command : group) {
+            LockKeys keys = command.lockKeys;
+            warehouseIds.add(keys.warehouseId());
+            if (keys.toWarehouseId() != null) {
+                warehouseIds.add(keys.toWarehouseId());
+            }
+            for (ShipmentItem item : keys.items()) {
+                productIds.add(item.getProduct().getId());
+            }
+        }
+        Map<Long, Warehouse> warehouses = warehouseService.findByIds(warehouseIds).stream()
+                .collect(Collectors.toMap(Warehouse::getId, Function.identity()));
+        Map<Long, Product> products = productService.findByIds(productIds);
+
+        List<StockDelta> deltas = new ArrayList<>();
+        for (Command command : group) {
+            LockKeys keys = command.lockKeys;
+            Warehouse warehouse = warehouses.get(keys.warehouseId());
+            Warehouse to = keys.toWarehouseId() != null ? warehouses.get(keys.toWarehouseId()) : null;
+            for (ShipmentItem item : keys.items()) {
+                Product product = products.get(item.getProduct().getId());
+                if (product == null || warehouse == null) {
+                    continue;
+                }
+                int count = item.getCount() != null ? item.getCount() : 0;
+                deltas.add(keys.increase()
+                        ? StockDelta.increase(product, warehouse, count)
+                        : StockDelta.decrease(product, warehouse, count));
+                if (to != null) {
+                    deltas.add(StockDelta.increase(product, to, count));
+                }
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Строки остатков, которые меняет операция: склад (приход или списание) и, для перемещения внутри шарда, склад-назначение.
+     */
+    private record LockKeys(Long warehouseId, Long toWarehouseId, List<ShipmentItem> items, boolean increase) {
+    }
+
+    private record Command(Supplier<?> action, LockKeys lockKeys, CompletableFuture<Object> result, int shard) {
+    }
+
+    private class Partition {
+        private final BlockingQueue<Command> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Thread worker;
+
+        Partition(int index) {
+            worker = new Thread(this::drain, "shipment-writer-" + index);
+            worker.setDaemon(true);
+        }
+
+        private void drain() {
+            List<Command> group = new ArrayList<>(maxBatch);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Command first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    group.add(first);
+                    queue.drainTo(group, maxBatch - 1);
+                    commitGroup(group);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    log.error("Shipment writer failed", e);
+                    group.forEach(command -> command.result.completeExceptionally(e));
+                } finally {
+                    group.clear();
+                }
+            }
+            queue.forEach(command -> command.result.completeExceptionally(
+                    new RejectedExecutionException("Shipment writer is stopped")));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package warehouses.project.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import warehouses.project.dto.PinnedSiteDto;
+import warehouses.project.dto.PinningReportDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Диагностика удержания потоков-носителей в режиме виртуальных потоков.
+ * <p>
+ * Виртуальный поток, который блокируется внутри synchronized (или в native-вызове), не отпускает носитель:
+ * пока он ждёт, например, ответа БД, носитель простаивает, а носителей всего по числу ядер. JVM сообщает о таких
+ * случаях событием JFR jdk.VirtualThreadPinned; сервис слушает его в текущем процессе, группирует по первому кадру
+ * стека вне JDK (это и есть место, которое нужно переписать на ReentrantLock) и пишет в лог первое событие каждого места.
+ * Удержания короче {@code diagnostics.pinning.threshold} не учитываются.
+ * <p>
+ * Работает только при {@code spring.threads.virtual.enabled=true} на Java 21+.
+ */
+@Slf4j
+@Service
+public class PinningMonitorService {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int STACK_DEPTH = 15;
+
+    private final boolean virtualThreads;
+    private final boolean enabled;
+    private final Duration threshold;
+
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    private final LongAdder eventCount = new LongAdder();
+    private volatile RecordingStream stream;
+
+    public PinningMonitorService(
+            Environment environment,
+            @Value("${diagnostics.pinning.enabled:true}") boolean enabled,
+            @Value("${diagnostics.pinning.threshold:PT0.02S}") Duration threshold
+    ) {
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+        this.enabled = enabled;
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!virtualThreads || !enabled) {
+            return;
+        }
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(EVENT).withThreshold(threshold).withStackTrace();
+            recording.onEvent(EVENT, this::record);
+            recording.startAsync();
+            stream = recording;
+            log.info("Virtual thread pinning monitor started, threshold {} ms", threshold.toMillis());
+        } catch (RuntimeException e) {
+            log.warn("JFR is not available, virtual thread pinning is not monitored", e);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        RecordingStream recording = stream;
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    public PinningReportDto getReport() {
+        List<PinnedSiteDto> result = new ArrayList<>(sites.size());
+        sites.forEach((frame, site) -> result.add(PinnedSiteDto.builder()
+                .frame(frame)
+                .count(site.count.sum())
+                .totalMillis(site.totalNanos.sum() / 1_000_000)
+                .maxMillis(site.maxNanos.get() / 1_000_000)
+                .stackTrace(site.stackTrace)
+                .build()));
+        result.sort(Comparator.comparing(PinnedSiteDto::getTotalMillis).reversed());
+        return PinningReportDto.builder()
+                .virtualThreads(virtualThreads)
+                .monitoring(stream != null)
+                .thresholdMillis(threshold.toMillis())
+                .eventCount(eventCount.sum())
+                .sites(result)
+                .build();
+    }
+
+    /**
+     * Сбросить накопленные события (например, перед замером).
+     */
+    public void reset() {
+        sites.clear();
+        eventCount.reset();
+    }
+
+    private void record(RecordedEvent event) {
+        List<String> stackTrace = stackTrace(event.getStackTrace());
+        String frame = stackTrace.stream()
+                .filter(line -> !isJdkFrame(line))
+                .findFirst()
+                .orElse(stackTrace.isEmpty() ? "unknown" : stackTrace.get(0));
+        long nanos = event.getDuration().toNanos();
+
+        eventCount.increment();
+        Site site = sites.get(frame);
+        if (site == null) {
+            Site created = new Site(stackTrace);
+            site = sites.putIfAbsent(frame, created);
+            if (site == null) {
+                site = created;
+                log.warn("Virtual thread pinned its carrier for {} ms at {}\n\tat {}",
+                        nanos / 1_000_000, frame, String.join("\n\tat ", stackTrace));
+            }
+        }
+        site.count.increment();
+        site.totalNanos.add(nanos);
+        site.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static List<String> stackTrace(RecordedStackTrace stackTrace) {
+        List<String> lines = new ArrayList<>();
+        if (stackTrace == null) {
+            return lines;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (lines.size() == STACK_DEPTH) {
+                break;
+            }
+            lines.add(frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber());
+        }
+        return lines;
+    }
+
+    private static boolean isJdkFrame(String line) {
+        return line.startsWith("java.") || line.startsWith("jdk.") || line.startsWith("sun.");
+    }
+
+    private static final class Site {
+        private final List<String> stackTrace;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Site(List<String> stackTrace) {
+            this.stackTrace = stackTrace;
+        }
+    }
+}
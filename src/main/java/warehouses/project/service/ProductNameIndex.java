@@ -0,0 +1,213 @@
+package warehouses.project.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import warehouses.project.repository.ProductNameView;
+import warehouses.project.repository.ProductRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Триграммный инвертированный индекс названий товаров в памяти.
+ * <p>
+ * Заменяет {@code LOWER(name) LIKE '%x%'} (полное сканирование products) при поиске подстроки:
+ * из триграмм запроса берётся самый короткий список товаров, и каждый кандидат
+ * проверяется на вхождение подстроки. Результат точный, а не приблизительный.
+ * <p>
+ * Загружается при старте приложения и поддерживается {@link ProductService}.
+ * Пока индекс не загружен, а также для запросов короче трёх символов и слишком
+ * общих запросов {@link #findIds} возвращает пустой Optional — тогда поиск идёт в БД как раньше.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductNameIndex {
+
+    private static final int GRAM = 3;
+
+    private final ProductRepository productRepository;
+
+    @Value("${products.name-index.max-candidates:10000}")
+    private int maxCandidates;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private volatile boolean ready;
+
+    /**
+     * Загрузить индекс из БД. Товары читаются под блокировкой записи: запросы принимаются ещё до
+     * ApplicationReadyEvent, и {@link #put}/{@link #remove} после фиксации, пришедшие во время загрузки,
+     * ждут её и применяются поверх, а не теряются при очистке индекса.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        List<ProductNameView> products;
+        lock.writeLock().lock();
+        try {
+            products = productRepository.findAllProjectedBy();
+            names.clear();
+            postings.clear();
+            for (ProductNameView product : products) {
+                add(product.getId(), product.getName());
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product name index loaded: {} products, {} trigrams in {} ms",
+                products.size(), postings.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Найти ID товаров, название которых содержит подстроку (без учёта регистра).
+     *
+     * @return ID товаров или пустой Optional, если индекс не может ответить и нужен запрос в БД
+     */
+    public Optional<List<Long>> findIds(String term) {
+        if (!ready || term == null) {
+            return Optional.empty();
+        }
+        String needle = normalize(term);
+        if (needle.length() < GRAM) {
+            return Optional.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings smallest = null;
+            for (int i = 0; i + GRAM <= needle.length(); i++) {
+                Postings candidates = postings.get(trigram(needle, i));
+                if (candidates == null) {
+                    return Optional.of(List.of());
+                }
+                if (smallest == null || candidates.size < smallest.size) {
+                    smallest = candidates;
+                }
+            }
+
+            List<Long> matches = new ArrayList<>();
+            for (int i = 0; i < smallest.size; i++) {
+                long id = smallest.ids[i];
+                if (names.get(id).contains(needle)) {
+                    if (matches.size() == maxCandidates) {
+                        return Optional.empty();
+                    }
+                    matches.add(id);
+                }
+            }
+            return Optional.of(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавить или переиндексировать товар после сохранения.
+     */
+    public void put(Long id, String name) {
+        lock.writeLock().lock();
+        try {
+            remove0(id);
+            add(id, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Убрать товар из индекса после удаления.
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            remove0(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Long id, String name) {
+        String normalized = normalize(name);
+        names.put(id, normalized);
+        for (long gram : distinctTrigrams(normalized)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(id);
+        }
+    }
+
+    private void remove0(Long id) {
+        String previous = names.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (long gram : distinctTrigrams(previous)) {
+            Postings list = postings.get(gram);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] distinctTrigrams(String value) {
+        if (value.length() < GRAM) {
+            return new long[0];
+        }
+        long[] grams = new long[value.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = trigram(value, i);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    /**
+     * Три UTF-16 символа, упакованные в одно число.
+     */
+    private static long trigram(String value, int offset) {
+        return ((long) value.charAt(offset) << 32)
+                | ((long) value.charAt(offset + 1) << 16)
+                | value.charAt(offset + 2);
+    }
+
+    /**
+     * Список ID товаров одной триграммы: массив примитивов вместо Set&lt;Long&gt;,
+     * чтобы индекс по сотням тысяч товаров занимал десятки, а не сотни мегабайт.
+     */
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
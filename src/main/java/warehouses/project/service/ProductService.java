@@ -3,34 +3,74 @@ package warehouses.project.service;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import warehouses.project.dto.ProductSuggestionDto;
 import warehouses.project.model.Product;
 import warehouses.project.repository.ProductRepository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final ProductNameIndex productNameIndex;
+    private final ProductSuggestIndex productSuggestIndex;
+    private final ChangeLogService changeLogService;
+    private final ShardReferenceSync shardReferenceSync;
 
     /**
      * Получить все товары с пагинацией.
      */
+    @Transactional(readOnly = true)
     public Page<Product> getAllProducts(Pageable pageable) {
         return productRepository.findAll(pageable);
     }
 
     /**
-     * Поиск по названию (с пагинацией)
+     * Поиск по названию (с пагинацией).
+     * ID подходящих товаров берутся из {@link ProductNameIndex}; LIKE-запрос — только если индекс не может ответить.
      */
+    @Transactional(readOnly = true)
     public Page<Product> searchProducts(String name, Pageable pageable) {
         if (name == null || name.isBlank()) {
             return productRepository.findAll(pageable);
         }
+        Optional<List<Long>> ids = productNameIndex.findIds(name);
+        if (ids.isPresent()) {
+            return ids.get().isEmpty()
+                    ? Page.empty(pageable)
+                    : productRepository.findByIdIn(ids.get(), pageable);
+        }
         return productRepository.findByNameContainingIgnoreCase(name, pageable);
     }
 
+    /**
+     * Подсказки для автодополнения по началу названия (не больше {@link ProductSuggestIndex#MAX_SUGGESTIONS}).
+     * Пока индекс не загружен, подсказки берутся из БД по алфавиту, без учёта частоты движения.
+     */
+    public List<ProductSuggestionDto> suggest(String prefix, int limit) {
+        int size = Math.max(1, Math.min(limit, ProductSuggestIndex.MAX_SUGGESTIONS));
+        if (productSuggestIndex.isReady()) {
+            return productSuggestIndex.suggest(prefix, size);
+        }
+        return productRepository.findByNameStartingWithIgnoreCase(prefix, PageRequest.of(0, size, Sort.by("name"))).stream()
+                .map(product -> new ProductSuggestionDto(product.getId(), product.getName()))
+                .toList();
+    }
+
     /**
      * Найти товар по ID.
      *
@@ -41,28 +81,95 @@ public class ProductService {
                 .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + id));
     }
 
+    /**
+     * Найти товары по набору ID: из кэша второго уровня, недостающие — одним запросом.
+     *
+     * @return товары, сгруппированные по ID
+     * @throws EntityNotFoundException если хотя бы один товар не найден
+     */
+    public Map<Long, Product> getByIds(Collection<Long> ids) {
+        Map<Long, Product> products = findByIds(ids);
+        for (Long id : ids) {
+            if (!products.containsKey(id)) {
+                throw new EntityNotFoundException("Product not found with id: " + id);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Найти товары по набору ID: из кэша второго уровня, недостающие — одним запросом.
+     *
+     * @return найденные товары, сгруппированные по ID; отсутствующих ID в результате нет
+     */
+    public Map<Long, Product> findByIds(Collection<Long> ids) {
+        return productRepository.loadAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
     /**
      * Создать новый товар.
      */
+    @Transactional
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        changeLogService.recordProduct(saved.getId(), false);
+        shardReferenceSync.syncAfterCommit(ShardReferenceSync.PRODUCTS, saved.getId());
+        indexAfterCommit(saved.getId(), saved.getName());
+        return saved;
     }
 
     /**
      * Обновить существующий товар.
      */
+    @Transactional
     public Product updateProduct(Long id, Product updatedProduct) {
         Product existing = getById(id);
         existing.setName(updatedProduct.getName());
         existing.setDescription(updatedProduct.getDescription());
         existing.setUnit(updatedProduct.getUnit());
-        return productRepository.save(existing);
+        Product saved = productRepository.save(existing);
+        changeLogService.recordProduct(saved.getId(), false);
+        shardReferenceSync.syncAfterCommit(ShardReferenceSync.PRODUCTS, saved.getId());
+        indexAfterCommit(saved.getId(), saved.getName());
+        return saved;
     }
 
     /**
-     * Удалить товар по ID.
+     * Удалить товар по ID. При шардировании копии товара сначала удаляются из шардов.
      */
+    @Transactional
     public void deleteProduct(Long id) {
+        shardReferenceSync.deleteFromShards(ShardReferenceSync.PRODUCTS, id);
         productRepository.deleteById(id);
+        changeLogService.recordProduct(id, true);
+        indexAfterCommit(id, null);
+    }
+
+    /**
+     * Обновить индексы названий после фиксации: откаченное изменение не должно попасть в поиск и подсказки.
+     *
+     * @param name новое название (null — товар удалён)
+     */
+    private void indexAfterCommit(Long id, String name) {
+        Runnable apply = () -> {
+            if (name != null) {
+                productNameIndex.put(id, name);
+                productSuggestIndex.put(id, name);
+            } else {
+                productNameIndex.remove(id);
+                productSuggestIndex.remove(id);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
     }
 }
@@ -0,0 +1,441 @@
+package warehouses.project.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import warehouses.project.dto.ProductSuggestionDto;
+import warehouses.project.model.ShipmentItem;
+import warehouses.project.repository.ProductMovementView;
+import warehouses.project.repository.ProductNameView;
+import warehouses.project.repository.ProductRepository;
+import warehouses.project.repository.ShipmentItemRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Автодополнение названий товаров по префиксу на сжатом префиксном дереве (radix trie).
+ * <p>
+ * Рёбра дерева хранят целые фрагменты названий, поэтому узлов примерно столько же,
+ * сколько товаров. Узел с поддеревом больше {@link #MAX_SUGGESTIONS} товаров хранит готовый
+ * список лучших ID, упорядоченный по частоте движения товара (числу строк операций),
+ * поэтому ответ — это спуск по префиксу и копирование не более десяти ID.
+ * <p>
+ * Загружается при старте; товары обновляются {@link ProductService}. Частота движения после фиксации операции
+ * только накапливается в счётчиках без блокировки индекса и применяется пачкой раз в
+ * {@code products.suggest.movement-flush-interval}: одна блокировка на запись и один пересчёт пути на товар за пачку.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductSuggestIndex {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final char[] EMPTY_LABEL = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final long[] NO_IDS = new long[0];
+
+    private final ProductRepository productRepository;
+    private final ShipmentItemRepository shipmentItemRepository;
+    private final ShardRouter shardRouter;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Long> movements = new HashMap<>();
+    /** Строки операций, ещё не учтённые в {@link #movements}. */
+    private final Map<Long, Long> pendingMovements = new ConcurrentHashMap<>();
+    private final Comparator<Long> rank = Comparator
+            .comparing((Long id) -> movements.getOrDefault(id, 0L)).reversed()
+            .thenComparing(id -> names.get(id))
+            .thenComparing(Comparator.naturalOrder());
+    private Node root = new Node(EMPTY_LABEL);
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        List<List<ProductMovementView>> productMovements = shardRouter.onEachShard(shipmentItemRepository::countMovementsByProduct);
+
+        List<ProductNameView> products;
+        lock.writeLock().lock();
+        try {
+            // товары — под блокировкой: put/remove, пришедшие во время загрузки, применятся после неё, а не потеряются
+            products = productRepository.findAllProjectedBy();
+            names.clear();
+            movements.clear();
+            root = new Node(EMPTY_LABEL);
+            for (List<ProductMovementView> shard : productMovements) {
+                for (ProductMovementView movement : shard) {
+                    movements.merge(movement.getProductId(), movement.getMovements(), Long::sum);
+                }
+            }
+            for (ProductNameView product : products) {
+                names.put(product.getId(), product.getName());
+                insert(key(product.getName()), product.getId());
+            }
+            refreshSubtree(root);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product suggest index loaded: {} products in {} ms",
+                products.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Подсказки по префиксу названия (без учёта регистра), самые часто движущиеся товары первыми.
+     */
+    public List<ProductSuggestionDto> suggest(String prefix, int limit) {
+        String key = key(prefix);
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int pos = 0;
+            while (pos < key.length()) {
+                int index = node.childIndex(key.charAt(pos));
+                if (index < 0) {
+                    return List.of();
+                }
+                node = node.children[index];
+                int matched = matchLength(node.label, key, pos);
+                if (matched < node.label.length && pos + matched < key.length()) {
+                    return List.of();
+                }
+                pos += matched;
+            }
+
+            long[] best = node.top != null ? node.top : rankedSubtree(node);
+            int count = Math.min(Math.min(limit, MAX_SUGGESTIONS), best.length);
+            List<ProductSuggestionDto> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                suggestions.add(new ProductSuggestionDto(best[i], names.get(best[i])));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавить или переиндексировать товар после сохранения.
+     */
+    public void put(Long id, String name) {
+        lock.writeLock().lock();
+        try {
+            remove0(id);
+            names.put(id, name);
+            refreshPath(insert(key(name), id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Убрать товар из индекса после удаления.
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            remove0(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Учесть строки зафиксированной операции в частоте движения товаров (применяется {@link #applyMovements}).
+     */
+    @TransactionalEventListener
+    public void onShipmentCreated(ShipmentCreatedEvent event) {
+        if (!ready) {
+            return;
+        }
+        for (ShipmentItem item : event.shipment().getItems()) {
+            pendingMovements.merge(item.getProduct().getId(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Применить накопленные движения: узлы, общие для путей нескольких товаров, пересчитываются один раз,
+     * от глубоких к корню.
+     */
+    @Scheduled(fixedDelayString = "${products.suggest.movement-flush-interval:PT1S}")
+    public void applyMovements() {
+        if (pendingMovements.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Map<Node, Integer> dirty = new IdentityHashMap<>();
+            for (Long productId : pendingMovements.keySet()) {
+                Long count = pendingMovements.remove(productId);
+                String name = names.get(productId);
+                if (count == null || name == null) {
+                    continue;
+                }
+                movements.merge(productId, count, Long::sum);
+                List<Node> path = pathTo(key(name));
+                if (path != null) {
+                    for (int depth = 0; depth < path.size(); depth++) {
+                        dirty.put(path.get(depth), depth);
+                    }
+                }
+            }
+            List<Map.Entry<Node, Integer>> nodes = new ArrayList<>(dirty.entrySet());
+            nodes.sort(Map.Entry.<Node, Integer>comparingByValue().reversed());
+            for (Map.Entry<Node, Integer> node : nodes) {
+                refresh(node.getKey());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Вставка без пересчёта списков лучших.
+     *
+     * @return узлы от корня до узла товара
+     */
+    private List<Node> insert(String key, long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int pos = 0;
+        while (pos < key.length()) {
+            int index = node.childIndex(key.charAt(pos));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(pos).toCharArray());
+                node.insertChild(-index - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[index];
+            int matched = matchLength(child.label, key, pos);
+            if (matched < child.label.length) {
+                Node split = new Node(Arrays.copyOf(child.label, matched));
+                child.label = Arrays.copyOfRange(child.label, matched, child.label.length);
+                split.children = new Node[]{child};
+                split.size = child.size;
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            path.add(node);
+            pos += matched;
+        }
+        node.ids = Arrays.copyOf(node.ids, node.ids.length + 1);
+        node.ids[node.ids.length - 1] = id;
+        for (Node onPath : path) {
+            onPath.size++;
+        }
+        return path;
+    }
+
+    private void remove0(Long id) {
+        String previous = names.remove(id);
+        if (previous == null) {
+            return;
+        }
+        List<Node> path = pathTo(key(previous));
+        if (path == null) {
+            return;
+        }
+        Node terminal = path.get(path.size() - 1);
+        int at = -1;
+        for (int i = 0; i < terminal.ids.length; i++) {
+            if (terminal.ids[i] == id) {
+                at = i;
+            }
+        }
+        if (at < 0) {
+            return;
+        }
+        long[] ids = new long[terminal.ids.length - 1];
+        System.arraycopy(terminal.ids, 0, ids, 0, at);
+        System.arraycopy(terminal.ids, at + 1, ids, at, ids.length - at);
+        terminal.ids = ids;
+        for (Node onPath : path) {
+            onPath.size--;
+        }
+
+        // пустой лист убирается, а оставшийся с одним ребёнком пустой узел сливается с ним
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            Node parent = path.get(i - 1);
+            if (node.size == 0) {
+                parent.removeChild(node);
+                path.remove(i);
+            } else if (node.ids.length == 0 && node.children.length == 1) {
+                Node only = node.children[0];
+                char[] merged = Arrays.copyOf(node.label, node.label.length + only.label.length);
+                System.arraycopy(only.label, 0, merged, node.label.length, only.label.length);
+                only.label = merged;
+                parent.children[parent.childIndex(merged[0])] = only;
+                path.remove(i);
+            }
+        }
+        refreshPath(path);
+    }
+
+    private List<Node> pathTo(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int pos = 0;
+        while (pos < key.length()) {
+            int index = node.childIndex(key.charAt(pos));
+            if (index < 0) {
+                return null;
+            }
+            node = node.children[index];
+            if (matchLength(node.label, key, pos) < node.label.length) {
+                return null;
+            }
+            path.add(node);
+            pos += node.label.length;
+        }
+        return path;
+    }
+
+    private static int matchLength(char[] label, String key, int pos) {
+        int matched = 0;
+        while (matched < label.length && pos + matched < key.length() && label[matched] == key.charAt(pos + matched)) {
+            matched++;
+        }
+        return matched;
+    }
+
+    private void refreshPath(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            refresh(path.get(i));
+        }
+    }
+
+    private void refreshSubtree(Node node) {
+        for (Node child : node.children) {
+            refreshSubtree(child);
+        }
+        refresh(node);
+    }
+
+    /**
+     * Пересчитать список лучших узла из собственных ID и списков детей (дети уже актуальны).
+     */
+    private void refresh(Node node) {
+        if (node.size <= MAX_SUGGESTIONS) {
+            node.top = null;
+            return;
+        }
+        List<Long> candidates = new ArrayList<>();
+        for (long id : node.ids) {
+            candidates.add(id);
+        }
+        for (Node child : node.children) {
+            for (long id : child.top != null ? child.top : rankedSubtree(child)) {
+                candidates.add(id);
+            }
+        }
+        node.top = best(candidates);
+    }
+
+    /**
+     * Все ID маленького поддерева (не больше {@link #MAX_SUGGESTIONS}) в порядке ранга.
+     */
+    private long[] rankedSubtree(Node node) {
+        List<Long> ids = new ArrayList<>(node.size);
+        collect(node, ids);
+        return best(ids);
+    }
+
+    private static void collect(Node node, List<Long> ids) {
+        for (long id : node.ids) {
+            ids.add(id);
+        }
+        for (Node child : node.children) {
+            collect(child, ids);
+        }
+    }
+
+    private long[] best(List<Long> candidates) {
+        candidates.sort(rank);
+        int count = Math.min(MAX_SUGGESTIONS, candidates.size());
+        long[] top = new long[count];
+        for (int i = 0; i < count; i++) {
+            top[i] = candidates.get(i);
+        }
+        return top;
+    }
+
+    private static final class Node {
+        private char[] label;
+        private Node[] children = NO_CHILDREN;
+        private long[] ids = NO_IDS;
+        private int size;
+        private long[] top;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        /**
+         * Двоичный поиск ребёнка по первому символу ребра.
+         *
+         * @return индекс ребёнка или (-(точка вставки) - 1)
+         */
+        int childIndex(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].label[0];
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void insertChild(int at, Node child) {
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, at);
+            grown[at] = child;
+            System.arraycopy(children, at, grown, at + 1, children.length - at);
+            children = grown;
+        }
+
+        void removeChild(Node child) {
+            int at = childIndex(child.label[0]);
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, at);
+            System.arraycopy(children, at + 1, shrunk, at, shrunk.length - at);
+            children = shrunk;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package warehouses.project.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import warehouses.project.config.ShardRoutingDataSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Копии справочников (товары, склады, пользователи) в шардах 1..N-1.
+ * <p>
+ * Справочники меняются только в основной БД (шард 0). Шардам копии нужны для внешних ключей и JOIN'ов
+ * операций и остатков с товарами и складами. Изменённая запись копируется во все шарды сразу после фиксации
+ * изменения, поэтому к ответу на её создание она уже есть в шардах; полная копия делается при запуске и раз
+ * в {@code sharding.reference-sync-interval} — она догоняет то, что не удалось скопировать (шард был недоступен).
+ * <p>
+ * Копирование — upsert по первичному ключу. Запись удаляется из шардов до удаления из основной БД
+ * ({@link #deleteFromShards}): если на неё ссылаются операции или остатки шарда, удаление отклоняется,
+ * как отклонил бы его внешний ключ в одной БД. Полная копия удаляет из шардов и записи, которых уже нет
+ * в основной БД (удаление из основной БД, опередившее копирование).
+ */
+@Slf4j
+@Service
+public class ShardReferenceSync {
+
+    public static final String PRODUCTS = "products";
+    public static final String WAREHOUSES = "warehouses";
+    public static final String USERS = "users";
+
+    private static final List<String> TABLES = List.of(WAREHOUSES, PRODUCTS, USERS);
+    private static final int BATCH_SIZE = 500;
+
+    private final ShardRoutingDataSource shards;
+
+    public ShardReferenceSync(ObjectProvider<ShardRoutingDataSource> shards) {
+        this.shards = shards.getIfAvailable();
+    }
+
+    /**
+     * Скопировать запись в шарды после фиксации текущей транзакции (без транзакции — сразу).
+     * Ошибка копирования не отменяет изменения: запись догонит полная копия.
+     */
+    public void syncAfterCommit(String table, Long id) {
+        if (shards == null || shards.getShardCount() < 2 || id == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            syncRow(table, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                syncRow(table, id);
+            }
+        });
+    }
+
+    /**
+     * Удалить запись из шардов 1..N-1 (каждый шард — своей транзакцией). Вызывается до удаления из основной БД:
+     * если удаление там не пройдёт, запись вернёт в шарды полная копия.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException если на запись ссылаются данные шарда
+     */
+    public void deleteFromShards(String table, Long id) {
+        if (shards == null || shards.getShardCount() < 2 || id == null) {
+            return;
+        }
+        for (int shard = 1; shard < shards.getShardCount(); shard++) {
+            new JdbcTemplate(shards.getShard(shard)).update("DELETE FROM " + table + " WHERE id = ?", id);
+        }
+    }
+
+    /**
+     * Полная копия справочников во все шарды.
+     */
+    public void syncAll() {
+        if (shards == null || shards.getShardCount() < 2) {
+            return;
+        }
+        long started = System.nanoTime();
+        JdbcTemplate source = new JdbcTemplate(shards.getShard(0));
+        for (String table : TABLES) {
+            List<Map<String, Object>> rows = source.queryForList("SELECT * FROM " + table);
+            Set<Object> ids = new HashSet<>();
+            rows.forEach(row -> ids.add(row.get("id")));
+            for (int shard = 1; shard < shards.getShardCount(); shard++) {
+                upsert(shard, table, rows);
+                deleteMissing(shard, table, ids);
+            }
+        }
+        log.info("Reference data copied to {} shards in {} ms",
+                shards.getShardCount() - 1, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${sharding.reference-sync-interval:PT5M}",
+            initialDelayString = "${sharding.reference-sync-interval:PT5M}")
+    public void scheduledSync() {
+        try {
+            syncAll();
+        } catch (RuntimeException e) {
+            log.warn("Reference data sync failed: {}", e.getMessage());
+        }
+    }
+
+    private void syncRow(String table, Long id) {
+        try {
+            List<Map<String, Object>> rows = new JdbcTemplate(shards.getShard(0))
+                    .queryForList("SELECT * FROM " + table + " WHERE id = ?", id);
+            for (int shard = 1; shard < shards.getShardCount(); shard++) {
+                upsert(shard, table, rows);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not copy {} {} to shards, it will be copied by the next full sync: {}", table, id, e.getMessage());
+        }
+    }
+
+    /**
+     * Удалить из шарда записи, которых нет в основной БД. Запись, на которую ссылаются данные шарда, остаётся.
+     */
+    private void deleteMissing(int shard, String table, Set<Object> ids) {
+        JdbcTemplate target = new JdbcTemplate(shards.getShard(shard));
+        for (Long id : target.queryForList("SELECT id FROM " + table, Long.class)) {
+            if (ids.contains(id)) {
+                continue;
+            }
+            try {
+                target.update("DELETE FROM " + table + " WHERE id = ?", id);
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Deleted {} {} is still referenced in shard {}, its copy is kept", table, id, shard);
+            }
+        }
+    }
+
+    private void upsert(int shard, String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        StringJoiner names = new StringJoiner(", ");
+        StringJoiner placeholders = new StringJoiner(", ");
+        StringJoiner updates = new StringJoiner(", ");
+        for (String column : columns) {
+            names.add(column);
+            placeholders.add("?");
+            if (!column.equalsIgnoreCase("id")) {
+                updates.add(column + " = VALUES(" + column + ")");
+            }
+        }
+        String sql = "INSERT INTO " + table + " (" + names + ") VALUES (" + placeholders + ")"
+                + " ON DUPLICATE KEY UPDATE " + updates;
+
+        JdbcTemplate target = new JdbcTemplate(shards.getShard(shard));
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            for (Map<String, Object> row : rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()))) {
+                Object[] values = new Object[columns.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = row.get(columns.get(i));
+                }
+                batch.add(values);
+            }
+            target.batchUpdate(sql, batch);
+        }
+    }
+}
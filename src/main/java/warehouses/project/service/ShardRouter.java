@@ -0,0 +1,451 @@
+package warehouses.project.service;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.config.ShardContext;
+import warehouses.project.config.ShardRoutingDataSource;
+import warehouses.project.repository.WarehouseRepository;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Выбор шарда для операций со складами.
+ * <p>
+ * Склад закреплён за шардом (warehouses.shard, null — шард 0). Записи шарда получают ID из его диапазона
+ * [{@link #idBase}(k), {@link #idBase}(k + 1)), поэтому шард операции или остатка
+ * определяется по ID без поиска.
+ * <p>
+ * Транзакция работает с одним шардом: шард выбирается до её первого запроса, а попытка выбрать другой шард
+ * внутри той же транзакции — ошибка (IllegalStateException). Списки по всем шардам читаются параллельно
+ * в {@code shardFanOutExecutor}, у каждого шарда — своя транзакция только для чтения. Связи сущностей,
+ * нужные после чтения, инициализируются в транзакции шарда: после неё ленивая загрузка пошла бы в шард 0.
+ * <p>
+ * Без шардирования ({@code sharding.enabled=false}) шард один, и все методы просто выполняют действие.
+ */
+@Slf4j
+@Service
+public class ShardRouter {
+
+    /**
+     * Число младших бит ID внутри диапазона шарда.
+     */
+    public static final int ID_SHARD_SHIFT = 40;
+
+    private final int shardCount;
+    private final Executor fanOutExecutor;
+    private final WarehouseRepository warehouseRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Map<Long, Integer> warehouseShards = new ConcurrentHashMap<>();
+
+    public ShardRouter(
+            ObjectProvider<ShardRoutingDataSource> shards,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("shardFanOutExecutor") Executor fanOutExecutor,
+            WarehouseRepository warehouseRepository
+    ) {
+        ShardRoutingDataSource routing = shards.getIfAvailable();
+        this.shardCount = routing != null ? routing.getShardCount() : 1;
+        this.fanOutExecutor = fanOutExecutor;
+        this.warehouseRepository = warehouseRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Первый ID диапазона шарда.
+     */
+    public static long idBase(int shard) {
+        return (long) shard << ID_SHARD_SHIFT;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Шард склада.
+     *
+     * @throws EntityNotFoundException если склада нет
+     */
+    public int shardOf(Long warehouseId) {
+        if (!isSharded()) {
+            return 0;
+        }
+        Integer cached = warehouseShards.get(warehouseId);
+        if (cached != null) {
+            return cached;
+        }
+        int shard = warehouseRepository.findShardById(warehouseId)
+                .orElseThrow(() -> new EntityNotFoundException("Warehouse not found with id: " + warehouseId));
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalStateException("Warehouse " + warehouseId + " is assigned to shard " + shard
+                    + ", but only " + shardCount + " shards are configured");
+        }
+        warehouseShards.put(warehouseId, shard);
+        return shard;
+    }
+
+    /**
+     * Шард фильтра по складу: null — все шарды.
+     */
+    public Integer shardOrAll(Long warehouseId) {
+        return warehouseId != null ? shardOf(warehouseId) : null;
+    }
+
+    /**
+     * Шард записи по её ID. ID вне всех диапазонов относится к шарду 0 (там запись просто не найдётся).
+     */
+    public int shardOfId(Long id) {
+        long shard = id != null && id > 0 ? id >>> ID_SHARD_SHIFT : 0;
+        return shard < shardCount ? (int) shard : 0;
+    }
+
+    public boolean isCrossShard(Long fromWarehouseId, Long toWarehouseId) {
+        return isSharded() && shardOf(fromWarehouseId) != shardOf(toWarehouseId);
+    }
+
+    /**
+     * Проверить, что изменение данных склада выполняется в его шарде.
+     *
+     * @throws IllegalStateException если выбран другой шард (вызывающий не выбрал шард склада)
+     */
+    public void checkShard(Long warehouseId) {
+        if (!isSharded()) {
+            return;
+        }
+        Integer selected = currentShard();
+        int current = selected != null ? selected : 0;
+        int expected = shardOf(warehouseId);
+        if (current != expected) {
+            throw new IllegalStateException("Warehouse " + warehouseId + " belongs to shard " + expected
+                    + ", but the operation runs in shard " + current);
+        }
+    }
+
+    /**
+     * Шард, выбранный текущей транзакцией или потоком; null — шард не выбран (основная БД).
+     */
+    public Integer currentShard() {
+        Integer bound = (Integer) TransactionSynchronizationManager.getResource(this);
+        return bound != null ? bound : ShardContext.current();
+    }
+
+    /**
+     * Шард для нового склада — тот, за которым закреплено меньше всего складов.
+     */
+    public int leastLoadedShard() {
+        long[] counts = new long[shardCount];
+        for (Object[] row : warehouseRepository.countByShard()) {
+            int shard = ((Number) row[0]).intValue();
+            if (shard >= 0 && shard < shardCount) {
+                counts[shard] = ((Number) row[1]).longValue();
+            }
+        }
+        int least = 0;
+        for (int shard = 1; shard < shardCount; shard++) {
+            if (counts[shard] < counts[least]) {
+                least = shard;
+            }
+        }
+        return least;
+    }
+
+    /**
+     * Выполнить действие в шарде. Транзакцию действие начинает само (или она начата, но ещё не обращалась к БД).
+     *
+     * @throws IllegalStateException если текущая транзакция уже выбрала другой шард
+     */
+    public <T> T inShard(int shard, Supplier<T> action) {
+        if (!isSharded()) {
+            return action.get();
+        }
+        bindTransaction(shard);
+        return ShardContext.call(shard, action);
+    }
+
+    public void runInShard(int shard, Runnable action) {
+        inShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Выполнить действие в шарде склада.
+     */
+    public <T> T onWarehouse(Long warehouseId, Supplier<T> action) {
+        return inShard(shardOf(warehouseId), action);
+    }
+
+    /**
+     * Прочитать запись в шарде и инициализировать нужные после чтения связи.
+     */
+    public <T> T read(int shard, Supplier<T> query, Consumer<? super T> initializer) {
+        if (!isSharded()) {
+            return query.get();
+        }
+        return inShard(shard, () -> {
+            T result = query.get();
+            initializer.accept(result);
+            return result;
+        });
+    }
+
+    /**
+     * Выполнить действие в каждом шарде по очереди, в потоке вызова (обслуживание: очистка, копирование).
+     * Ошибка шарда не останавливает остальные и пробрасывается в конце.
+     */
+    public void forEachShard(Consumer<Integer> action) {
+        RuntimeException failure = null;
+        for (int shard = 0; shard < shardCount; shard++) {
+            int current = shard;
+            try {
+                runInShard(current, () -> action.accept(current));
+            } catch (RuntimeException e) {
+                log.warn("Shard {} maintenance failed: {}", current, e.getMessage());
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Выполнить запрос во всех шардах параллельно, каждый — в своей транзакции только для чтения.
+     * Ошибка любого шарда — ошибка всего запроса: неполный список выглядел бы как полный.
+     *
+     * @return результаты по шардам, в порядке шардов
+     */
+    public <T> List<T> onEachShard(Supplier<T> query) {
+        if (!isSharded()) {
+            T result = readOnlyTransaction.execute(status -> query.get());
+            return Collections.singletonList(result);
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> ShardContext.call(target, () -> readOnlyTransaction.execute(status -> query.get())),
+                    fanOutExecutor));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (CompletableFuture<T> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    /**
+     * Страница по одному шарду или по всем.
+     * <p>
+     * Из каждого шарда берутся первые (page + 1) * size строк в порядке сортировки страницы (с ID для
+     * однозначности), они сливаются слиянием отсортированных списков, и из результата вырезается страница.
+     * Поэтому глубокие страницы дороже первых — для прохода по всему списку есть keyset-пагинация ({@link #slice}).
+     * Общее количество — сумма количеств по шардам.
+     *
+     * @param shard       шард (null — все шарды)
+     * @param query       запрос одного шарда
+     * @param initializer инициализация связей, нужных после чтения
+     */
+    public <T> Page<T> page(Integer shard, Pageable pageable, Function<Pageable, Page<T>> query, Consumer<? super T> initializer) {
+        if (!isSharded()) {
+            return query.apply(pageable);
+        }
+        if (shard != null) {
+            return inShard(shard, () -> initialized(query.apply(pageable), initializer));
+        }
+        Sort sort = withIdTiebreak(pageable.getSort());
+        Pageable perShard = pageable.isPaged()
+                ? PageRequest.of(0, (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize()), sort)
+                : Pageable.unpaged(sort);
+        List<Page<T>> pages = onEachShard(() -> initialized(query.apply(perShard), initializer));
+
+        List<List<T>> contents = new ArrayList<>(pages.size());
+        long total = 0;
+        for (Page<T> page : pages) {
+            contents.add(page.getContent());
+            total += page.getTotalElements();
+        }
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(merge(contents, sort, Integer.MAX_VALUE), pageable, total);
+        }
+        List<T> merged = merge(contents, sort, perShard.getPageSize());
+        int from = (int) Math.min(pageable.getOffset(), merged.size());
+        return new PageImpl<>(new ArrayList<>(merged.subList(from, merged.size())), pageable, total);
+    }
+
+    /**
+     * Keyset-порция по одному шарду или по всем. Запрос шарда уже отбирает строки после курсора
+     * и сортирует по ключу курсора, поэтому из каждого шарда нужна лишь его порция, а из слияния — первые size строк.
+     *
+     * @param shard шард (null — все шарды)
+     */
+    public <T> Slice<T> slice(Integer shard, Pageable pageable, Function<Pageable, Slice<T>> query, Consumer<? super T> initializer) {
+        if (!isSharded()) {
+            return query.apply(pageable);
+        }
+        if (shard != null) {
+            return inShard(shard, () -> initialized(query.apply(pageable), initializer));
+        }
+        List<Slice<T>> slices = onEachShard(() -> initialized(query.apply(pageable), initializer));
+
+        List<List<T>> contents = new ArrayList<>(slices.size());
+        boolean hasNext = false;
+        for (Slice<T> slice : slices) {
+            contents.add(slice.getContent());
+            hasNext |= slice.hasNext();
+        }
+        int size = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        List<T> merged = merge(contents, pageable.getSort(), size == Integer.MAX_VALUE ? size : size + 1);
+        if (merged.size() > size) {
+            merged = new ArrayList<>(merged.subList(0, size));
+            hasNext = true;
+        }
+        return new SliceImpl<>(merged, pageable, hasNext);
+    }
+
+    /**
+     * Слить отсортированные списки шардов в один, не длиннее limit.
+     * Значения ключей сортировки читаются из каждой строки один раз.
+     */
+    static <T> List<T> merge(List<List<T>> sortedLists, Sort sort, int limit) {
+        Comparator<Object[]> keyOrder = keyComparator(sort);
+        List<String> properties = sort.stream().map(Sort.Order::getProperty).toList();
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>((a, b) -> keyOrder.compare(a.keys, b.keys));
+        for (List<T> list : sortedLists) {
+            if (!list.isEmpty()) {
+                heads.add(new Cursor<>(list, 0, keys(list.get(0), properties)));
+            }
+        }
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Cursor<T> head = heads.poll();
+            merged.add(head.list.get(head.position));
+            int next = head.position + 1;
+            if (next < head.list.size()) {
+                heads.add(new Cursor<>(head.list, next, keys(head.list.get(next), properties)));
+            }
+        }
+        return merged;
+    }
+
+    private static Sort withIdTiebreak(Sort sort) {
+        return sort.getOrderFor("id") != null ? sort : sort.and(Sort.by("id"));
+    }
+
+    private static Object[] keys(Object row, List<String> properties) {
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(row);
+        Object[] keys = new Object[properties.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = wrapper.getPropertyValue(properties.get(i));
+        }
+        return keys;
+    }
+
+    /**
+     * Порядок ключей как в MySQL: NULL — первым по возрастанию, строки — без учёта регистра и диакритики
+     * (как при сопоставлении utf8mb4_0900_ai_ci).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Object[]> keyComparator(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        return (a, b) -> {
+            for (int i = 0; i < orders.size(); i++) {
+                Object left = a[i];
+                Object right = b[i];
+                int result;
+                if (left == null || right == null) {
+                    result = left == right ? 0 : (left == null ? -1 : 1);
+                } else if (left instanceof String leftString && right instanceof String rightString) {
+                    result = collator.compare(leftString, rightString);
+                } else {
+                    result = ((Comparable) left).compareTo(right);
+                }
+                if (result != 0) {
+                    return orders.get(i).isAscending() ? result : -result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    private static <T, C extends Iterable<T>> C initialized(C rows, Consumer<? super T> initializer) {
+        rows.forEach(initializer);
+        return rows;
+    }
+
+    /**
+     * Запомнить шард транзакции при первом выборе и не дать выбрать другой: соединение у неё уже одно.
+     */
+    private void bindTransaction(int shard) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Integer bound = (Integer) TransactionSynchronizationManager.getResource(this);
+        if (bound == null) {
+            TransactionSynchronizationManager.bindResource(this, shard);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ShardRouter.this);
+                }
+            });
+        } else if (bound != shard) {
+            throw new IllegalStateException("Transaction is bound to shard " + bound + ", cannot switch to shard " + shard);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private record Cursor<T>(List<T> list, int position, Object[] keys) {
+    }
+}
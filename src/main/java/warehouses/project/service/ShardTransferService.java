@@ -0,0 +1,292 @@
+package warehouses.project.service;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.model.Product;
+import warehouses.project.model.ShardTransfer;
+import warehouses.project.model.Shipment;
+import warehouses.project.model.ShipmentItem;
+import warehouses.project.model.Warehouse;
+import warehouses.project.repository.ShardTransferRepository;
+import warehouses.project.repository.ShipmentRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Перемещение между складами разных шардов: списание и приход идут в разных БД, поэтому в два шага.
+ * <ol>
+ *     <li>Резерв — транзакция в шарде источника: операция перемещения, списание и запись RESERVED.</li>
+ *     <li>Подтверждение — транзакция в шарде назначения: запись CONFIRMED и приход. Запись вставляется
+ *     только если её нет, поэтому повтор подтверждения прихода не удваивает.</li>
+ * </ol>
+ * После подтверждения запись источника становится CONFIRMED. Если подтверждение не прошло, перемещение
+ * отменяется: в шард назначения ставится запись CANCELLED (после неё подтверждение невозможно),
+ * и в шарде источника списание возвращается, а операция удаляется.
+ * <p>
+ * Шаги можно выполнять в разных потоках: {@link #reserve} — в потоке писателя склада-источника,
+ * {@link #complete} — в другом, чтобы писатель не ждал шарда назначения.
+ * <p>
+ * Перемещения, оставшиеся в RESERVED дольше {@code sharding.transfer.recovery-after} (узел упал между шагами,
+ * шард назначения был недоступен), доводит {@link #recover()}: подтверждает, а если назначение уже отменено — отменяет.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShardTransferService {
+
+    private static final int RECOVERY_BATCH = 100;
+
+    private final ShardRouter shardRouter;
+    private final ShipmentService shipmentService;
+    private final ShipmentRepository shipmentRepository;
+    private final ShardTransferRepository shardTransferRepository;
+    private final StockService stockService;
+    private final MovementRollupService movementRollupService;
+    private final WarehouseService warehouseService;
+    private final ProductService productService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${sharding.transfer.recovery-after:PT1M}")
+    private Duration recoveryAfter;
+
+    /**
+     * Провести перемещение между складами разных шардов. Вызывается вне транзакции.
+     *
+     * @return операция перемещения (в шарде источника)
+     * @throws IllegalStateException если товара недостаточно, или перемещение отменено, или ещё не завершено
+     *                               (шард назначения недоступен — его доведёт {@link #recover()})
+     */
+    public Shipment transfer(Long fromWarehouseId, Long toWarehouseId, List<ShipmentItem> items) {
+        return complete(reserve(fromWarehouseId, toWarehouseId, items));
+    }
+
+    /**
+     * Первый шаг: списание и запись RESERVED в шарде источника. Транзакция своя или текущая, если она уже
+     * выбрала шард источника (групповая транзакция писателя склада).
+     *
+     * @throws IllegalStateException если товара недостаточно
+     */
+    public PendingTransfer reserve(Long fromWarehouseId, Long toWarehouseId, List<ShipmentItem> items) {
+        int source = shardRouter.shardOf(fromWarehouseId);
+        int target = shardRouter.shardOf(toWarehouseId);
+        warehouseService.getById(toWarehouseId);
+
+        return shardRouter.inShard(source, () -> transactionTemplate.execute(status -> {
+            Shipment reserved = shipmentService.reserveTransfer(fromWarehouseId, items);
+            shardTransferRepository.insertIfAbsent(reserved.getId(), fromWarehouseId, toWarehouseId,
+                    ShardTransfer.STATUS_RESERVED, LocalDateTime.now());
+            return new PendingTransfer(reserved, fromWarehouseId, toWarehouseId, source, target, quantities(reserved.getItems()));
+        }));
+    }
+
+    /**
+     * Второй шаг после фиксации резерва: подтверждение в шарде назначения (или отмена). Вызывается вне транзакции.
+     *
+     * @return операция перемещения (в шарде источника)
+     * @throws IllegalStateException если перемещение отменено или ещё не завершено
+     */
+    public Shipment complete(PendingTransfer pending) {
+        long started = System.nanoTime();
+        int target = pending.targetShard();
+        boolean confirmed;
+        try {
+            confirmed = confirm(pending);
+        } catch (RuntimeException confirmFailure) {
+            try {
+                confirmed = !fenceCancelled(pending);
+            } catch (RuntimeException fenceFailure) {
+                confirmFailure.addSuppressed(fenceFailure);
+                throw new IllegalStateException("Transfer " + pending.id() + " is pending: shard " + target
+                        + " is unavailable, the transfer will be completed or cancelled automatically", confirmFailure);
+            }
+            if (!confirmed) {
+                compensate(pending);
+                throw confirmFailure;
+            }
+        }
+        if (!confirmed) {
+            compensate(pending);
+            throw new IllegalStateException("Transfer " + pending.id() + " was cancelled");
+        }
+        markConfirmed(pending);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Transfer {} from shard {} to shard {} completed in {} ms",
+                    pending.id(), pending.sourceShard(), target, (System.nanoTime() - started) / 1_000_000);
+        }
+        return pending.shipment();
+    }
+
+    /**
+     * Довести зависшие перемещения. Каждое подтверждается; если назначение уже отменило его — отменяется.
+     * Ошибка перемещения оставляет его до следующего запуска.
+     */
+    @Scheduled(fixedDelayString = "${sharding.transfer.recovery-interval:PT1M}")
+    public void recover() {
+        if (!shardRouter.isSharded()) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minus(recoveryAfter);
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            int source = shard;
+            List<ShardTransfer> stale;
+            try {
+                stale = shardRouter.inShard(source, () -> shardTransferRepository.findByStatusAndCreatedAtBefore(
+                        ShardTransfer.STATUS_RESERVED, before, PageRequest.of(0, RECOVERY_BATCH)));
+            } catch (RuntimeException e) {
+                log.warn("Could not read pending transfers of shard {}: {}", source, e.getMessage());
+                continue;
+            }
+            for (ShardTransfer transfer : stale) {
+                try {
+                    recover(source, transfer);
+                } catch (RuntimeException e) {
+                    log.warn("Could not recover transfer {}: {}", transfer.getId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void recover(int source, ShardTransfer transfer) {
+        Shipment shipment = shardRouter.inShard(source, () -> transactionTemplate.execute(status -> {
+            Shipment loaded = shipmentRepository.findWithDetailsById(transfer.getId())
+                    .orElseThrow(() -> new EntityNotFoundException("Shipment not found with id: " + transfer.getId()));
+            ShipmentService.initializeDetails(loaded);
+            return loaded;
+        }));
+        PendingTransfer pending = new PendingTransfer(shipment, transfer.getFromWarehouseId(), transfer.getToWarehouseId(),
+                source, shardRouter.shardOf(transfer.getToWarehouseId()), quantities(shipment.getItems()));
+        if (confirm(pending)) {
+            markConfirmed(pending);
+            log.info("Pending transfer {} confirmed", pending.id());
+        } else {
+            compensate(pending);
+            log.info("Pending transfer {} cancelled", pending.id());
+        }
+    }
+
+    /**
+     * Подтвердить перемещение в шарде назначения и провести приход.
+     *
+     * @return true — перемещение подтверждено (сейчас или раньше), false — в назначении оно уже отменено
+     */
+    private boolean confirm(PendingTransfer pending) {
+        return shardRouter.inShard(pending.targetShard(), () -> transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (shardTransferRepository.insertIfAbsent(pending.id(), pending.fromWarehouseId(), pending.toWarehouseId(),
+                    ShardTransfer.STATUS_CONFIRMED, now) == 0) {
+                return shardTransferRepository.findStatusById(pending.id())
+                        .map(ShardTransfer.STATUS_CONFIRMED::equals)
+                        .orElse(false);
+            }
+            Warehouse to = warehouseService.getById(pending.toWarehouseId());
+            Map<Long, Product> products = productService.getByIds(pending.quantities().keySet());
+            List<StockDelta> deltas = new ArrayList<>(pending.quantities().size());
+            pending.quantities().forEach((productId, count) ->
+                    deltas.add(StockDelta.increase(products.get(productId), to, count)));
+            Shipment transfer = transferOf(pending);
+            stockService.applyDeltas(transfer, deltas);
+            movementRollupService.record(transfer, deltas);
+            return true;
+        }));
+    }
+
+    /**
+     * Поставить в шарде назначения отметку отмены, если перемещение там ещё не подтверждено.
+     *
+     * @return true — перемещение отменено, false — оно уже подтверждено
+     */
+    private boolean fenceCancelled(PendingTransfer pending) {
+        return shardRouter.inShard(pending.targetShard(), () -> transactionTemplate.execute(status -> {
+            if (shardTransferRepository.insertIfAbsent(pending.id(), pending.fromWarehouseId(), pending.toWarehouseId(),
+                    ShardTransfer.STATUS_CANCELLED, LocalDateTime.now()) == 1) {
+                return true;
+            }
+            return shardTransferRepository.findStatusById(pending.id())
+                    .map(ShardTransfer.STATUS_CANCELLED::equals)
+                    .orElse(true);
+        }));
+    }
+
+    /**
+     * Вернуть списание в шарде источника и удалить операцию перемещения (движения остатков остаются в журнале).
+     */
+    private void compensate(PendingTransfer pending) {
+        shardRouter.runInShard(pending.sourceShard(), () -> transactionTemplate.executeWithoutResult(status -> {
+            if (shardTransferRepository.updateStatus(pending.id(), ShardTransfer.STATUS_RESERVED,
+                    ShardTransfer.STATUS_CANCELLED, LocalDateTime.now()) == 0) {
+                return;
+            }
+            Warehouse from = warehouseService.getById(pending.fromWarehouseId());
+            Map<Long, Product> products = productService.getByIds(pending.quantities().keySet());
+            List<StockDelta> deltas = new ArrayList<>(pending.quantities().size());
+            pending.quantities().forEach((productId, count) ->
+                    deltas.add(StockDelta.increase(products.get(productId), from, count)));
+            Shipment transfer = transferOf(pending);
+            stockService.applyDeltas(transfer, deltas);
+            movementRollupService.record(transfer, deltas);
+            shipmentRepository.findById(pending.id()).ifPresent(shipmentRepository::delete);
+        }));
+    }
+
+    /**
+     * Отметить перемещение подтверждённым в шарде источника. Если шард недоступен, отметку поставит {@link #recover()}:
+     * приход уже проведён, и повторное подтверждение его не повторит.
+     */
+    private void markConfirmed(PendingTransfer pending) {
+        try {
+            shardRouter.runInShard(pending.sourceShard(), () -> transactionTemplate.executeWithoutResult(status ->
+                    shardTransferRepository.updateStatus(pending.id(), ShardTransfer.STATUS_RESERVED,
+                            ShardTransfer.STATUS_CONFIRMED, LocalDateTime.now())));
+        } catch (RuntimeException e) {
+            log.warn("Transfer {} is confirmed, but shard {} was not updated: {}", pending.id(), pending.sourceShard(), e.getMessage());
+        }
+    }
+
+    private static Map<Long, Integer> quantities(List<ShipmentItem> items) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (ShipmentItem item : items) {
+            quantities.merge(item.getProduct().getId(), item.getCount(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    /**
+     * Операция перемещения для журнала движений и сводок: ID, тип и дата. Сама операция лежит в шарде источника
+     * (а после отмены удалена), поэтому журнал и сводки не могут брать их из shipments своего шарда.
+     */
+    private static Shipment transferOf(PendingTransfer pending) {
+        Shipment shipment = new Shipment();
+        shipment.setId(pending.id());
+        shipment.setTransactionType("transfer");
+        shipment.setDate(pending.date());
+        return shipment;
+    }
+
+    /**
+     * Зарезервированное перемещение: операция в шарде источника и количества товаров для прихода.
+     */
+    public record PendingTransfer(Shipment shipment, Long fromWarehouseId, Long toWarehouseId, int sourceShard, int targetShard,
+                                  Map<Long, Integer> quantities) {
+
+        public Long id() {
+            return shipment.getId();
+        }
+
+        public LocalDate date() {
+            return shipment.getDate();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package warehouses.project.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.model.Product;
+import warehouses.project.model.Shipment;
+import warehouses.project.model.ShipmentItem;
+import warehouses.project.model.Warehouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетное проведение операций разных типов (приход, списание, перемещение).
+ * <p>
+ * Документы проводятся порциями по {@code shipments.batch.chunk-size}: каждая порция — одна транзакция,
+ * в начале которой склады и товары всех документов порции загружаются разом. Дальше
+ * {@link ShipmentService} находит их в контексте персистентности, а не отдельными запросами.
+ * <p>
+ * Строки остатков всех документов порции блокируются в начале транзакции в общем порядке
+ * {@link StockDelta#LOCK_ORDER} ({@link StockService#lockRows}) — иначе документы порции брали бы их
+ * в порядке документов, и встречные порции могли бы взаимно заблокироваться.
+ * <p>
+ * Если транзакция порции упала, она откатывается, и документы порции проводятся по одному —
+ * ошибка одного документа не влияет на остальные (как и в {@link PartitionedShipmentExecutor}).
+ * <p>
+ * При шардировании порции собираются отдельно по шардам складов (транзакция работает с одним шардом).
+ * Перемещение между шардами проводится {@link ShardTransferService} после фиксации накопленных порций
+ * обоих его шардов — так оно видит результат предыдущих документов.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShipmentBatchService {
+
+    public static final String TYPE_INCOMING = "incoming";
+    public static final String TYPE_WRITE_OFF = "write-off";
+    public static final String TYPE_TRANSFER = "transfer";
+
+    private final ShipmentService shipmentService;
+    private final WarehouseService warehouseService;
+    private final ProductService productService;
+    private final StockService stockService;
+    private final ShardRouter shardRouter;
+    private final ShardTransferService shardTransferService;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${shipments.batch.chunk-size:50}")
+    private int chunkSize;
+
+    @Value("${shipments.batch.max-documents:5000}")
+    private int maxDocuments;
+
+    /**
+     * Документ пакета. Для перемещения warehouseId — склад-источник.
+     */
+    public record Document(String type, Long warehouseId, Long toWarehouseId, List<ShipmentItem> items) {
+    }
+
+    /**
+     * Результат документа: ID созданной операции или причина ошибки.
+     */
+    public record Result(Long shipmentId, String error) {
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        static Result failed(RuntimeException e) {
+            return new Result(null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Провести пакет документов.
+     *
+     * @return результаты в порядке документов
+     * @throws IllegalArgumentException если документов больше {@code shipments.batch.max-documents}
+     */
+    public List<Result> execute(List<Document> documents, Long userId) {
+        if (documents.size() > maxDocuments) {
+            throw new IllegalArgumentException("Too many documents in batch: " + documents.size() + " (max " + maxDocuments + ")");
+        }
+        long started = System.nanoTime();
+        Result[] results = new Result[documents.size()];
+
+        Map<Integer, List<Integer>> chunks = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            int shard;
+            try {
+                validate(document);
+                shard = shardRouter.shardOf(document.warehouseId());
+                if (TYPE_TRANSFER.equals(document.type())
+                        && shardRouter.isCrossShard(document.warehouseId(), document.toWarehouseId())) {
+                    flushChunk(chunks, shard, documents, userId, results);
+                    flushChunk(chunks, shardRouter.shardOf(document.toWarehouseId()), documents, userId, results);
+                    results[i] = transferAcrossShards(document);
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                results[i] = Result.failed(e);
+                continue;
+            }
+            List<Integer> chunk = chunks.computeIfAbsent(shard, key -> new ArrayList<>(chunkSize));
+            chunk.add(i);
+            if (chunk.size() == chunkSize) {
+                flushChunk(chunks, shard, documents, userId, results);
+            }
+        }
+        for (Integer shard : new ArrayList<>(chunks.keySet())) {
+            flushChunk(chunks, shard, documents, userId, results);
+        }
+
+        if (log.isDebugEnabled()) {
+            long failed = Arrays.stream(results).filter(result -> !result.isSuccess()).count();
+            log.debug("Batch of {} shipments executed: {} failed in {} ms",
+                    documents.size(), failed, (System.nanoTime() - started) / 1_000_000);
+        }
+        return Arrays.asList(results);
+    }
+
+    private void flushChunk(Map<Integer, List<Integer>> chunks, int shard, List<Document> documents, Long userId, Result[] results) {
+        List<Integer> chunk = chunks.remove(shard);
+        if (chunk != null && !chunk.isEmpty()) {
+            shardRouter.runInShard(shard, () -> commitChunk(documents, chunk, userId, results));
+        }
+    }
+
+    private Result transferAcrossShards(Document document) {
+        Shipment shipment = shardTransferService.transfer(document.warehouseId(), document.toWarehouseId(),
+                ShipmentService.copyItems(document.items()));
+        return new Result(shipment.getId(), null);
+    }
+
+    private void commitChunk(List<Document> documents, List<Integer> chunk, Long userId, Result[] results) {
+        try {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                stockService.lockRows(prefetch(documents, chunk));
+                List<Long> created = new ArrayList<>(chunk.size());
+                for (Integer index : chunk) {
+                    created.add(apply(documents.get(index), userId).getId());
+                }
+                // при open-in-view контекст живёт весь запрос — не копим в нём сущности прошлых порций
+                entityManager.flush();
+                entityManager.clear();
+                return created;
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                results[chunk.get(i)] = new Result(ids.get(i), null);
+            }
+        } catch (RuntimeException chunkFailure) {
+            if (chunk.size() == 1) {
+                results[chunk.get(0)] = Result.failed(chunkFailure);
+                return;
+            }
+            log.debug("Batch chunk of {} shipments failed, retrying one by one: {}", chunk.size(), chunkFailure.getMessage());
+            for (Integer index : chunk) {
+                try {
+                    Shipment shipment = transactionTemplate.execute(status -> apply(documents.get(index), userId));
+                    results[index] = new Result(shipment.getId(), null);
+                } catch (RuntimeException e) {
+                    results[index] = Result.failed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Загрузить склады и товары порции в контекст персистентности текущей транзакции.
+     * Неизвестные ID здесь не ошибка: её выдаст проведение соответствующего документа.
+     *
+     * @return изменения остатков документов порции (без неизвестных складов и товаров)
+     */
+    private List<StockDelta> prefetch(List<Document> documents, List<Integer> chunk) {
+        Set<Long> warehouseIds = new LinkedHashSet<>();
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (Integer index : chunk) {
+            Document document = documents.get(index);
+            warehouseIds.add(document.warehouseId());
+            if (document.toWarehouseId() != null) {
+                warehouseIds.add(document.toWarehouseId());
+            }
+            for (ShipmentItem item : document.items()) {
+                productIds.add(item.getProduct().getId());
+            }
+        }
+        Map<Long, Warehouse> warehouses = warehouseService.findByIds(warehouseIds).stream()
+                .collect(Collectors.toMap(Warehouse::getId, Function.identity()));
+        Map<Long, Product> products = productService.findByIds(productIds);
+
+        List<StockDelta> deltas = new ArrayList<>();
+        for (Integer index : chunk) {
+            Document document = documents.get(index);
+            Warehouse warehouse = warehouses.get(document.warehouseId());
+            Warehouse to = TYPE_TRANSFER.equals(document.type()) ? warehouses.get(document.toWarehouseId()) : null;
+            for (ShipmentItem item : document.items()) {
+                Product product = products.get(item.getProduct().getId());
+                if (product == null || warehouse == null) {
+                    continue;
+                }
+                int count = item.getCount() != null ? item.getCount() : 0;
+                deltas.add(TYPE_INCOMING.equals(document.type())
+                        ? StockDelta.increase(product, warehouse, count)
+                        : StockDelta.decrease(product, warehouse, count));
+                if (to != null) {
+                    deltas.add(StockDelta.increase(product, to, count));
+                }
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Каждая попытка получает свежие строки: после отката порции у прежних уже проставлены ID.
+     */
+    private Shipment apply(Document document, Long userId) {
+        List<ShipmentItem> items = ShipmentService.copyItems(document.items());
+        return switch (document.type()) {
+            case TYPE_INCOMING -> shipmentService.createIncoming(document.warehouseId(), items, userId);
+            case TYPE_WRITE_OFF -> shipmentService.createWriteOff(document.warehouseId(), items);
+            case TYPE_TRANSFER -> shipmentService.createTransfer(document.warehouseId(), document.toWarehouseId(), items);
+            default -> throw new IllegalArgumentException("Unsupported shipment type: " + document.type());
+        };
+    }
+
+    private static void validate(Document document) {
+        switch (document.type()) {
+            case TYPE_INCOMING, TYPE_WRITE_OFF -> {
+            }
+            case TYPE_TRANSFER -> {
+                if (document.toWarehouseId() == null) {
+                    throw new IllegalArgumentException("Transfer requires toWarehouseId");
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported shipment type: " + document.type());
+        }
+    }
+}
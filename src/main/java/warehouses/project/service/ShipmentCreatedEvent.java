@@ -0,0 +1,10 @@
+package warehouses.project.service;
+
+import warehouses.project.model.Shipment;
+
+/**
+ * Событие создания операции. Публикуется внутри транзакции {@link ShipmentService};
+ * слушатели с {@code @TransactionalEventListener} получают его только после фиксации.
+ */
+public record ShipmentCreatedEvent(Shipment shipment) {
+}
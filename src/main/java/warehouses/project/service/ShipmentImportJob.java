@@ -0,0 +1,112 @@
+package warehouses.project.service;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновый импорт приходов из файла: состояние и прогресс для опроса клиентом.
+ * <p>
+ * Список ошибок ограничен (остальные только считаются), так что память задания не растёт с размером файла.
+ */
+@Getter
+public class ShipmentImportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * Ошибка строки файла (номер строки считается с 1).
+     */
+    public record LineError(long line, String message) {
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Long warehouseId;
+    private final String fileName;
+    private final String format;
+    private final int maxErrors;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String failureMessage;
+
+    private final AtomicLong processedLines = new AtomicLong();
+    private final AtomicLong importedLines = new AtomicLong();
+    private final AtomicLong failedLines = new AtomicLong();
+    private final List<LineError> errors = new ArrayList<>();
+    private final List<Long> shipmentIds = new ArrayList<>();
+
+    public ShipmentImportJob(Long warehouseId, String fileName, String format, int maxErrors) {
+        this.warehouseId = warehouseId;
+        this.fileName = fileName;
+        this.format = format;
+        this.maxErrors = maxErrors;
+    }
+
+    public long getProcessedLines() {
+        return processedLines.get();
+    }
+
+    public long getImportedLines() {
+        return importedLines.get();
+    }
+
+    public long getFailedLines() {
+        return failedLines.get();
+    }
+
+    public synchronized List<LineError> getErrors() {
+        return List.copyOf(errors);
+    }
+
+    public synchronized List<Long> getShipmentIds() {
+        return List.copyOf(shipmentIds);
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    void start() {
+        startedAt = LocalDateTime.now();
+        status = Status.RUNNING;
+    }
+
+    void lineProcessed() {
+        processedLines.incrementAndGet();
+    }
+
+    synchronized void lineFailed(long line, String message) {
+        failedLines.incrementAndGet();
+        if (errors.size() < maxErrors) {
+            errors.add(new LineError(line, message));
+        }
+    }
+
+    synchronized void chunkImported(Long shipmentId, int lines) {
+        shipmentIds.add(shipmentId);
+        importedLines.addAndGet(lines);
+    }
+
+    void complete() {
+        finishedAt = LocalDateTime.now();
+        status = Status.COMPLETED;
+    }
+
+    void fail(String message) {
+        failureMessage = message;
+        finishedAt = LocalDateTime.now();
+        status = Status.FAILED;
+    }
+}
@@ -0,0 +1,381 @@
+package warehouses.project.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import warehouses.project.exeption.IdempotencyKeyConflictException;
+import warehouses.project.model.Product;
+import warehouses.project.model.Shipment;
+import warehouses.project.model.ShipmentItem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Фоновый импорт приходов из CSV или NDJSON.
+ * <p>
+ * Загруженный файл сохраняется во временный файл и читается построчно: в памяти держится
+ * только текущая порция строк. Каждая порция ({@code shipments.import.chunk-size} строк) — это один
+ * приход в отдельной транзакции {@link ShipmentService#createIncoming}: товары порции загружаются
+ * одним запросом, ошибки строк (формат, неизвестный товар, непроведённая порция) сохраняются в задании.
+ * <p>
+ * Форматы строк:
+ * <ul>
+ *     <li>CSV: {@code productId,count} (разделитель — запятая или точка с запятой; строка заголовка необязательна);</li>
+ *     <li>NDJSON: {@code {"productId": 1, "count": 10}}.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShipmentImportService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private final ShipmentService shipmentService;
+    private final ProductService productService;
+    private final WarehouseService warehouseService;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    @Qualifier("importExecutor")
+    private final AsyncTaskExecutor importExecutor;
+
+    @Value("${shipments.import.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${shipments.import.max-errors:1000}")
+    private int maxErrors;
+
+    @Value("${shipments.import.job-retention:1h}")
+    private Duration jobRetention;
+
+    private final Map<String, ShipmentImportJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Задания по ключу идемпотентности ("userId:ключ"). Живут столько же, сколько сами задания:
+     * задания хранятся только в памяти, сохранять ключи в БД незачем.
+     */
+    private final Map<String, CompletableFuture<ShipmentImportJob>> jobsByIdempotencyKey = new ConcurrentHashMap<>();
+
+    /**
+     * Принять файл и поставить импорт в очередь.
+     * <p>
+     * Повтор с тем же ключом идемпотентности возвращает уже созданное задание, а не запускает импорт снова;
+     * повтор, пришедший пока первый запрос ещё принимает файл, ждёт его.
+     *
+     * @param format         csv или ndjson; если не задан — по расширению файла
+     * @param idempotencyKey значение заголовка Idempotency-Key или null
+     * @return задание для опроса прогресса
+     * @throws RejectedExecutionException      если очередь импортов заполнена
+     * @throws IdempotencyKeyConflictException если ключ уже использован для импорта другого файла или склада
+     */
+    public ShipmentImportJob submit(MultipartFile file, Long warehouseId, String format, Long userId,
+                                    String idempotencyKey) throws IOException {
+        if (idempotencyKey == null) {
+            return startJob(file, warehouseId, format, userId);
+        }
+        String scope = userId + ":" + idempotencyKey;
+        CompletableFuture<ShipmentImportJob> own = new CompletableFuture<>();
+        CompletableFuture<ShipmentImportJob> existing = jobsByIdempotencyKey.putIfAbsent(scope, own);
+        if (existing != null) {
+            ShipmentImportJob job = awaitJob(existing);
+            if (!job.getWarehouseId().equals(warehouseId) || !Objects.equals(job.getFileName(), file.getOriginalFilename())) {
+                throw new IdempotencyKeyConflictException(idempotencyKey);
+            }
+            return job;
+        }
+        try {
+            ShipmentImportJob job = startJob(file, warehouseId, format, userId);
+            own.complete(job);
+            return job;
+        } catch (IOException | RuntimeException e) {
+            jobsByIdempotencyKey.remove(scope, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private ShipmentImportJob startJob(MultipartFile file, Long warehouseId, String format, Long userId) throws IOException {
+        warehouseService.getById(warehouseId);
+        String resolvedFormat = resolveFormat(format, file.getOriginalFilename());
+        evictFinishedJobs();
+
+        Path spooled = Files.createTempFile("shipment-import-", ".tmp");
+        try {
+            file.transferTo(spooled);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+
+        ShipmentImportJob job = new ShipmentImportJob(warehouseId, file.getOriginalFilename(), resolvedFormat, maxErrors);
+        jobs.put(job.getId(), job);
+        try {
+            importExecutor.execute(() -> run(job, spooled, userId));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Задание импорта по ID.
+     *
+     * @throws EntityNotFoundException если задания нет (или оно уже удалено по сроку хранения)
+     */
+    public ShipmentImportJob getJob(String jobId) {
+        ShipmentImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new EntityNotFoundException("Import job not found with id: " + jobId);
+        }
+        return job;
+    }
+
+    private void run(ShipmentImportJob job, Path file, Long userId) {
+        job.start();
+        long started = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            LineParser parser = FORMAT_NDJSON.equals(job.getFormat()) ? new NdjsonLineParser() : new CsvLineParser();
+            List<ImportLine> chunk = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                    // BOM, который добавляет Excel при сохранении CSV в UTF-8
+                    line = line.substring(1);
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    ImportLine parsed = parser.parse(lineNumber, line);
+                    if (parsed == null) {
+                        continue;
+                    }
+                    chunk.add(parsed);
+                } catch (IllegalArgumentException e) {
+                    job.lineFailed(lineNumber, e.getMessage());
+                }
+                job.lineProcessed();
+
+                if (chunk.size() == chunkSize) {
+                    importChunk(job, chunk, userId);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(job, chunk, userId);
+            }
+            job.complete();
+            log.info("Import {} ({}) completed: {} lines, {} imported, {} failed in {} ms",
+                    job.getId(), job.getFileName(), job.getProcessedLines(), job.getImportedLines(),
+                    job.getFailedLines(), (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Import {} ({}) failed", job.getId(), job.getFileName(), e);
+            job.fail(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete import file {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Провести порцию строк одним приходом. Строки с неизвестными товарами пропускаются с ошибкой.
+     */
+    private void importChunk(ShipmentImportJob job, List<ImportLine> chunk, Long userId) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (ImportLine line : chunk) {
+            productIds.add(line.productId());
+        }
+        Map<Long, Product> products = productService.findByIds(productIds);
+
+        List<ShipmentItem> items = new ArrayList<>(chunk.size());
+        List<ImportLine> accepted = new ArrayList<>(chunk.size());
+        for (ImportLine line : chunk) {
+            Product product = products.get(line.productId());
+            if (product == null) {
+                job.lineFailed(line.number(), "Товар не найден: " + line.productId());
+                continue;
+            }
+            ShipmentItem item = new ShipmentItem();
+            item.setProduct(product);
+            item.setCount(line.count());
+            items.add(item);
+            accepted.add(line);
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+
+        try {
+            Shipment shipment = shardRouter.onWarehouse(job.getWarehouseId(),
+                    () -> shipmentService.createIncoming(job.getWarehouseId(), items, userId));
+            job.chunkImported(shipment.getId(), items.size());
+        } catch (RuntimeException e) {
+            log.warn("Import {} chunk at line {} failed: {}", job.getId(), accepted.get(0).number(), e.getMessage());
+            for (ImportLine line : accepted) {
+                job.lineFailed(line.number(), "Порция не проведена: " + e.getMessage());
+            }
+        }
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+        jobsByIdempotencyKey.values().removeIf(future ->
+                future.isDone() && !future.isCompletedExceptionally() && !jobs.containsKey(future.join().getId()));
+    }
+
+    private static ShipmentImportJob awaitJob(CompletableFuture<ShipmentImportJob> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private static String resolveFormat(String format, String fileName) {
+        if (format != null && !format.isBlank()) {
+            String normalized = format.toLowerCase(Locale.ROOT);
+            if (!normalized.equals(FORMAT_CSV) && !normalized.equals(FORMAT_NDJSON)) {
+                throw new IllegalArgumentException("Unsupported import format: " + format);
+            }
+            return normalized;
+        }
+        String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? FORMAT_NDJSON : FORMAT_CSV;
+    }
+
+    record ImportLine(long number, Long productId, int count) {
+
+        static ImportLine of(long number, long productId, long count) {
+            if (count <= 0 || count > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Некорректное количество: " + count);
+            }
+            return new ImportLine(number, productId, (int) count);
+        }
+    }
+
+    interface LineParser {
+        /**
+         * @return строка импорта или null, если строка служебная (заголовок)
+         * @throws IllegalArgumentException если строка некорректна
+         */
+        ImportLine parse(long number, String line);
+    }
+
+    static final class CsvLineParser implements LineParser {
+
+        private boolean firstLine = true;
+        private int productColumn = 0;
+        private int countColumn = 1;
+
+        @Override
+        public ImportLine parse(long number, String line) {
+            String[] fields = line.split("[,;]", -1);
+            if (firstLine) {
+                firstLine = false;
+                if (!isNumber(fields[0])) {
+                    readHeader(fields);
+                    return null;
+                }
+            }
+            if (fields.length <= Math.max(productColumn, countColumn)) {
+                throw new IllegalArgumentException("Ожидалось полей: " + (Math.max(productColumn, countColumn) + 1));
+            }
+            return ImportLine.of(number,
+                    parseLong(fields[productColumn], "productId"),
+                    parseLong(fields[countColumn], "count"));
+        }
+
+        private void readHeader(String[] header) {
+            for (int i = 0; i < header.length; i++) {
+                String column = header[i].trim().replace("\"", "").toLowerCase(Locale.ROOT);
+                if (column.equals("productid") || column.equals("product_id")) {
+                    productColumn = i;
+                } else if (column.equals("count")) {
+                    countColumn = i;
+                }
+            }
+        }
+
+        private static boolean isNumber(String value) {
+            String trimmed = value.trim();
+            if (trimmed.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < trimmed.length(); i++) {
+                if (!Character.isDigit(trimmed.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long parseLong(String value, String field) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректное значение " + field + ": " + value);
+            }
+        }
+    }
+
+    private final class NdjsonLineParser implements LineParser {
+
+        @Override
+        public ImportLine parse(long number, String line) {
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Некорректный JSON");
+            }
+            return ImportLine.of(number, longField(node, "productId"), longField(node, "count"));
+        }
+
+        private static long longField(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            if (value == null || !value.canConvertToLong() || !value.isIntegralNumber()) {
+                throw new IllegalArgumentException("Поле " + field + " должно быть целым числом");
+            }
+            return value.asLong();
+        }
+    }
+}
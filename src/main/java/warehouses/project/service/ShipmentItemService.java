@@ -2,40 +2,62 @@ package warehouses.project.service;
 
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import warehouses.project.model.Shipment;
 import warehouses.project.model.ShipmentItem;
 import warehouses.project.repository.ShipmentItemRepository;
 import warehouses.project.repository.ShipmentRepository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class ShipmentItemService {
 
     private final ShipmentItemRepository shipmentItemRepository;
     private final ShipmentRepository shipmentRepository;
+    private final ShardRouter shardRouter;
 
     /**
      * Получить все ShipmentItems с пагинацией.
      */
     public Page<ShipmentItem> getAll(Pageable pageable) {
-        return shipmentItemRepository.findAll(pageable);
+        return shardRouter.page(null, pageable, shipmentItemRepository::findAll, ShipmentItemService::initializeProduct);
     }
 
     /**
      * Получить все ShipmentItems по ID поставки (с пагинацией).
      */
     public Page<ShipmentItem> getByShipmentId(Long shipmentId, Pageable pageable) {
-        return shipmentItemRepository.findByShipmentId(shipmentId, pageable);
+        return shardRouter.page(shardRouter.shardOfId(shipmentId), pageable,
+                page -> shipmentItemRepository.findByShipmentId(shipmentId, page), ShipmentItemService::initializeProduct);
+    }
+
+    /**
+     * Keyset-пагинация ShipmentItems: порция после строки с ID afterId (null — с начала).
+     */
+    public Slice<ShipmentItem> scroll(Long afterId, Pageable pageable) {
+        long after = afterId != null ? afterId : Long.MAX_VALUE;
+        return shardRouter.slice(null, pageable, page -> shipmentItemRepository.findByIdLessThan(after, page),
+                ShipmentItemService::initializeProduct);
     }
 
     /**
      * Получить ShipmentItem по ID.
      */
     public ShipmentItem getById(Long id) {
-        return shipmentItemRepository.findById(id)
+        // ID строк выдаются блоками общего для всех шардов генератора, поэтому шард по ID строки не определить
+        return shardRouter.onEachShard(() -> shipmentItemRepository.findById(id).map(item -> {
+                    initializeProduct(item);
+                    return item;
+                })).stream()
+                .flatMap(Optional::stream)
+                .findFirst()
                 .orElseThrow(() -> new EntityNotFoundException("ShipmentItem not found with id: " + id));
     }
 
@@ -43,10 +65,29 @@ public class ShipmentItemService {
      * Создать ShipmentItem, привязанный к существующей поставке.
      */
     public ShipmentItem createShipmentItem(Long shipmentId, ShipmentItem shipmentItem) {
-        Shipment shipment = shipmentRepository.findById(shipmentId)
-                .orElseThrow(() -> new EntityNotFoundException("Shipment not found with id: " + shipmentId));
+        return shardRouter.inShard(shardRouter.shardOfId(shipmentId), () -> {
+            Shipment shipment = shipmentRepository.findById(shipmentId)
+                    .orElseThrow(() -> new EntityNotFoundException("Shipment not found with id: " + shipmentId));
+
+            shipmentItem.setShipment(shipment);
+            return shipmentItemRepository.save(shipmentItem);
+        });
+    }
+
+    /**
+     * Сохранить строки только что созданной поставки пакетом.
+     * <p>
+     * Поставка передаётся уже загруженной, поэтому повторного поиска по ID нет,
+     * а INSERT'ы уходят в БД JDBC batch'ами (hibernate.jdbc.batch_size).
+     */
+    public List<ShipmentItem> createShipmentItems(Shipment shipment, List<ShipmentItem> items) {
+        for (ShipmentItem item : items) {
+            item.setShipment(shipment);
+        }
+        return shipmentItemRepository.saveAll(items);
+    }
 
-        shipmentItem.setShipment(shipment);
-        return shipmentItemRepository.save(shipmentItem);
+    private static void initializeProduct(ShipmentItem item) {
+        Hibernate.initialize(item.getProduct());
     }
-}
\ No newline at end of file
+}
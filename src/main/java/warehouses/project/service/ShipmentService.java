@@ -2,20 +2,31 @@ package warehouses.project.service;
 
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import warehouses.project.model.*;
 import warehouses.project.repository.ProductRepository;
 import warehouses.project.repository.ShipmentRepository;
+import warehouses.project.repository.ShipmentSpecifications;
 import warehouses.project.repository.StockRepository;
 import warehouses.project.repository.WarehouseRepository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ShipmentService {
@@ -23,24 +34,51 @@ public class ShipmentService {
     private final ShipmentRepository shipmentRepository;
     private final ShipmentItemService shipmentItemService;
     private final StockService stockService;
+    private final MovementRollupService movementRollupService;
     private final WarehouseService warehouseService;
     private final ProductService productService;
     private final UserService userService;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
 
+    @Transactional(readOnly = true)
     public Page<Shipment> getAll(String transactionType, Long warehouseId, LocalDateTime from, LocalDateTime to, Pageable pageable) {
         LocalDate startDate = from != null ? from.toLocalDate() : null;
         LocalDate endDate = to != null ? to.toLocalDate() : null;
 
-        return shipmentRepository.filterShipments(transactionType, warehouseId, startDate, endDate, pageable);
+        Specification<Shipment> spec = ShipmentSpecifications.filter(transactionType, warehouseId, startDate, endDate);
+        return shardRouter.page(shardRouter.shardOrAll(warehouseId), pageable,
+                shardPageable -> shipmentRepository.findAll(spec, shardPageable), ShipmentService::initializeDetails);
+    }
+
+    /**
+     * Keyset-пагинация операций с теми же фильтрами, что и {@link #getAll}:
+     * порция после операции с ID afterId (null — с начала), без COUNT(*).
+     */
+    @Transactional(readOnly = true)
+    public Slice<Shipment> scroll(String transactionType, Long warehouseId, LocalDateTime from, LocalDateTime to, Long afterId, Pageable pageable) {
+        LocalDate startDate = from != null ? from.toLocalDate() : null;
+        LocalDate endDate = to != null ? to.toLocalDate() : null;
+        long after = afterId != null ? afterId : Long.MAX_VALUE;
+
+        Specification<Shipment> spec = ShipmentSpecifications.filter(transactionType, warehouseId, startDate, endDate)
+                .and(ShipmentSpecifications.idLessThan(after));
+        return shardRouter.slice(shardRouter.shardOrAll(warehouseId), pageable,
+                shardPageable -> shipmentRepository.findBy(spec, query -> query.project("warehouse", "user").slice(shardPageable)),
+                ShipmentService::initializeDetails);
     }
 
     public Shipment getById(Long id) {
-        return shipmentRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Shipment not found with id: " + id));
+        return shardRouter.read(shardRouter.shardOfId(id),
+                () -> shipmentRepository.findWithDetailsById(id)
+                        .orElseThrow(() -> new EntityNotFoundException("Shipment not found with id: " + id)),
+                ShipmentService::initializeDetails);
     }
 
     @Transactional
     public Shipment createIncoming(Long warehouseId, List<ShipmentItem> items, Long userId) {
+        long started = System.nanoTime();
+        shardRouter.checkShard(warehouseId);
         Warehouse warehouse = warehouseService.getById(warehouseId);
         User user = userService.getById(userId);
 
@@ -50,19 +88,24 @@ public class ShipmentService {
         shipment.setTransactionType("incoming");
         shipment.setDate(LocalDate.now());
         shipment = shipmentRepository.save(shipment);
+        saveItems(shipment, items);
 
+        List<StockDelta> deltas = new ArrayList<>(items.size());
         for (ShipmentItem item : items) {
-            Product product = productService.getById(item.getProduct().getId());
-            item.setShipment(shipment);
-            shipmentItemService.createShipmentItem(shipment.getId(), item);
-            stockService.increaseStock(product, warehouse, item.getCount());
+            deltas.add(StockDelta.increase(item.getProduct(), warehouse, item.getCount()));
         }
+        stockService.applyDeltas(shipment, deltas);
+        movementRollupService.record(shipment, deltas);
+        eventPublisher.publishEvent(new ShipmentCreatedEvent(shipment));
 
+        logCreated(shipment, started);
         return shipment;
     }
 
     @Transactional
     public Shipment createWriteOff(Long warehouseId, List<ShipmentItem> items) {
+        long started = System.nanoTime();
+        shardRouter.checkShard(warehouseId);
         Warehouse warehouse = warehouseService.getById(warehouseId);
 
         Shipment shipment = new Shipment();
@@ -70,19 +113,37 @@ public class ShipmentService {
         shipment.setTransactionType("write-off");
         shipment.setDate(LocalDate.now());
         shipment = shipmentRepository.save(shipment);
+        saveItems(shipment, items);
 
+        List<StockDelta> deltas = new ArrayList<>(items.size());
         for (ShipmentItem item : items) {
-            Product product = productService.getById(item.getProduct().getId());
-            item.setShipment(shipment);
-            shipmentItemService.createShipmentItem(shipment.getId(), item);
-            stockService.decreaseStock(product, warehouse, item.getCount());
+            deltas.add(StockDelta.decrease(item.getProduct(), warehouse, item.getCount()));
         }
+        stockService.applyDeltas(shipment, deltas);
+        movementRollupService.record(shipment, deltas);
+        eventPublisher.publishEvent(new ShipmentCreatedEvent(shipment));
 
+        logCreated(shipment, started);
         return shipment;
     }
 
+    /**
+     * Перемещение между складами одного шарда — одной транзакцией.
+     *
+     * @throws IllegalArgumentException если склад-источник и склад-назначение совпадают
+     * @throws IllegalStateException    если склады в разных шардах (такое перемещение проводит {@link ShardTransferService})
+     */
     @Transactional
     public Shipment createTransfer(Long fromWarehouseId, Long toWarehouseId, List<ShipmentItem> items) {
+        long started = System.nanoTime();
+        if (fromWarehouseId.equals(toWarehouseId)) {
+            throw new IllegalArgumentException("Transfer source and target warehouse must differ");
+        }
+        shardRouter.checkShard(fromWarehouseId);
+        if (shardRouter.isCrossShard(fromWarehouseId, toWarehouseId)) {
+            throw new IllegalStateException("Warehouses " + fromWarehouseId + " and " + toWarehouseId
+                    + " are in different shards, use ShardTransferService");
+        }
         Warehouse from = warehouseService.getById(fromWarehouseId);
         Warehouse to = warehouseService.getById(toWarehouseId);
 
@@ -91,16 +152,102 @@ public class ShipmentService {
         shipment.setTransactionType("transfer");
         shipment.setDate(LocalDate.now());
         shipment = shipmentRepository.save(shipment);
+        saveItems(shipment, items);
 
+        List<StockDelta> deltas = new ArrayList<>(items.size() * 2);
         for (ShipmentItem item : items) {
-            Product product = productService.getById(item.getProduct().getId());
-            item.setShipment(shipment);
-            shipmentItemService.createShipmentItem(shipment.getId(), item);
+            deltas.add(StockDelta.decrease(item.getProduct(), from, item.getCount()));
+            deltas.add(StockDelta.increase(item.getProduct(), to, item.getCount()));
+        }
+        stockService.applyDeltas(shipment, deltas);
+        movementRollupService.record(shipment, deltas);
+        eventPublisher.publishEvent(new ShipmentCreatedEvent(shipment));
+
+        logCreated(shipment, started);
+        return shipment;
+    }
+
+    /**
+     * Первый шаг перемещения между шардами: операция перемещения в шарде склада-источника и списание с него.
+     * Приход на склад-назначение проводит {@link ShardTransferService} в его шарде.
+     */
+    @Transactional
+    public Shipment reserveTransfer(Long fromWarehouseId, List<ShipmentItem> items) {
+        long started = System.nanoTime();
+        shardRouter.checkShard(fromWarehouseId);
+        Warehouse from = warehouseService.getById(fromWarehouseId);
+
+        Shipment shipment = new Shipment();
+        shipment.setWarehouse(from);
+        shipment.setTransactionType("transfer");
+        shipment.setDate(LocalDate.now());
+        shipment = shipmentRepository.save(shipment);
+        saveItems(shipment, items);
 
-            stockService.decreaseStock(product, from, item.getCount());
-            stockService.increaseStock(product, to, item.getCount());
+        List<StockDelta> deltas = new ArrayList<>(items.size());
+        for (ShipmentItem item : items) {
+            deltas.add(StockDelta.decrease(item.getProduct(), from, item.getCount()));
         }
+        stockService.applyDeltas(shipment, deltas);
+        movementRollupService.record(shipment, deltas);
+        eventPublisher.publishEvent(new ShipmentCreatedEvent(shipment));
 
+        logCreated(shipment, started);
         return shipment;
     }
+
+    /**
+     * Связи операции, которые читаются после её загрузки из шарда (см. {@link ShardRouter}).
+     */
+    static void initializeDetails(Shipment shipment) {
+        Hibernate.initialize(shipment.getWarehouse());
+        Hibernate.initialize(shipment.getUser());
+        Hibernate.initialize(shipment.getItems());
+        for (ShipmentItem item : shipment.getItems()) {
+            Hibernate.initialize(item.getProduct());
+        }
+    }
+
+    /**
+     * Подставляет в строки товары, загруженные одним запросом, и сохраняет строки пакетом.
+     */
+    private void saveItems(Shipment shipment, List<ShipmentItem> items) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (ShipmentItem item : items) {
+            productIds.add(item.getProduct().getId());
+        }
+        Map<Long, Product> products = productService.getByIds(productIds);
+        for (ShipmentItem item : items) {
+            item.setProduct(products.get(item.getProduct().getId()));
+        }
+
+        shipment.setItems(shipmentItemService.createShipmentItems(shipment, items));
+    }
+
+    /**
+     * Свежие строки с теми же товарами и количествами. Нужны при повторном проведении
+     * после отката: у прежних объектов уже проставлены ID и ссылка на несохранённую поставку.
+     */
+    static List<ShipmentItem> copyItems(List<ShipmentItem> items) {
+        List<ShipmentItem> copy = new ArrayList<>(items.size());
+        for (ShipmentItem item : items) {
+            ShipmentItem fresh = new ShipmentItem();
+            fresh.setCount(item.getCount());
+            Product product = new Product();
+            product.setId(item.getProduct().getId());
+            fresh.setProduct(product);
+            copy.add(fresh);
+        }
+        return copy;
+    }
+
+    private void logCreated(Shipment shipment, long startedNanos) {
+        if (log.isDebugEnabled()) {
+            log.debug("Shipment {} ({}) created: {} lines in {} ms",
+                    shipment.getId(),
+                    shipment.getTransactionType(),
+                    shipment.getItems().size(),
+                    (System.nanoTime() - startedNanos) / 1_000_000);
+        }
+    }
 }
@@ -0,0 +1,216 @@
+package warehouses.project.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Рассылка событий подписчикам SSE.
+ * <p>
+ * Сообщение раскладывается по подписчикам в их буферы ограниченного размера; отправка из буфера в соединение
+ * идёт задачей на executor отправки, по одной задаче на подписчика за раз. Поэтому потоков нужно столько,
+ * сколько соединений пишется одновременно, а не сколько их открыто. Подписчик, чей буфер переполнен
+ * (медленный клиент), отключается: ему нужно переподключиться и перечитать данные.
+ * <p>
+ * Запись в соединение блокирует поток, пока клиент не примет данные. Подписчик, чья запись идёт дольше
+ * {@code sse.send-timeout}, тоже отключается (проверяется при пульсе и при новом событии): ему больше ничего
+ * не отправляется, а соединение закрывает поток отправки, когда запись завершится или прервётся по таймауту
+ * записи контейнера ({@code server.tomcat.connection-timeout}).
+ *
+ * @param <M> тип сообщения
+ */
+@Slf4j
+class SseBroadcaster<M> {
+
+    private final String name;
+    private final Executor sender;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param sender        executor, в котором буферы подписчиков пишутся в соединения
+     * @param bufferSize    сколько неотправленных событий может накопиться у подписчика
+     * @param timeoutMillis через сколько соединение закрывается (клиент переподключается)
+     * @param sendTimeout   сколько может идти запись одного события, прежде чем подписчик будет отключён
+     */
+    SseBroadcaster(String name, Executor sender, int bufferSize, long timeoutMillis, Duration sendTimeout) {
+        this.name = name;
+        this.sender = sender;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+    }
+
+    /**
+     * Новый подписчик.
+     *
+     * @param view данные события для этого подписчика из сообщения; null — сообщение ему не отправляется
+     */
+    SseEmitter subscribe(Function<M, ?> view) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, view);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Разложить сообщение по буферам подписчиков. Не ждёт отправки.
+     */
+    void publish(String eventName, M message) {
+        for (Subscriber subscriber : subscribers) {
+            Object data;
+            try {
+                data = subscriber.view.apply(message);
+            } catch (RuntimeException e) {
+                log.warn("{} stream: could not prepare event for subscriber", name, e);
+                continue;
+            }
+            if (data != null) {
+                subscriber.offer(SseEmitter.event().name(eventName).data(data));
+            }
+        }
+    }
+
+    /**
+     * Комментарий-пульс всем подписчикам: оборванные соединения обнаруживаются при записи.
+     * Заодно отключаются подписчики, запись которым зависла.
+     */
+    void heartbeat() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.isStalled(now)) {
+                subscriber.evictStalled();
+            } else {
+                subscriber.offer(SseEmitter.event().comment("ping"));
+            }
+        }
+    }
+
+    int size() {
+        return subscribers.size();
+    }
+
+    void close() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Function<M, ?> view;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        /** Начало текущей записи в соединение (System.nanoTime()); 0 — запись не идёт. */
+        private volatile long sendStartedNanos;
+        private volatile boolean stalled;
+
+        private Subscriber(SseEmitter emitter, Function<M, ?> view) {
+            this.emitter = emitter;
+            this.view = view;
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            if (isStalled(System.nanoTime())) {
+                evictStalled();
+                return;
+            }
+            if (!buffer.offer(event)) {
+                log.debug("{} stream: subscriber buffer of {} events is full, disconnecting slow consumer", name, bufferSize);
+                evict();
+                return;
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    evict();
+                }
+            }
+        }
+
+        /**
+         * Отправить накопленное. Флаг снимается до повторной проверки буфера,
+         * чтобы событие, добавленное во время отправки, не осталось без задачи.
+         */
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!stalled && (event = buffer.poll()) != null) {
+                    sendStartedNanos = System.nanoTime();
+                    emitter.send(event);
+                    sendStartedNanos = 0;
+                }
+            } catch (IOException | IllegalStateException e) {
+                evict();
+                return;
+            } finally {
+                sendStartedNanos = 0;
+                scheduled.set(false);
+            }
+            if (stalled) {
+                completeStalled();
+                return;
+            }
+            if (!buffer.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    evict();
+                }
+            }
+        }
+
+        private boolean isStalled(long now) {
+            long started = sendStartedNanos;
+            return started != 0 && now - started > sendTimeoutNanos;
+        }
+
+        private void evict() {
+            if (subscribers.remove(this)) {
+                buffer.clear();
+                emitter.complete();
+            }
+        }
+
+        /**
+         * Отключить подписчика, запись которому зависла. Сам emitter здесь не закрывается: закрытие ждёт
+         * ту же блокировку, что и зависшая запись, — его закрывает поток отправки, когда запись вернётся.
+         */
+        private void evictStalled() {
+            stalled = true;
+            if (subscribers.remove(this)) {
+                log.debug("{} stream: send to subscriber takes longer than {} ms, disconnecting",
+                        name, sendTimeoutNanos / 1_000_000);
+                buffer.clear();
+            }
+            completeStalled();
+        }
+
+        /**
+         * Закрыть emitter отключённого подписчика, если запись не идёт. Флаг scheduled захватывается навсегда,
+         * поэтому закрывает ровно один поток и новых задач отправки не будет.
+         */
+        private void completeStalled() {
+            if (scheduled.compareAndSet(false, true)) {
+                emitter.complete();
+            }
+        }
+    }
+}
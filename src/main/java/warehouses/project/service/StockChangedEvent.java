@@ -0,0 +1,19 @@
+package warehouses.project.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Изменения остатков одной операции. Публикуется внутри транзакции {@link StockService};
+ * слушатели с {@code @TransactionalEventListener} получают его только после фиксации.
+ *
+ * @param shipmentId операция (null — изменение не из операции)
+ */
+public record StockChangedEvent(Long shipmentId, List<Change> changes, LocalDateTime at) {
+
+    /**
+     * Изменение остатка пары (товар, склад): положительное — приход, отрицательное — расход.
+     */
+    public record Change(Long productId, Long warehouseId, int delta) {
+    }
+}
@@ -0,0 +1,29 @@
+package warehouses.project.service;
+
+import warehouses.project.model.Product;
+import warehouses.project.model.Warehouse;
+
+import java.util.Comparator;
+
+/**
+ * Изменение остатка товара на складе: положительное — приход, отрицательное — расход.
+ */
+public record StockDelta(Product product, Warehouse warehouse, int amount) {
+
+    /**
+     * Порядок применения изменений: все транзакции блокируют строки stock
+     * в одной и той же последовательности (товар, склад), поэтому встречные
+     * перемещения не могут взаимно заблокироваться.
+     */
+    public static final Comparator<StockDelta> LOCK_ORDER = Comparator
+            .comparing((StockDelta d) -> d.product().getId())
+            .thenComparing(d -> d.warehouse().getId());
+
+    public static StockDelta increase(Product product, Warehouse warehouse, int amount) {
+        return new StockDelta(product, warehouse, amount);
+    }
+
+    public static StockDelta decrease(Product product, Warehouse warehouse, int amount) {
+        return new StockDelta(product, warehouse, -amount);
+    }
+}
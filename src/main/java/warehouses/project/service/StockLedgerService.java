@@ -0,0 +1,385 @@
+package warehouses.project.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.model.ChangeLogEntry;
+import warehouses.project.model.StockSnapshot;
+import warehouses.project.repository.ProductQuantityView;
+import warehouses.project.repository.StockMovementRepository;
+import warehouses.project.repository.StockRepository;
+import warehouses.project.repository.StockSnapshotItemRepository;
+import warehouses.project.repository.StockSnapshotRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Снимки журнала движений и пересчёт stock по журналу.
+ * <p>
+ * Первый снимок (baseline) — копия stock на момент включения журнала: движений до него в журнале нет.
+ * Следующие снимки строятся в БД одним запросом — предыдущий снимок плюс движения после него,
+ * свёрнутые по парам (товар, склад), — поэтому пересчёт начинается с последнего снимка, а не с нуля.
+ * Граница снимка — ID движения, а не время: ID выдаются при вставке, а фиксируются транзакции в другом порядке,
+ * поэтому снимок строится только тогда, когда все движения с меньшими ID зафиксированы (см. {@link #settledBoundary}).
+ * <p>
+ * Пересчёт ({@link #rebuild}) — обслуживающая операция: stock делится на части по MOD(product_id, N),
+ * части пересчитываются параллельно, каждая в своей транзакции. Транзакция части сначала блокирует её строки stock
+ * в порядке операций ({@link warehouses.project.model.StockDelta#LOCK_ORDER}): операции с этими остатками ждут
+ * конца пересчёта части, а начатые раньше успевают зафиксировать и строки, и движения, которые пересчёт прочитает.
+ * <p>
+ * Остатки на дату ({@link #getBalanceAsOf}) считаются от ближайшей к дате точки — снимка до неё (плюс движения
+ * после снимка), снимка после неё (минус движения до снимка) или текущих остатков (минус движения после даты), —
+ * так что просматривается не больше движений, чем между соседними снимками. Поэтому кроме последних снимков
+ * хранятся baseline и первый снимок каждого месяца.
+ * <p>
+ * При шардировании у каждого шарда свои журнал, снимки и остатки: снимки строятся и пересчёт идёт в каждом шарде
+ * (или только в шарде склада), остатки на дату читаются из шарда склада.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockLedgerService {
+
+    private final StockSnapshotRepository snapshotRepository;
+    private final StockSnapshotItemRepository snapshotItemRepository;
+    private final StockRepository stockRepository;
+    private final StockMovementRepository movementRepository;
+    private final WarehouseService warehouseService;
+    private final ChangeLogService changeLogService;
+    private final LowStockAlertService lowStockAlertService;
+    private final TransactionTemplate transactionTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ShardRouter shardRouter;
+
+    /** Снимки строятся по одному; не synchronized, чтобы виртуальный поток не держал носитель на время SQL. */
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    @Value("${stock.ledger.settle-timeout:PT30S}")
+    private Duration settleTimeout;
+
+    @Value("${stock.ledger.max-clock-skew:PT1M}")
+    private Duration maxClockSkew;
+
+    @Value("${stock.ledger.snapshots-to-keep:3}")
+    private int snapshotsToKeep;
+
+    @Value("${stock.ledger.rebuild-parallelism:8}")
+    private int rebuildParallelism;
+
+    /**
+     * Результат пересчёта остатков.
+     */
+    public record RebuildResult(List<StockSnapshot> snapshots, Long warehouseId, int partitions, long elapsedMillis) {
+    }
+
+    /**
+     * При первом запуске с журналом — снимок текущих остатков, от которого ведётся журнал.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createBaselineIfMissing() {
+        shardRouter.forEachShard(shard -> {
+            if (snapshotRepository.count() == 0) {
+                StockSnapshot baseline = createBaseline();
+                log.info("Stock ledger baseline snapshot {} created in shard {}: {} pairs in {} ms",
+                        baseline.getId(), shard, baseline.getPairs(), baseline.getBuildMillis());
+            }
+        });
+    }
+
+    @Scheduled(cron = "${stock.ledger.snapshot-cron:0 0 3 * * *}")
+    public void scheduledSnapshot() {
+        createSnapshot();
+    }
+
+    /**
+     * Построить снимок по предыдущему снимку и журналу. Старые снимки сверх
+     * {@code stock.ledger.snapshots-to-keep} удаляются, кроме baseline и первых снимков месяцев (журнал не удаляется).
+     *
+     * @return по снимку на шард: новый или последний существующий, если новых движений до границы ещё нет
+     */
+    public List<StockSnapshot> createSnapshot() {
+        snapshotLock.lock();
+        try {
+            List<StockSnapshot> snapshots = new ArrayList<>(shardRouter.getShardCount());
+            shardRouter.forEachShard(shard -> snapshots.add(buildSnapshot()));
+            return snapshots;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private StockSnapshot buildSnapshot() {
+        StockSnapshot previous = snapshotRepository.findFirstByOrderByTakenAtDesc().orElse(null);
+        if (previous == null) {
+            return createBaseline();
+        }
+        long from = previous.getMovementBoundary();
+        LocalDateTime takenAt = LocalDateTime.now();
+        Long boundary = settledBoundary(from);
+        if (boundary == null) {
+            log.warn("Stock snapshot postponed: movements before the boundary are still uncommitted after {}", settleTimeout);
+            return previous;
+        }
+        if (boundary <= from) {
+            return previous;
+        }
+
+        long started = System.nanoTime();
+        StockSnapshot created = transactionTemplate.execute(status -> {
+            StockSnapshot snapshot = new StockSnapshot();
+            snapshot.setTakenAt(takenAt);
+            snapshot.setMovementBoundary(boundary);
+            snapshot.setBaseline(false);
+            snapshot = snapshotRepository.save(snapshot);
+            snapshot.setPairs(snapshotItemRepository.compact(snapshot.getId(), previous.getId(), from, boundary));
+            snapshot.setBuildMillis((System.nanoTime() - started) / 1_000_000);
+            return snapshotRepository.save(snapshot);
+        });
+        log.info("Stock snapshot {} taken at {} (movements before {}): {} pairs in {} ms",
+                created.getId(), created.getTakenAt(), boundary, created.getPairs(), created.getBuildMillis());
+
+        deleteOldSnapshots();
+        return created;
+    }
+
+    /**
+     * Граница нового снимка: следующий после последнего выданного ID движения, если все движения с ID от from
+     * до неё зафиксированы. Незафиксированные движения видны только в READ UNCOMMITTED, поэтому диапазон считается
+     * в обоих уровнях изоляции: пока числа различаются, какая-то транзакция в нём ещё не завершена
+     * (откаченные движения не видны ни в одном). Движения, получившие ID позже, окажутся за границей.
+     *
+     * @return граница или null, если за {@code stock.ledger.settle-timeout} диапазон так и не зафиксировался
+     */
+    private Long settledBoundary(long from) {
+        TransactionTemplate uncommitted = isolated(TransactionDefinition.ISOLATION_READ_UNCOMMITTED);
+        TransactionTemplate committed = isolated(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        Long maxId = uncommitted.execute(status -> movementRepository.findMaxId());
+        long boundary = maxId != null ? maxId + 1 : from;
+        if (boundary <= from) {
+            return boundary;
+        }
+        long deadline = System.nanoTime() + settleTimeout.toNanos();
+        while (true) {
+            Long visible = committed.execute(status -> movementRepository.countInIdRange(from, boundary));
+            Long written = uncommitted.execute(status -> movementRepository.countInIdRange(from, boundary));
+            if (visible.equals(written)) {
+                return boundary;
+            }
+            if (System.nanoTime() > deadline) {
+                return null;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private TransactionTemplate isolated(int isolationLevel) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(isolationLevel);
+        return template;
+    }
+
+    /**
+     * Последние снимки всех шардов, от новых к старым.
+     */
+    public List<StockSnapshot> getSnapshots(int limit) {
+        List<StockSnapshot> snapshots = new ArrayList<>();
+        shardRouter.onEachShard(() -> snapshotRepository.findAllByOrderByTakenAtDesc(PageRequest.of(0, limit)))
+                .forEach(snapshots::addAll);
+        snapshots.sort(Comparator.comparing(StockSnapshot::getTakenAt).reversed());
+        return snapshots.size() > limit ? new ArrayList<>(snapshots.subList(0, limit)) : snapshots;
+    }
+
+    /**
+     * Остатки склада на конец дня date — порция товаров с ID больше afterProductId по возрастанию ID.
+     * Товары с нулевым остатком не возвращаются.
+     *
+     * @throws jakarta.persistence.EntityNotFoundException если склада нет
+     * @throws IllegalArgumentException                    если дата раньше начала журнала
+     */
+    public Slice<ProductQuantityView> getBalanceAsOf(LocalDate date, Long warehouseId, Long afterProductId, int size) {
+        warehouseService.getById(warehouseId);
+        return shardRouter.onWarehouse(warehouseId, () -> balanceAsOf(date, warehouseId, afterProductId, size));
+    }
+
+    private Slice<ProductQuantityView> balanceAsOf(LocalDate date, Long warehouseId, Long afterProductId, int size) {
+        LocalDateTime moment = date.plusDays(1).atStartOfDay();
+        StockSnapshot first = snapshotRepository.findFirstByOrderByTakenAtAsc()
+                .orElseThrow(() -> new IllegalStateException("No stock snapshot to answer from"));
+        if (moment.isBefore(first.getTakenAt())) {
+            throw new IllegalArgumentException("Stock history is available from " + first.getTakenAt().toLocalDate());
+        }
+        long after = afterProductId != null ? afterProductId : 0L;
+        int limit = size + 1;
+
+        LocalDateTime now = LocalDateTime.now();
+        StockSnapshot before = snapshotRepository.findFirstByTakenAtLessThanEqualOrderByTakenAtDesc(moment).orElse(null);
+        StockSnapshot later = snapshotRepository.findFirstByTakenAtGreaterThanOrderByTakenAtAsc(moment).orElse(null);
+        Duration fromStock = moment.isBefore(now) ? Duration.between(moment, now) : Duration.ZERO;
+        Duration fromBefore = before != null ? Duration.between(before.getTakenAt(), moment) : null;
+        Duration fromLater = later != null ? Duration.between(moment, later.getTakenAt()) : null;
+
+        // created_at движения близко к моменту выдачи его ID, но не обязательно в порядке ID, поэтому движения
+        // отбираются по границе снимка, а время только сужает просмотр журнала (с запасом на расхождение часов)
+        List<ProductQuantityView> rows;
+        if (fromBefore != null && fromBefore.compareTo(fromStock) <= 0
+                && (fromLater == null || fromBefore.compareTo(fromLater) <= 0)) {
+            log.debug("Stock of warehouse {} as of {}: snapshot {} + movements", warehouseId, moment, before.getId());
+            rows = movementRepository.balanceFromSnapshot(before.getId(), warehouseId,
+                    before.getTakenAt().minus(maxClockSkew), moment, before.getMovementBoundary(), Long.MAX_VALUE, 1, after, limit);
+        } else if (fromLater != null && fromLater.compareTo(fromStock) <= 0) {
+            log.debug("Stock of warehouse {} as of {}: snapshot {} - movements", warehouseId, moment, later.getId());
+            rows = movementRepository.balanceFromSnapshot(later.getId(), warehouseId,
+                    moment, later.getTakenAt().plus(maxClockSkew), 0, later.getMovementBoundary(), -1, after, limit);
+        } else {
+            log.debug("Stock of warehouse {} as of {}: current stock - movements", warehouseId, moment);
+            rows = movementRepository.balanceFromStock(warehouseId, moment, after, limit);
+        }
+
+        boolean hasNext = rows.size() > size;
+        return new SliceImpl<>(hasNext ? rows.subList(0, size) : rows, PageRequest.of(0, size), hasNext);
+    }
+
+    /**
+     * Пересчитать stock по последнему снимку и движениям после него (при шардировании — в каждом шарде
+     * по его снимку или только в шарде склада).
+     *
+     * @param warehouseId только этот склад; null — все склады
+     * @throws IllegalStateException если снимков нет или пересчёт части не удался
+     *                               (уже пересчитанные части остаются пересчитанными)
+     */
+    public RebuildResult rebuild(Long warehouseId) {
+        int partitions = Math.max(1, rebuildParallelism);
+        long started = System.nanoTime();
+        List<StockSnapshot> snapshots = new ArrayList<>();
+        if (warehouseId != null) {
+            snapshots.add(rebuildShard(shardRouter.shardOf(warehouseId), warehouseId, partitions));
+        } else {
+            shardRouter.forEachShard(shard -> snapshots.add(rebuildShard(shard, null, partitions)));
+        }
+        long elapsed = (System.nanoTime() - started) / 1_000_000;
+        log.info("Stock rebuilt (warehouse {}) in {} partitions: {} ms",
+                warehouseId != null ? warehouseId : "all", partitions, elapsed);
+        return new RebuildResult(snapshots, warehouseId, partitions, elapsed);
+    }
+
+    /**
+     * Пересчитать stock шарда. Части пересчитываются в своих потоках, поэтому шард выбирается в каждой задаче.
+     * Транзакции частей в READ COMMITTED: блокируются только строки части, а журнал читается с движениями,
+     * зафиксированными до получения блокировки.
+     */
+    private StockSnapshot rebuildShard(int shard, Long warehouseId, int partitions) {
+        StockSnapshot snapshot = shardRouter.inShard(shard, () -> snapshotRepository.findFirstByOrderByTakenAtDesc()
+                .orElseThrow(() -> new IllegalStateException("No stock snapshot to rebuild from in shard " + shard)));
+        LocalDateTime now = LocalDateTime.now();
+        long started = System.nanoTime();
+        TransactionTemplate partitionTransaction = isolated(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(partitions,
+                task -> new Thread(task, "stock-rebuild-" + threadNumber.incrementAndGet()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                int partition = i;
+                futures.add(pool.submit(() -> shardRouter.runInShard(shard, () -> partitionTransaction.executeWithoutResult(status -> {
+                    stockRepository.lockPartition(partitions, partition, warehouseId);
+                    stockRepository.replayPartition(snapshot.getId(), snapshot.getMovementBoundary(), partitions, partition, warehouseId, now);
+                }))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Stock rebuild failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Stock rebuild interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // строки stock изменены массово — клиентам синхронизации нужно перечитать остатки целиком
+        shardRouter.runInShard(shard, () -> transactionTemplate.executeWithoutResult(
+                status -> changeLogService.recordResync(ChangeLogEntry.TYPE_STOCK)));
+        // отметки low_stock пересчитаны запросом, без LowStockEvent — предупреждения перечитываются из БД
+        lowStockAlertService.requestResync();
+
+        log.info("Stock of shard {} rebuilt from snapshot {} in {} ms",
+                shard, snapshot.getId(), (System.nanoTime() - started) / 1_000_000);
+        return snapshot;
+    }
+
+    /**
+     * Копия stock. INSERT ... SELECT блокирует строки stock, поэтому транзакции, которые меняют
+     * остатки, либо уже завершены (их движения раньше границы), либо ждут и запишут движения позже неё.
+     * Граница читается блокирующим чтением — последнее зафиксированное значение, а не снимок начала транзакции.
+     */
+    private StockSnapshot createBaseline() {
+        long started = System.nanoTime();
+        return transactionTemplate.execute(status -> {
+            StockSnapshot snapshot = new StockSnapshot();
+            snapshot.setTakenAt(LocalDateTime.now());
+            snapshot.setBaseline(true);
+            snapshot.setMovementBoundary(0L);
+            snapshot = snapshotRepository.save(snapshot);
+            snapshot.setPairs(snapshotItemRepository.copyFromStock(snapshot.getId()));
+            snapshot.setMovementBoundary(movementRepository.lockNextId());
+            snapshot.setTakenAt(LocalDateTime.now());
+            snapshot.setBuildMillis((System.nanoTime() - started) / 1_000_000);
+            return snapshotRepository.save(snapshot);
+        });
+    }
+
+    /**
+     * Удалить снимки сверх последних {@code snapshots-to-keep}, кроме baseline и первого снимка каждого месяца.
+     */
+    private void deleteOldSnapshots() {
+        List<StockSnapshot> snapshots = snapshotRepository.findAll(Sort.by("takenAt").ascending());
+        int keep = Math.max(1, snapshotsToKeep);
+        Set<YearMonth> months = new HashSet<>();
+        List<StockSnapshot> old = new ArrayList<>();
+        for (int i = 0; i < snapshots.size() - keep; i++) {
+            StockSnapshot snapshot = snapshots.get(i);
+            boolean firstOfMonth = months.add(YearMonth.from(snapshot.getTakenAt()));
+            if (!Boolean.TRUE.equals(snapshot.getBaseline()) && !firstOfMonth) {
+                old.add(snapshot);
+            }
+        }
+        for (StockSnapshot snapshot : old) {
+            transactionTemplate.executeWithoutResult(status -> {
+                snapshotItemRepository.deleteBySnapshotId(snapshot.getId());
+                snapshotRepository.delete(snapshot);
+            });
+        }
+    }
+}
@@ -1,68 +1,309 @@
 package warehouses.project.service;
 
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import warehouses.project.model.Product;
+import warehouses.project.model.Shipment;
 import warehouses.project.model.Stock;
+import warehouses.project.model.StockMovement;
 import warehouses.project.model.Warehouse;
+import warehouses.project.repository.StockMovementRepository;
 import warehouses.project.repository.StockRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class StockService {
 
     private final StockRepository stockRepository;
+    private final ProductNameIndex productNameIndex;
+    private final StockMovementRepository stockMovementRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeLogService changeLogService;
+    private final ShardRouter shardRouter;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${stock.alerts.hysteresis-percent:10}")
+    private int hysteresisPercent;
+
+    @Transactional(readOnly = true)
     public Page<Stock> getAll(Pageable pageable) {
-        return stockRepository.findAll(pageable);
+        return shardRouter.page(null, pageable, stockRepository::findAll, StockService::initializeDetails);
     }
 
+    /**
+     * Поиск остатков по названию товара и/или складу.
+     * Товары по названию сначала ищутся в {@link ProductNameIndex}, и остатки выбираются по их ID без JOIN + LIKE.
+     */
+    @Transactional(readOnly = true)
     public Page<Stock> searchByProductOrWarehouse(String productName, Long warehouseId, Pageable pageable) {
-        if (productName != null && warehouseId != null) {
-            return stockRepository.findByProductNameContainingIgnoreCaseAndWarehouseId(productName, warehouseId, pageable);
-        } else if (productName != null) {
-            return stockRepository.findByProductNameContainingIgnoreCase(productName, pageable);
-        } else if (warehouseId != null) {
-            return stockRepository.findByWarehouseId(warehouseId, pageable);
+        Optional<List<Long>> productIds = productNameIndex.findIds(productName);
+        if (productIds.isPresent()) {
+            if (productIds.get().isEmpty()) {
+                return Page.empty(pageable);
+            }
         }
-        return stockRepository.findAll(pageable);
+        return shardRouter.page(shardRouter.shardOrAll(warehouseId), pageable, page -> {
+            if (productIds.isPresent()) {
+                return warehouseId != null
+                        ? stockRepository.findByProductIdInAndWarehouseId(productIds.get(), warehouseId, page)
+                        : stockRepository.findByProductIdIn(productIds.get(), page);
+            }
+            if (productName != null && warehouseId != null) {
+                return stockRepository.findByProductNameContainingIgnoreCaseAndWarehouseId(productName, warehouseId, page);
+            } else if (productName != null) {
+                return stockRepository.findByProductNameContainingIgnoreCase(productName, page);
+            } else if (warehouseId != null) {
+                return stockRepository.findByWarehouseId(warehouseId, page);
+            }
+            return stockRepository.findAll(page);
+        }, StockService::initializeDetails);
+    }
+
+    /**
+     * Keyset-пагинация остатков: порция после остатка с ID afterId (null — с начала).
+     * Ищет по индексу без OFFSET и без подсчёта общего количества.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Stock> scroll(String productName, Long warehouseId, Long afterId, Pageable pageable) {
+        long after = afterId != null ? afterId : Long.MAX_VALUE;
+        return shardRouter.slice(shardRouter.shardOrAll(warehouseId), pageable, page -> {
+            if (productName != null && warehouseId != null) {
+                return stockRepository.findByProductNameContainingIgnoreCaseAndWarehouseIdAndIdLessThan(productName, warehouseId, after, page);
+            } else if (productName != null) {
+                return stockRepository.findByProductNameContainingIgnoreCaseAndIdLessThan(productName, after, page);
+            } else if (warehouseId != null) {
+                return stockRepository.findByWarehouseIdAndIdLessThan(warehouseId, after, page);
+            }
+            return stockRepository.findByIdLessThan(after, page);
+        }, StockService::initializeDetails);
     }
 
     public Stock getById(Long id) {
-        return stockRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Stock not found with id: " + id));
+        return shardRouter.read(shardRouter.shardOfId(id), () -> stockRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Stock not found with id: " + id)), StockService::initializeDetails);
+    }
+
+    /**
+     * Найти остатки по набору ID одним запросом на шард; отсутствующие ID пропускаются.
+     */
+    public List<Stock> findByIds(Collection<Long> ids) {
+        if (!shardRouter.isSharded()) {
+            return stockRepository.findAllById(ids);
+        }
+        Map<Integer, List<Long>> idsByShard = new HashMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(shardRouter.shardOfId(id), shard -> new ArrayList<>()).add(id);
+        }
+        List<Stock> found = new ArrayList<>(ids.size());
+        idsByShard.forEach((shard, shardIds) -> found.addAll(shardRouter.read(shard,
+                () -> stockRepository.findAllById(shardIds), rows -> rows.forEach(StockService::initializeDetails))));
+        return found;
     }
 
+    /**
+     * Получить строку остатка (товар, склад), создав её с нулевым количеством при отсутствии.
+     * Создание идёт через INSERT IGNORE, поэтому параллельные вызовы не порождают дубликатов.
+     */
+    @Transactional
     public Stock getStock(Product product, Warehouse warehouse) {
         return stockRepository.findByProductAndWarehouse(product, warehouse)
                 .orElseGet(() -> {
-                    Stock newStock = new Stock();
-                    newStock.setProduct(product);
-                    newStock.setWarehouse(warehouse);
-                    newStock.setCount(0);
-                    return stockRepository.save(newStock);
+                    boolean created = stockRepository.insertIfAbsent(product.getId(), warehouse.getId(), LocalDateTime.now()) == 1;
+                    Stock stock = stockRepository.findByProductAndWarehouse(product, warehouse)
+                            .orElseThrow(() -> new IllegalStateException("Stock row was not created for product: " + product.getName()));
+                    if (created) {
+                        changeLogService.recordStock(stock.getId());
+                    }
+                    return stock;
                 });
     }
 
+    @Transactional
     public void increaseStock(Product product, Warehouse warehouse, int amount) {
-        Stock stock = getStock(product, warehouse);
-        stock.setCount(stock.getCount() + amount);
-        stock.setLastUpdate(LocalDateTime.now());
-        stockRepository.save(stock);
+        applyDeltas(List.of(StockDelta.increase(product, warehouse, amount)));
     }
 
+    @Transactional
     public void decreaseStock(Product product, Warehouse warehouse, int amount) {
+        applyDeltas(List.of(StockDelta.decrease(product, warehouse, amount)));
+    }
+
+    @Transactional
+    public void applyDeltas(Collection<StockDelta> deltas) {
+        applyDeltas(null, deltas);
+    }
+
+    /**
+     * Применить изменения остатков одной операции.
+     * <p>
+     * Каждое изменение — один атомарный SQL без чтения строки в Java: приход через upsert,
+     * расход через условный UPDATE ... WHERE count >= ?. Изменения одной пары (товар, склад)
+     * суммируются, а пары обрабатываются в порядке {@link StockDelta#LOCK_ORDER}.
+     * В той же транзакции изменения дописываются в журнал движений (stock_movements).
+     * <p>
+     * Отметка low_stock пересчитывается тем же запросом, что меняет строку; если остаток пересёк порог
+     * (запрос вернул переключение отметки), публикуется {@link LowStockEvent}.
+     *
+     * @param shipment операция, к которой относятся изменения (null — не из операции); в журнал пишутся её ID, тип и дата
+     * @throws IllegalStateException если товара на складе недостаточно (транзакция откатывается)
+     */
+    @Transactional
+    public void applyDeltas(Shipment shipment, Collection<StockDelta> deltas) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StockDelta> merged = mergeInLockOrder(deltas);
+        for (StockDelta delta : merged) {
+            Long productId = delta.product().getId();
+            Long warehouseId = delta.warehouse().getId();
+            if (delta.amount() > 0) {
+                StockRepository.RowChange change = stockRepository.increase(productId, warehouseId, delta.amount(), now);
+                if (change.lowStockChanged()) {
+                    eventPublisher.publishEvent(new LowStockEvent(productId, warehouseId, false));
+                }
+                changeLogService.recordStock(change.stockId());
+            } else if (delta.amount() < 0) {
+                StockRepository.RowChange change = stockRepository.decreaseIfAvailable(productId, warehouseId, -delta.amount(), now);
+                if (change == null) {
+                    throw new IllegalStateException("Not enough stock for product: " + delta.product().getName());
+                }
+                if (change.lowStockChanged()) {
+                    eventPublisher.publishEvent(new LowStockEvent(productId, warehouseId, true));
+                }
+                changeLogService.recordStock(change.stockId());
+            }
+        }
+        appendMovements(shipment, merged);
+        publishChanges(shipment != null ? shipment.getId() : null, merged);
+    }
+
+    /**
+     * Заблокировать заранее строки остатков всех изменений транзакции в порядке {@link StockDelta#LOCK_ORDER}.
+     * Нужно, когда одна транзакция проводит несколько операций: каждая применяет свои изменения в этом порядке,
+     * но вместе они брали бы строки вразнобой и могли бы взаимно заблокироваться с другой такой транзакцией.
+     * Отсутствующие строки создаются с нулевым остатком (расход по ним всё равно откатит транзакцию).
+     */
+    @Transactional
+    public void lockRows(Collection<StockDelta> deltas) {
+        LocalDateTime now = LocalDateTime.now();
+        for (StockDelta delta : mergeInLockOrder(deltas)) {
+            stockRepository.lockRow(delta.product().getId(), delta.warehouse().getId(), now);
+        }
+    }
+
+    /**
+     * Задать порог остатка товара на складе (строка остатка создаётся при отсутствии).
+     * Если остаток уже ниже нового порога или предупреждение снято новым порогом, публикуется {@link LowStockEvent}.
+     *
+     * @param minCount     порог (null — убрать порог)
+     * @param restoreCount остаток, с которого предупреждение снимается;
+     *                     null — порог плюс {@code stock.alerts.hysteresis-percent} от него (не меньше 1)
+     * @throws IllegalArgumentException если пороги отрицательные или restoreCount меньше minCount
+     */
+    @Transactional
+    public Stock setThreshold(Product product, Warehouse warehouse, Integer minCount, Integer restoreCount) {
+        if (minCount == null) {
+            restoreCount = null;
+        } else {
+            if (minCount < 0) {
+                throw new IllegalArgumentException("minCount must not be negative");
+            }
+            if (restoreCount == null) {
+                restoreCount = minCount + Math.max(1, (int) Math.ceil(minCount * hysteresisPercent / 100.0));
+            }
+            if (restoreCount < minCount) {
+                throw new IllegalArgumentException("restoreCount must not be less than minCount");
+            }
+        }
         Stock stock = getStock(product, warehouse);
-        if (stock.getCount() < amount) {
-            throw new IllegalStateException("Not enough stock for product: " + product.getName());
+        stockRepository.updateThreshold(product.getId(), warehouse.getId(), minCount, restoreCount);
+        changeLogService.recordStock(stock.getId());
+        if (stockRepository.markLowIfBelowMin(product.getId(), warehouse.getId()) == 1) {
+            eventPublisher.publishEvent(new LowStockEvent(product.getId(), warehouse.getId(), true));
+        } else if (stockRepository.clearLowIfRestored(product.getId(), warehouse.getId()) == 1) {
+            eventPublisher.publishEvent(new LowStockEvent(product.getId(), warehouse.getId(), false));
+        }
+        entityManager.refresh(stock);
+        return stock;
+    }
+
+    /**
+     * Связи, нужные после чтения из шарда (см. {@link ShardRouter}).
+     */
+    static void initializeDetails(Stock stock) {
+        Hibernate.initialize(stock.getProduct());
+        Hibernate.initialize(stock.getWarehouse());
+    }
+
+    /**
+     * Время движения берётся после изменения строк stock, когда их блокировки уже получены:
+     * снимок, построенный под блокировками, не может пропустить движение со временем раньше своей границы.
+     */
+    private void appendMovements(Shipment shipment, List<StockDelta> merged) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        List<StockMovement> movements = new ArrayList<>(merged.size());
+        for (StockDelta delta : merged) {
+            if (delta.amount() == 0) {
+                continue;
+            }
+            StockMovement movement = new StockMovement();
+            movement.setProductId(delta.product().getId());
+            movement.setWarehouseId(delta.warehouse().getId());
+            movement.setDelta(delta.amount());
+            if (shipment != null) {
+                movement.setShipmentId(shipment.getId());
+                movement.setTransactionType(shipment.getTransactionType());
+                movement.setShipmentDate(shipment.getDate());
+            }
+            movement.setCreatedAt(createdAt);
+            movements.add(movement);
+        }
+        stockMovementRepository.appendAll(movements);
+    }
+
+    /**
+     * Изменения остатков для подписчиков (после фиксации, см. {@link StockChangedEvent}).
+     */
+    private void publishChanges(Long shipmentId, List<StockDelta> merged) {
+        List<StockChangedEvent.Change> changes = new ArrayList<>(merged.size());
+        for (StockDelta delta : merged) {
+            if (delta.amount() != 0) {
+                changes.add(new StockChangedEvent.Change(delta.product().getId(), delta.warehouse().getId(), delta.amount()));
+            }
+        }
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new StockChangedEvent(shipmentId, changes, LocalDateTime.now()));
+        }
+    }
+
+    private List<StockDelta> mergeInLockOrder(Collection<StockDelta> deltas) {
+        Map<List<Long>, StockDelta> merged = new HashMap<>();
+        for (StockDelta delta : deltas) {
+            merged.merge(
+                    List.of(delta.product().getId(), delta.warehouse().getId()),
+                    delta,
+                    (a, b) -> new StockDelta(a.product(), a.warehouse(), a.amount() + b.amount()));
         }
-        stock.setCount(stock.getCount() - amount);
-        stock.setLastUpdate(LocalDateTime.now());
-        stockRepository.save(stock);
+        List<StockDelta> ordered = new ArrayList<>(merged.values());
+        ordered.sort(StockDelta.LOCK_ORDER);
+        return ordered;
     }
-}
\ No newline at end of file
+}
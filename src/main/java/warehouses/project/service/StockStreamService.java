@@ -0,0 +1,110 @@
+package warehouses.project.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import warehouses.project.dto.StockChangeDto;
+import warehouses.project.dto.StockChangesDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поток изменений остатков (SSE) вместо периодического перечитывания списков.
+ * <p>
+ * После фиксации каждой операции с остатками {@link StockChangedEvent} передаётся потоку раскладки
+ * (операция его не ждёт), а тот раскладывает изменения по буферам подписчиков с учётом их фильтров
+ * (см. {@link SseBroadcaster}). Медленный подписчик и все подписчики при переполнении очереди раскладки
+ * отключаются: после переподключения клиент перечитывает остатки и дальше применяет изменения из потока.
+ */
+@Slf4j
+@Service
+public class StockStreamService {
+
+    public static final String EVENT_NAME = "stock";
+
+    private final SseBroadcaster<StockChangedEvent> broadcaster;
+    private final ThreadPoolExecutor fanOut;
+
+    public StockStreamService(
+            @Qualifier("sseSenderExecutor") Executor sseSenderExecutor,
+            @Value("${stock.stream.buffer-size:256}") int bufferSize,
+            @Value("${stock.stream.timeout:PT30M}") Duration timeout,
+            @Value("${stock.stream.queue-capacity:10000}") int queueCapacity,
+            @Value("${sse.send-timeout:PT10S}") Duration sendTimeout
+    ) {
+        this.broadcaster = new SseBroadcaster<>("stock", sseSenderExecutor, bufferSize, timeout.toMillis(), sendTimeout);
+        this.fanOut = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "stock-stream-fanout");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void stop() {
+        fanOut.shutdownNow();
+        broadcaster.close();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        try {
+            fanOut.execute(() -> broadcaster.publish(EVENT_NAME, event));
+        } catch (RejectedExecutionException e) {
+            log.warn("Stock stream fan-out queue is full, disconnecting {} subscribers", broadcaster.size());
+            broadcaster.close();
+        }
+    }
+
+    /**
+     * Подписаться на изменения остатков.
+     *
+     * @param warehouseId только изменения этого склада (null — всех)
+     * @param productId   только изменения этого товара (null — всех)
+     */
+    public SseEmitter subscribe(Long warehouseId, Long productId) {
+        return broadcaster.subscribe(event -> {
+            List<StockChangeDto> changes = new ArrayList<>();
+            for (StockChangedEvent.Change change : event.changes()) {
+                if ((warehouseId == null || warehouseId.equals(change.warehouseId()))
+                        && (productId == null || productId.equals(change.productId()))) {
+                    changes.add(StockChangeDto.builder()
+                            .productId(change.productId())
+                            .warehouseId(change.warehouseId())
+                            .delta(change.delta())
+                            .build());
+                }
+            }
+            if (changes.isEmpty()) {
+                return null;
+            }
+            return StockChangesDto.builder()
+                    .shipmentId(event.shipmentId())
+                    .at(event.at())
+                    .changes(changes)
+                    .build();
+        });
+    }
+
+    public int getSubscriberCount() {
+        return broadcaster.size();
+    }
+
+    @Scheduled(fixedDelayString = "${sse.heartbeat:PT15S}")
+    public void heartbeat() {
+        broadcaster.heartbeat();
+    }
+}
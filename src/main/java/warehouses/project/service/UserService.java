@@ -4,9 +4,11 @@ import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import warehouses.project.exeption.EmailAlreadyExistsException;
 import warehouses.project.exeption.UserNotFoundException;
 import warehouses.project.exeption.UsernameAlreadyExistsException;
@@ -19,6 +21,8 @@ import warehouses.project.repository.UserRepository;
 public class UserService {
 
     private final UserRepository repository;
+    private final UserStatusCache userStatusCache;
+    private final ShardReferenceSync shardReferenceSync;
 
     /**
      * Сохранение пользователя
@@ -26,7 +30,9 @@ public class UserService {
      * @return сохраненный пользователь
      */
     public User save(User user) {
-        return repository.save(user);
+        User saved = repository.save(user);
+        shardReferenceSync.syncAfterCommit(ShardReferenceSync.USERS, saved.getId());
+        return saved;
     }
 
 
@@ -49,11 +55,13 @@ public class UserService {
 
     /**
      * Получение пользователя по имени пользователя
+     * <p>
+     * Идёт через кэш natural id, так как вызывается на каждый аутентифицированный запрос
      *
      * @return пользователь
      */
     public User getByUsername(String username) {
-        return repository.findByUsername(username)
+        return repository.findByNaturalUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден"));
 
     }
@@ -69,6 +77,21 @@ public class UserService {
         return this::getByUsername;
     }
 
+    /**
+     * Сохранение перехешированного пароля после успешного входа
+     * <p>
+     * Нужен для Spring Security: вызывается, если хеш устарел (другой алгоритм или меньшая стоимость BCrypt)
+     *
+     * @return сервис обновления пароля
+     */
+    public UserDetailsPasswordService userDetailsPasswordService() {
+        return (userDetails, newPassword) -> {
+            User user = getByUsername(userDetails.getUsername());
+            user.setPassword(newPassword);
+            return save(user);
+        };
+    }
+
     /**
      * Выдача прав администратора указанному пользователю.
      *
@@ -79,6 +102,7 @@ public class UserService {
     public void getAdmin(User user) {
         user.setRole(Role.ROLE_ADMIN);
         save(user);
+        userStatusCache.invalidate(user.getUsername());
     }
 
     /**
@@ -87,6 +111,7 @@ public class UserService {
      * @param pageable параметры пагинации
      * @return страница пользователей
      */
+    @Transactional(readOnly = true)
     public Page<User> findAll(Pageable pageable) {
         return repository.findAll(pageable);
     }
@@ -103,7 +128,9 @@ public class UserService {
         User user = repository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException(userId));
         user.setRole(role);
-        return repository.save(user);
+        User saved = save(user);
+        userStatusCache.invalidate(saved.getUsername());
+        return saved;
     }
 
     /**
@@ -113,12 +140,14 @@ public class UserService {
      * @throws UserNotFoundException если пользователь не найден
      */
     public void deleteUser(Long userId) {
-        if (!repository.existsById(userId)) {
-            throw new UserNotFoundException(userId);
-        }
-        repository.deleteById(userId);
+        User user = repository.findById(userId)
+                .orElseThrow(() -> new UserNotFoundException(userId));
+        shardReferenceSync.deleteFromShards(ShardReferenceSync.USERS, userId);
+        repository.delete(user);
+        userStatusCache.invalidate(user.getUsername());
     }
 
+    @Transactional(readOnly = true)
     public Page<User> getAllUsers(Pageable pageable) {
         return repository.findAll(pageable);
     }
@@ -129,15 +158,19 @@ public class UserService {
     }
 
     public User createUser(User user) {
-        return repository.save(user);
+        return save(user);
     }
 
     public User updateUser(Long id, User updatedUser) {
         User existing = getById(id);
+        String previousUsername = existing.getUsername();
         existing.setUsername(updatedUser.getUsername());
         existing.setEmail(updatedUser.getEmail());
         existing.setRole(updatedUser.getRole());
-        return repository.save(existing);
+        User saved = save(existing);
+        userStatusCache.invalidate(previousUsername);
+        userStatusCache.invalidate(saved.getUsername());
+        return saved;
     }
 
 
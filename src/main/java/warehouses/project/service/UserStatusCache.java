@@ -0,0 +1,58 @@
+package warehouses.project.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import warehouses.project.model.Role;
+import warehouses.project.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Ограниченный кэш статусов пользователей (существует ли, ID, текущая роль) с коротким TTL.
+ * <p>
+ * Позволяет аутентифицировать запрос по claims токена без обращения к БД и при этом
+ * учитывать смену роли и удаление пользователя: {@link UserService} сбрасывает запись сразу,
+ * а изменения с других узлов становятся видны не позже чем через TTL.
+ * Отсутствие пользователя тоже кэшируется, чтобы токены удалённых пользователей не шли в БД.
+ */
+@Component
+public class UserStatusCache {
+
+    private final UserRepository userRepository;
+    private final Cache<String, Optional<UserStatus>> cache;
+
+    public UserStatusCache(
+            UserRepository userRepository,
+            @Value("${security.user-status-cache.ttl:30s}") Duration ttl,
+            @Value("${security.user-status-cache.max-size:10000}") long maxSize
+    ) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * Статус пользователя; при промахе — один запрос к БД.
+     *
+     * @return статус или пустой Optional, если пользователя нет
+     */
+    public Optional<UserStatus> get(String username) {
+        return cache.get(username, name -> userRepository.findStatusByUsername(name)
+                .map(view -> new UserStatus(view.getId(), view.getRole())));
+    }
+
+    /**
+     * Сбросить запись после изменения или удаления пользователя.
+     */
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    public record UserStatus(Long id, Role role) {
+    }
+}
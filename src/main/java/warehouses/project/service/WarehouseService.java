@@ -5,19 +5,28 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import warehouses.project.model.Warehouse;
 import warehouses.project.repository.WarehouseRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class WarehouseService {
 
     private final WarehouseRepository warehouseRepository;
+    private final ChangeLogService changeLogService;
+    private final ShardRouter shardRouter;
+    private final ShardReferenceSync shardReferenceSync;
 
+    @Transactional(readOnly = true)
     public Page<Warehouse> getAllWarehouses(Pageable pageable) {
         return warehouseRepository.findAll(pageable);
     }
 
+    @Transactional(readOnly = true)
     public Page<Warehouse> searchWarehouses(String name, Pageable pageable) {
         if (name == null || name.isBlank()) {
             return warehouseRepository.findAll(pageable);
@@ -30,18 +39,46 @@ public class WarehouseService {
                 .orElseThrow(() -> new EntityNotFoundException("Warehouse not found with id: " + id));
     }
 
+    /**
+     * Найти склады по набору ID одним запросом; отсутствующие ID пропускаются.
+     */
+    public List<Warehouse> findByIds(Collection<Long> ids) {
+        return warehouseRepository.findAllById(ids);
+    }
+
+    /**
+     * Создать склад. При шардировании склад закрепляется за шардом, где складов меньше всего.
+     */
+    @Transactional
     public Warehouse createWarehouse(Warehouse warehouse) {
-        return warehouseRepository.save(warehouse);
+        if (shardRouter.isSharded()) {
+            warehouse.setShard(shardRouter.leastLoadedShard());
+        }
+        Warehouse saved = warehouseRepository.save(warehouse);
+        changeLogService.recordWarehouse(saved.getId(), false);
+        shardReferenceSync.syncAfterCommit(ShardReferenceSync.WAREHOUSES, saved.getId());
+        return saved;
     }
 
+    @Transactional
     public Warehouse updateWarehouse(Long id, Warehouse updatedWarehouse) {
         Warehouse existing = getById(id);
         existing.setName(updatedWarehouse.getName());
         existing.setLocation(updatedWarehouse.getLocation());
-        return warehouseRepository.save(existing);
+        Warehouse saved = warehouseRepository.save(existing);
+        changeLogService.recordWarehouse(saved.getId(), false);
+        shardReferenceSync.syncAfterCommit(ShardReferenceSync.WAREHOUSES, saved.getId());
+        return saved;
     }
 
+    /**
+     * Удалить склад. При шардировании копии склада сначала удаляются из шардов
+     * (удаление отклоняется, если в шарде есть его операции или остатки).
+     */
+    @Transactional
     public void deleteWarehouse(Long id) {
+        shardReferenceSync.deleteFromShards(ShardReferenceSync.WAREHOUSES, id);
         warehouseRepository.deleteById(id);
+        changeLogService.recordWarehouse(id, true);
     }
 }
\ No newline at end of file
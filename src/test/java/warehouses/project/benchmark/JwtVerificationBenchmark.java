@@ -0,0 +1,97 @@
+package warehouses.project.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import warehouses.project.model.Role;
+import warehouses.project.model.User;
+import warehouses.project.service.JwtService;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость проверки JWT на один запрос:
+ * <ul>
+ *     <li>{@code legacy} — прежняя схема: три разбора токена, ключ строится на каждый разбор;</li>
+ *     <li>{@code singleParse} — один разбор с заранее созданными ключом и парсером;</li>
+ *     <li>{@code cached} — повторный токен из кэша проверенных токенов.</li>
+ * </ul>
+ * Запуск: {@code ./mvnw test -Dtest=JwtVerificationBenchmark -Dbenchmark=true}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SIGNING_KEY = "53A73E5F1C4E0A2D3B5F2D784E6A1B423D6F247D1F5E3C6A9B8D7E4F2A1C5B3D";
+
+    private JwtService uncachedService;
+    private JwtService cachedService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        uncachedService = new JwtService(SIGNING_KEY, 0);
+        cachedService = new JwtService(SIGNING_KEY, 10_000);
+        user = User.builder()
+                .id(1L)
+                .username("benchmark")
+                .email("benchmark@example.com")
+                .role(Role.ROLE_STOREKEEPER)
+                .build();
+        token = cachedService.generateToken(user);
+        cachedService.verify(token);
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        String username = legacyClaims(token).getSubject();
+        return username.equals(user.getUsername())
+                && legacyClaims(token).getSubject().equals(user.getUsername())
+                && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean singleParse() {
+        return uncachedService.isTokenValid(uncachedService.verify(token), user);
+    }
+
+    @Benchmark
+    public boolean cached() {
+        return cachedService.isTokenValid(cachedService.verify(token), user);
+    }
+
+    private static Claims legacyClaims(String token) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SIGNING_KEY));
+        return Jwts.parser().setSigningKey(key).parseClaimsJws(token).getBody();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
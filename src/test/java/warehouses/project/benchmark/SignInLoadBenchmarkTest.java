@@ -0,0 +1,147 @@
+package warehouses.project.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузка "пересменка": сотни одновременных входов и параллельное чтение /api/stock.
+ * <p>
+ * Печатает пропускную способность входа (успешные и отклонённые с 429) и задержки /api/stock
+ * без входов и под нагрузкой входов. Регистрирует пользователя в настроенной БД,
+ * поэтому запускается только явно:
+ * {@code ./mvnw test -Dtest=SignInLoadBenchmarkTest -Dbenchmark=true}
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SignInLoadBenchmarkTest {
+
+    private static final int SIGN_IN_CLIENTS = 300;
+    private static final int STOCK_CLIENTS = 16;
+    private static final Duration PHASE = Duration.ofSeconds(20);
+    private static final String PASSWORD = "benchmark-password";
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(SIGN_IN_CLIENTS + STOCK_CLIENTS))
+            .build();
+
+    @Test
+    void signInStormDoesNotStarveStockReads() throws Exception {
+        String username = "bench" + System.currentTimeMillis();
+        String token = signUp(username);
+
+        // прогрев
+        measureStock(token, Duration.ofSeconds(5), false, username);
+
+        Result idle = measureStock(token, PHASE, false, username);
+        Result storm = measureStock(token, PHASE, true, username);
+
+        System.out.printf("/api/stock без входов:  p50 %d ms, p99 %d ms, %,d запросов%n",
+                idle.percentile(50), idle.percentile(99), idle.stockLatencies.size());
+        System.out.printf("/api/stock при входах:  p50 %d ms, p99 %d ms, %,d запросов%n",
+                storm.percentile(50), storm.percentile(99), storm.stockLatencies.size());
+        System.out.printf("входы: %,.1f/s успешно, %,d отклонено (429), %,d ошибок%n",
+                storm.signIns.get() / (double) PHASE.toSeconds(), storm.rejected.get(), storm.failed.get());
+    }
+
+    private Result measureStock(String token, Duration phase, boolean withSignIns, String username) throws Exception {
+        Result result = new Result();
+        long deadline = System.nanoTime() + phase.toNanos();
+        int signInClients = withSignIns ? SIGN_IN_CLIENTS : 0;
+        ExecutorService clients = Executors.newFixedThreadPool(STOCK_CLIENTS + Math.max(signInClients, 1));
+        try {
+            for (int i = 0; i < STOCK_CLIENTS; i++) {
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long started = System.nanoTime();
+                        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/api/stock?size=10"))
+                                .header("Authorization", "Bearer " + token)
+                                .GET());
+                        if (response.statusCode() == 200) {
+                            result.stockLatencies.add((System.nanoTime() - started) / 1_000_000);
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (int i = 0; i < signInClients; i++) {
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        HttpResponse<String> response = send(json("/api/auth/sign-in",
+                                "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}"));
+                        switch (response.statusCode()) {
+                            case 200 -> result.signIns.incrementAndGet();
+                            case 429 -> result.rejected.incrementAndGet();
+                            default -> result.failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+        } finally {
+            clients.shutdown();
+            clients.awaitTermination(phase.toSeconds() + 60, TimeUnit.SECONDS);
+        }
+        return result;
+    }
+
+    private String signUp(String username) throws Exception {
+        HttpResponse<String> response = send(json("/api/auth/sign-up",
+                "{\"username\":\"" + username + "\",\"email\":\"" + username + "@example.com\",\"password\":\"" + PASSWORD + "\"}"));
+        Matcher matcher = TOKEN.matcher(response.body());
+        if (!matcher.find()) {
+            throw new IllegalStateException("Sign-up failed: " + response.statusCode() + " " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    private HttpRequest.Builder json(String path, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+        return http.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static final class Result {
+        private final List<Long> stockLatencies = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger signIns = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        long percentile(int percentile) {
+            List<Long> sorted = new ArrayList<>(stockLatencies);
+            if (sorted.isEmpty()) {
+                return -1;
+            }
+            Collections.sort(sorted);
+            return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+        }
+    }
+}
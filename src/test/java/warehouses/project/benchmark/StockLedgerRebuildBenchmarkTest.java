@@ -0,0 +1,139 @@
+package warehouses.project.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import warehouses.project.model.StockSnapshot;
+import warehouses.project.service.StockLedgerService;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Пересчёт остатков по журналу на 50 млн движений (по умолчанию; {@code -Dledger.movements=...}).
+ * <p>
+ * Заполняет журнал движениями нового склада, затем измеряет:
+ * пересчёт от предыдущего снимка (весь журнал в хвосте), построение снимка
+ * и пересчёт от нового снимка (хвост пустой). Проверяет, что остатки склада совпали с суммой движений.
+ * Пишет в настроенную БД, поэтому запускается только явно и на отдельной базе:
+ * {@code ./mvnw test -Dtest=StockLedgerRebuildBenchmarkTest -Dbenchmark=true}
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StockLedgerRebuildBenchmarkTest {
+
+    private static final int PRODUCTS = 20_000;
+    private static final int BATCH = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Test
+    void rebuildFromSnapshot() {
+        long movements = Long.getLong("ledger.movements", 50_000_000L);
+        stockLedgerService.createBaselineIfMissing();
+
+        long warehouseId = insertWarehouse("ledger-bench-" + System.currentTimeMillis());
+        long[] productIds = insertProducts(PRODUCTS);
+        long[] expected = new long[PRODUCTS];
+
+        long started = System.nanoTime();
+        seedMovements(warehouseId, productIds, expected, movements);
+        System.out.printf("журнал: %,d движений записано за %,d ms%n", movements, millisSince(started));
+
+        StockLedgerService.RebuildResult fromOldSnapshot = stockLedgerService.rebuild(warehouseId);
+        System.out.printf("пересчёт от прошлого снимка (весь журнал в хвосте): %,d ms%n", fromOldSnapshot.elapsedMillis());
+        verify(warehouseId, productIds, expected);
+
+        StockSnapshot snapshot = stockLedgerService.createSnapshot().get(0);
+        System.out.printf("снимок: %,d пар за %,d ms%n", snapshot.getPairs(), snapshot.getBuildMillis());
+
+        StockLedgerService.RebuildResult fromNewSnapshot = stockLedgerService.rebuild(warehouseId);
+        System.out.printf("пересчёт от нового снимка: %,d ms (%d частей)%n",
+                fromNewSnapshot.elapsedMillis(), fromNewSnapshot.partitions());
+        verify(warehouseId, productIds, expected);
+    }
+
+    private void seedMovements(long warehouseId, long[] productIds, long[] expected, long movements) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Object[]> batch = new ArrayList<>(BATCH);
+        for (long i = 0; i < movements; i++) {
+            int product = random.nextInt(productIds.length);
+            int delta = 1 + random.nextInt(100);
+            expected[product] += delta;
+            batch.add(new Object[]{productIds[product], warehouseId, delta, Timestamp.valueOf(LocalDateTime.now())});
+            if (batch.size() == BATCH) {
+                insertMovements(batch);
+                batch.clear();
+            }
+        }
+        insertMovements(batch);
+    }
+
+    private void insertMovements(List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO stock_movements (product_id, warehouse_id, delta, created_at) VALUES (?, ?, ?, ?)", batch);
+        }
+    }
+
+    private void verify(long warehouseId, long[] productIds, long[] expected) {
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, count FROM stock WHERE warehouse_id = ?",
+                (RowCallbackHandler) rs -> counts.put(rs.getLong(1), rs.getLong(2)), warehouseId);
+        for (int i = 0; i < productIds.length; i++) {
+            if (expected[i] != 0) {
+                assertEquals(expected[i], counts.getOrDefault(productIds[i], 0L), "product " + productIds[i]);
+            }
+        }
+    }
+
+    private long insertWarehouse(String name) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO warehouses (name, location) VALUES (?, 'benchmark')", Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, name);
+            return ps;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+
+    private long[] insertProducts(int count) {
+        long[] ids = new long[count];
+        String prefix = "ledger-bench-" + System.nanoTime() + "-";
+        for (int i = 0; i < count; i++) {
+            KeyHolder keys = new GeneratedKeyHolder();
+            String name = prefix + i;
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO products (name, unit) VALUES (?, 'шт')", Statement.RETURN_GENERATED_KEYS);
+                ps.setString(1, name);
+                return ps;
+            }, keys);
+            ids[i] = keys.getKey().longValue();
+        }
+        return ids;
+    }
+
+    private static long millisSince(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,230 @@
+package warehouses.project.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import warehouses.project.ProjectApplication;
+import warehouses.project.dto.PinnedSiteDto;
+import warehouses.project.dto.PinningReportDto;
+import warehouses.project.service.PinningMonitorService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обычные потоки Tomcat против виртуальных на /api/stock и /api/shipments/incoming.
+ * <p>
+ * Поднимает приложение трижды: с обычными потоками и пулом соединений по умолчанию, с обычными потоками
+ * и пулом из профиля vt (чтобы отделить эффект потоков от эффекта пула) и с профилем vt. В каждом режиме
+ * {@code -Dload.clients} клиентов (по умолчанию 1000 — больше 200 потоков Tomcat) без пауз читают
+ * /api/stock, затем создают приходы. Печатает запросы в секунду, p50/p99, ошибки (503 — пул соединений
+ * не выдал соединение) и места удержания потоков-носителей в режиме vt.
+ * Требует Java 21 и пишет в настроенную БД, поэтому запускается только явно и на отдельной базе:
+ * {@code ./mvnw -Pjava21 test -Dtest=VirtualThreadLoadBenchmarkTest -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadLoadBenchmarkTest {
+
+    private static final int PRODUCTS = 1_000;
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final Duration PHASE = Duration.ofSeconds(30);
+    private static final String PASSWORD = "benchmark-password";
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final int clients = Integer.getInteger("load.clients", 1000);
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newFixedThreadPool(64))
+            .build();
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        List<String> report = new ArrayList<>();
+        run("обычные потоки, пул по умолчанию", report);
+        run("обычные потоки, пул vt", report,
+                "--spring.datasource.hikari.maximum-pool-size=30",
+                "--spring.datasource.hikari.minimum-idle=30",
+                "--spring.datasource.hikari.connection-timeout=5000");
+        run("виртуальные потоки (vt)", report, "--spring.profiles.active=vt");
+
+        System.out.printf("%n%d клиентов, %d с на замер%n", clients, PHASE.toSeconds());
+        report.forEach(System.out::println);
+    }
+
+    /**
+     * @param args аргументы командной строки: они перекрывают и application.properties, и профиль
+     */
+    private void run(String mode, List<String> report, String... args) throws Exception {
+        List<String> arguments = new ArrayList<>(List.of("--server.port=0", "--spring.jpa.show-sql=false"));
+        arguments.addAll(List.of(args));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ProjectApplication.class)
+                .run(arguments.toArray(String[]::new))) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            long warehouseId = insertWarehouse(jdbcTemplate, "vt-bench-" + System.currentTimeMillis());
+            long[] productIds = insertProducts(jdbcTemplate, PRODUCTS);
+            String token = signUp(port, "vtbench" + System.currentTimeMillis());
+
+            Load stock = random -> HttpRequest.newBuilder(uri(port, "/api/stock?size=20&page=" + random.nextInt(10)))
+                    .header("Authorization", "Bearer " + token)
+                    .GET();
+            Load incoming = random -> HttpRequest.newBuilder(uri(port, "/api/shipments/incoming"))
+                    .header("Authorization", "Bearer " + token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"warehouseId\":" + warehouseId + ",\"items\":[{\"productId\":"
+                            + productIds[random.nextInt(productIds.length)] + ",\"count\":1}]}"));
+
+            measure(stock, WARMUP);
+            measure(incoming, WARMUP);
+            context.getBean(PinningMonitorService.class).reset();
+
+            report.add(format(mode, "/api/stock", measure(stock, PHASE)));
+            report.add(format(mode, "/api/shipments/incoming", measure(incoming, PHASE)));
+            report.addAll(pinning(context.getBean(PinningMonitorService.class).getReport()));
+        }
+    }
+
+    private Result measure(Load load, Duration phase) throws Exception {
+        Result result = new Result();
+        long deadline = System.nanoTime() + phase.toNanos();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            for (int i = 0; i < clients; i++) {
+                SplittableRandom random = new SplittableRandom(i);
+                pool.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long started = System.nanoTime();
+                        HttpResponse<Void> response;
+                        try {
+                            response = http.send(load.request(random).timeout(Duration.ofSeconds(60)).build(),
+                                    HttpResponse.BodyHandlers.discarding());
+                        } catch (IOException e) {
+                            result.failed.incrementAndGet();
+                            continue;
+                        }
+                        if (response.statusCode() == 200) {
+                            result.latencies.add((System.nanoTime() - started) / 1_000_000);
+                        } else if (response.statusCode() == 503) {
+                            result.unavailable.incrementAndGet();
+                        } else {
+                            result.failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(phase.toSeconds() + 120, TimeUnit.SECONDS);
+        }
+        return result;
+    }
+
+    private String format(String mode, String endpoint, Result result) {
+        return String.format("%-34s %-26s %,9.1f запр/с  p50 %5d ms  p99 %5d ms  503: %,d  ошибок: %,d",
+                mode, endpoint, result.latencies.size() / (double) PHASE.toSeconds(),
+                result.percentile(50), result.percentile(99), result.unavailable.get(), result.failed.get());
+    }
+
+    private static List<String> pinning(PinningReportDto pinning) {
+        List<String> lines = new ArrayList<>();
+        if (!Boolean.TRUE.equals(pinning.getMonitoring())) {
+            return lines;
+        }
+        lines.add(String.format("  удержаний носителя не короче %d ms: %,d", pinning.getThresholdMillis(), pinning.getEventCount()));
+        for (PinnedSiteDto site : pinning.getSites().subList(0, Math.min(5, pinning.getSites().size()))) {
+            lines.add(String.format("    %,6d раз, всего %,d ms, макс. %,d ms: %s",
+                    site.getCount(), site.getTotalMillis(), site.getMaxMillis(), site.getFrame()));
+        }
+        return lines;
+    }
+
+    private String signUp(int port, String username) throws Exception {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri(port, "/api/auth/sign-up"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"email\":\"" + username
+                        + "@example.com\",\"password\":\"" + PASSWORD + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(response.body());
+        if (!matcher.find()) {
+            throw new IllegalStateException("Sign-up failed: " + response.statusCode() + " " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    private static long insertWarehouse(JdbcTemplate jdbcTemplate, String name) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO warehouses (name, location) VALUES (?, 'benchmark')", Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, name);
+            return ps;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+
+    private static long[] insertProducts(JdbcTemplate jdbcTemplate, int count) {
+        long[] ids = new long[count];
+        String prefix = "vt-bench-" + System.nanoTime() + "-";
+        for (int i = 0; i < count; i++) {
+            KeyHolder keys = new GeneratedKeyHolder();
+            String name = prefix + i;
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO products (name, unit) VALUES (?, 'шт')", Statement.RETURN_GENERATED_KEYS);
+                ps.setString(1, name);
+                return ps;
+            }, keys);
+            ids[i] = keys.getKey().longValue();
+        }
+        return ids;
+    }
+
+    private static URI uri(int port, String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    @FunctionalInterface
+    private interface Load {
+        HttpRequest.Builder request(SplittableRandom random);
+    }
+
+    private static final class Result {
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger unavailable = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        long percentile(int percentile) {
+            List<Long> sorted = new ArrayList<>(latencies);
+            if (sorted.isEmpty()) {
+                return -1;
+            }
+            Collections.sort(sorted);
+            return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package warehouses.project.benchmark;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.util.HtmlUtils;
+import warehouses.project.config.XssProtectionConfig;
+import warehouses.project.dto.CreateShipmentRequest;
+import warehouses.project.dto.ProductDto;
+import warehouses.project.dto.ShipmentItemDto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Десериализация {@link CreateShipmentRequest} на 5 000 строк с товарами (название, единица, описание):
+ * {@code alwaysEscape} — прежний десериализатор, {@code fastPath} — текущий {@link XssProtectionConfig.XssStringDeserializer}.
+ * <p>
+ * Запуск (с профилировщиком gc — байты на операцию):
+ * {@code ./mvnw test -Dtest=XssDeserializerBenchmark -Dbenchmark=true}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XssDeserializerBenchmark {
+
+    private static final int LINES = 5_000;
+
+    private ObjectMapper alwaysEscapeMapper;
+    private ObjectMapper fastPathMapper;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        alwaysEscapeMapper = mapper(new AlwaysEscapeDeserializer());
+        fastPathMapper = mapper(new XssProtectionConfig.XssStringDeserializer());
+
+        List<ShipmentItemDto> items = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            items.add(ShipmentItemDto.builder()
+                    .productId((long) i)
+                    .count(1 + i % 10)
+                    .product(ProductDto.builder()
+                            .id((long) i)
+                            .name("Ноутбук Lenovo IdeaPad " + i)
+                            .unit("шт")
+                            .description("Поставка по договору 2024-" + i)
+                            .build())
+                    .build());
+        }
+        payload = new ObjectMapper().writeValueAsBytes(new CreateShipmentRequest(1L, items));
+    }
+
+    @Benchmark
+    public CreateShipmentRequest alwaysEscape() throws IOException {
+        return alwaysEscapeMapper.readValue(payload, CreateShipmentRequest.class);
+    }
+
+    @Benchmark
+    public CreateShipmentRequest fastPath() throws IOException {
+        return fastPathMapper.readValue(payload, CreateShipmentRequest.class);
+    }
+
+    private static ObjectMapper mapper(JsonDeserializer<String> deserializer) {
+        SimpleModule module = new SimpleModule("XssProtectionModule");
+        module.addDeserializer(String.class, deserializer);
+        return new ObjectMapper().registerModule(module);
+    }
+
+    /**
+     * Десериализатор до оптимизации: htmlEscape для каждого значения.
+     */
+    private static final class AlwaysEscapeDeserializer extends JsonDeserializer<String> {
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String value = p.getValueAsString();
+            return value == null ? null : HtmlUtils.htmlEscape(value);
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(XssDeserializerBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,136 @@
+package warehouses.project.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Маршрутизация чтения на двух встроенных БД H2: одна играет основную, другая — реплику.
+ * Репликация имитируется записью строки replica_heartbeat в реплику вручную.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final String SERVICE_READ = "warehouses.project.service.StockService.getAll";
+    private static final String REPOSITORY_READ = "org.springframework.data.jpa.repository.support.SimpleJpaRepository.findById";
+
+    private EmbeddedDatabase primary;
+    private EmbeddedDatabase replica;
+    private ReplicaLagMonitor lagMonitor;
+    private ReadYourWritesInterceptor readYourWrites;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        new JdbcTemplate(replica).execute(
+                "CREATE TABLE replica_heartbeat (id INT NOT NULL PRIMARY KEY, beat_at TIMESTAMP(6) NOT NULL)");
+
+        lagMonitor = new ReplicaLagMonitor(primary, Map.of("replica-0", replica), Duration.ofSeconds(2));
+        readYourWrites = new ReadYourWritesInterceptor(Duration.ofSeconds(5));
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica),
+                "warehouses.project.service.", lagMonitor, readYourWrites);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        lagMonitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        primary.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    void serviceReadOnlyTransactionReadsFromFreshReplica() {
+        replicate(LocalDateTime.now());
+
+        assertEquals("replica", read(SERVICE_READ, true));
+    }
+
+    @Test
+    void writesAndRepositoryReadsStayOnPrimary() {
+        replicate(LocalDateTime.now());
+
+        assertEquals("primary", read(SERVICE_READ, false));
+        assertEquals("primary", read(REPOSITORY_READ, true));
+        assertEquals("primary", jdbcTemplate.queryForObject("SELECT name FROM marker", String.class));
+    }
+
+    @Test
+    void laggingReplicaIsSkippedUntilItCatchesUp() {
+        replicate(LocalDateTime.now().minusSeconds(10));
+        assertEquals("primary", read(SERVICE_READ, true));
+
+        replicate(LocalDateTime.now());
+        assertEquals("replica", read(SERVICE_READ, true));
+        assertTrue(lagMonitor.getStatuses().get(0).available());
+    }
+
+    @Test
+    void userWhoJustWroteReadsFromPrimary() {
+        replicate(LocalDateTime.now());
+        readYourWrites.markWrite("writer");
+
+        authenticate("writer");
+        assertEquals("primary", read(SERVICE_READ, true));
+
+        authenticate("reader");
+        assertEquals("replica", read(SERVICE_READ, true));
+    }
+
+    private String read(String transactionName, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setName(transactionName);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM marker", String.class));
+    }
+
+    /**
+     * То, что сделала бы репликация: строка heartbeat основной БД с данным временем появляется в реплике.
+     */
+    private void replicate(LocalDateTime beatAt) {
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.update("DELETE FROM replica_heartbeat");
+        replicaJdbc.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", Timestamp.valueOf(beatAt));
+        lagMonitor.check();
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+
+    private static EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName(name + "-" + System.nanoTime())
+                .build();
+        JdbcTemplate jdbc = new JdbcTemplate(database);
+        jdbc.execute("CREATE TABLE marker (name VARCHAR(20) NOT NULL)");
+        jdbc.update("INSERT INTO marker (name) VALUES (?)", name);
+        return database;
+    }
+}
@@ -0,0 +1,163 @@
+package warehouses.project.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.repository.WarehouseRepository;
+import warehouses.project.service.ShardRouter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Шардирование на трёх встроенных БД H2: маршрутизация по шарду, закрепление транзакции за шардом,
+ * страницы по всем шардам и диапазоны ID шардов.
+ */
+class ShardRoutingDataSourceTest {
+
+    private List<EmbeddedDatabase> databases;
+    private ExecutorService fanOutExecutor;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private ShardRouter shardRouter;
+
+    @BeforeEach
+    void setUp() {
+        databases = List.of(database("shard-0"), database("shard-1"), database("shard-2"));
+        for (int id = 1; id <= 9; id++) {
+            new JdbcTemplate(databases.get((id - 1) % 3)).update("INSERT INTO rows_by_shard (id) VALUES (?)", id);
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(databases.get(0), List.copyOf(databases.subList(1, 3)));
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        fanOutExecutor = Executors.newFixedThreadPool(3);
+        shardRouter = new ShardRouter(
+                new StaticListableBeanFactory(Map.<String, Object>of("shardRoutingDataSource", routing)).getBeanProvider(ShardRoutingDataSource.class),
+                transactionManager,
+                fanOutExecutor,
+                mock(WarehouseRepository.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanOutExecutor.shutdownNow();
+        databases.forEach(EmbeddedDatabase::shutdown);
+    }
+
+    @Test
+    void queriesGoToSelectedShard() {
+        assertEquals("shard-0", marker());
+        assertEquals("shard-1", shardRouter.inShard(1, this::marker));
+        assertEquals("shard-2", shardRouter.inShard(2, this::marker));
+        assertEquals("shard-0", marker());
+    }
+
+    @Test
+    void transactionStaysInItsShard() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        assertEquals("shard-1", transaction.execute(status -> shardRouter.inShard(1, this::marker)));
+        assertThrows(IllegalStateException.class, () -> transaction.executeWithoutResult(status -> {
+            shardRouter.inShard(1, this::marker);
+            shardRouter.inShard(2, this::marker);
+        }));
+        assertEquals("shard-2", transaction.execute(status -> shardRouter.inShard(2, this::marker)));
+    }
+
+    @Test
+    void pageOverAllShardsIsMergedInSortOrder() {
+        Sort sort = Sort.by("id").descending();
+
+        Page<Row> first = shardRouter.page(null, PageRequest.of(0, 4, sort), this::rows, row -> {
+        });
+        Page<Row> second = shardRouter.page(null, PageRequest.of(1, 4, sort), this::rows, row -> {
+        });
+
+        assertEquals(List.of(9L, 8L, 7L, 6L), first.getContent().stream().map(Row::getId).toList());
+        assertEquals(List.of(5L, 4L, 3L, 2L), second.getContent().stream().map(Row::getId).toList());
+        assertEquals(9, first.getTotalElements());
+    }
+
+    @Test
+    void shardIdsStartAtShardBaseAndAreReservedOnce() {
+        JdbcTemplate shard = new JdbcTemplate(databases.get(2));
+        long base = ShardRouter.idBase(2);
+
+        ShardSchemaInitializer.reserveIdRange(shard, base);
+        shard.update("INSERT INTO shipments (note) VALUES ('first')");
+        ShardSchemaInitializer.reserveIdRange(shard, base);
+        shard.update("INSERT INTO shipments (note) VALUES ('second')");
+
+        assertEquals(List.of(base, base + 1), shard.queryForList("SELECT id FROM shipments ORDER BY id", Long.class));
+        shard.update("INSERT INTO change_log (entity_type) VALUES ('stock')");
+        assertEquals(base, shard.queryForObject("SELECT MAX(version) FROM change_log", Long.class));
+        assertEquals(base, shard.queryForObject("SELECT NEXT VALUE FOR shipmentitems_seq", Long.class));
+        assertEquals(2, shardRouter.shardOfId(base + 1));
+    }
+
+    private String marker() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    /**
+     * Запрос шарда, как его выполнил бы репозиторий: первые pageSize строк в порядке страницы и общее количество.
+     */
+    private Page<Row> rows(Pageable pageable) {
+        List<Row> content = jdbcTemplate.query("SELECT id FROM rows_by_shard ORDER BY id DESC LIMIT ?",
+                (rs, rowNum) -> new Row(rs.getLong("id")), pageable.getPageSize());
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rows_by_shard", Long.class);
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private static EmbeddedDatabase database(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName(name + "-" + System.nanoTime())
+                .build();
+        JdbcTemplate jdbc = new JdbcTemplate(database);
+        jdbc.execute("CREATE TABLE marker (name VARCHAR(20) NOT NULL)");
+        jdbc.update("INSERT INTO marker (name) VALUES (?)", name);
+        jdbc.execute("CREATE TABLE rows_by_shard (id BIGINT NOT NULL PRIMARY KEY)");
+        jdbc.execute("CREATE TABLE shipments (id BIGINT AUTO_INCREMENT PRIMARY KEY, note VARCHAR(20))");
+        jdbc.execute("CREATE TABLE stock (id BIGINT AUTO_INCREMENT PRIMARY KEY)");
+        jdbc.execute("CREATE TABLE stock_snapshots (id BIGINT AUTO_INCREMENT PRIMARY KEY)");
+        jdbc.execute("CREATE TABLE change_log (version BIGINT AUTO_INCREMENT PRIMARY KEY, entity_type VARCHAR(20))");
+        jdbc.execute("CREATE TABLE shipmentitems (id BIGINT NOT NULL PRIMARY KEY)");
+        jdbc.execute("CREATE SEQUENCE shipmentitems_seq START WITH 1 INCREMENT BY 50");
+        return database;
+    }
+
+    public static class Row {
+
+        private final Long id;
+
+        Row(Long id) {
+            this.id = id;
+        }
+
+        public Long getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package warehouses.project.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import warehouses.project.model.Shipment;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка планов запросов фильтрации операций на локальной MySQL: SQL, который Hibernate строит
+ * по {@link ShipmentSpecifications#filter}, перехватывается ({@link CapturingStatementInspector})
+ * и выполняется через EXPLAIN — для каждого сочетания фильтров оптимизатор выбирает свой составной индекс.
+ * <p>
+ * Чтобы выбор индекса не зависел от случайного наполнения базы, тест добавляет два склада с операциями
+ * (много неподходящих и немного подходящих под фильтр), обновляет статистику и после проверки всё удаляет.
+ * Пишет в настроенную БД, поэтому запускается только явно и на отдельной базе:
+ * {@code ./mvnw test -Dtest=ShipmentIndexExplainTest -Dbenchmark=true}
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "warehouses.project.repository.CapturingStatementInspector")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ShipmentIndexExplainTest {
+
+    private static final String BULK_TYPE = "explain-bulk";
+    private static final String TARGET_TYPE = "explain-target";
+    private static final int BULK_SHIPMENTS = 4000;
+    private static final int TARGET_SHIPMENTS = 20;
+    private static final LocalDate TARGET_FROM = LocalDate.of(1990, 6, 1);
+    private static final PageRequest FIRST_PAGE = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "id"));
+    private static final Pattern SHIPMENTS_ALIAS = Pattern.compile("from shipments (\\w+)", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    private Long bulkWarehouseId;
+    private Long targetWarehouseId;
+
+    @BeforeEach
+    void setUp() {
+        bulkWarehouseId = insertWarehouse("explain-bulk");
+        targetWarehouseId = insertWarehouse("explain-target");
+        List<Object[]> rows = new ArrayList<>(BULK_SHIPMENTS + TARGET_SHIPMENTS);
+        for (int i = 0; i < BULK_SHIPMENTS; i++) {
+            rows.add(new Object[]{BULK_TYPE, bulkWarehouseId, LocalDate.of(2001, 1, 1).plusDays(i % 3000)});
+        }
+        for (int i = 0; i < TARGET_SHIPMENTS; i++) {
+            rows.add(new Object[]{TARGET_TYPE, targetWarehouseId, TARGET_FROM.plusDays(i)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO shipments (transaction_type, warehouse_id, date) VALUES (?, ?, ?)", rows);
+        jdbcTemplate.execute("ANALYZE TABLE shipments");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM shipments WHERE warehouse_id IN (?, ?)", bulkWarehouseId, targetWarehouseId);
+        jdbcTemplate.update("DELETE FROM warehouses WHERE id IN (?, ?)", bulkWarehouseId, targetWarehouseId);
+    }
+
+    @Test
+    void warehouseAndDateFilterUsesWarehouseDateIndex() {
+        LocalDate from = LocalDate.of(1980, 1, 1);
+        LocalDate to = LocalDate.of(2030, 12, 31);
+        assertIndexUsed(ShipmentSpecifications.filter(null, targetWarehouseId, from, to),
+                List.of(targetWarehouseId, from, to), "idx_shipments_warehouse_date");
+    }
+
+    @Test
+    void warehouseFilterUsesWarehouseDateIndex() {
+        assertIndexUsed(ShipmentSpecifications.filter(null, targetWarehouseId, null, null),
+                List.of(targetWarehouseId), "idx_shipments_warehouse_date");
+    }
+
+    @Test
+    void typeAndDateFilterUsesTypeDateIndex() {
+        LocalDate from = LocalDate.of(1980, 1, 1);
+        assertIndexUsed(ShipmentSpecifications.filter(TARGET_TYPE, null, from, null),
+                List.of(TARGET_TYPE, from), "idx_shipments_type_date");
+    }
+
+    @Test
+    void dateFilterUsesDateIndex() {
+        LocalDate from = TARGET_FROM;
+        LocalDate to = TARGET_FROM.plusDays(TARGET_SHIPMENTS);
+        assertIndexUsed(ShipmentSpecifications.filter(null, null, from, to),
+                List.of(from, to), "idx_shipments_date");
+    }
+
+    @Test
+    void itemsByProductCanUseProductIndex() {
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN SELECT * FROM shipmentitems i WHERE i.product_id = 1");
+        String possibleKeys = String.valueOf(plan.get(0).get("possible_keys"));
+        assertTrue(possibleKeys.contains("idx_shipmentitems_product"),
+                () -> "Индекс idx_shipmentitems_product недоступен оптимизатору, план: " + plan);
+    }
+
+    /**
+     * Выполнить фильтр через репозиторий (первая страница, новые операции первыми), взять построенный Hibernate SQL
+     * и проверить, какой индекс по плану читает таблица операций.
+     *
+     * @param conditionValues значения условий в порядке {@link ShipmentSpecifications#filter}; за ними — LIMIT
+     */
+    private void assertIndexUsed(Specification<Shipment> spec, List<Object> conditionValues, String indexName) {
+        CapturingStatementInspector.clear();
+        shipmentRepository.findAll(spec, FIRST_PAGE);
+        String sql = CapturingStatementInspector.statements().stream()
+                .filter(statement -> SHIPMENTS_ALIAS.matcher(statement).find() && statement.toLowerCase().contains("order by"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Filter query was not captured: " + CapturingStatementInspector.statements()));
+
+        List<Object> parameters = new ArrayList<>(conditionValues);
+        parameters.add(FIRST_PAGE.getPageSize());
+        assertEquals(parameters.size(), sql.chars().filter(c -> c == '?').count(), () -> "Unexpected parameters in " + sql);
+
+        Matcher alias = SHIPMENTS_ALIAS.matcher(sql);
+        assertTrue(alias.find());
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, parameters.toArray());
+        Map<String, Object> shipments = plan.stream()
+                .filter(row -> alias.group(1).equals(row.get("table")))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No plan row for shipments: " + plan));
+        assertEquals(indexName, shipments.get("key"), () -> "Запрос " + sql + " выполняется не по " + indexName + ", план: " + plan);
+    }
+
+    private Long insertWarehouse(String name) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO warehouses (name, location) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, name);
+            statement.setString(2, "test");
+            return statement;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+}
@@ -0,0 +1,62 @@
+package warehouses.project.service;
+
+import org.junit.jupiter.api.Test;
+import warehouses.project.service.ShipmentImportService.CsvLineParser;
+import warehouses.project.service.ShipmentImportService.ImportLine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Разбор строк CSV импорта приходов: заголовок распознаётся только в первой строке и задаёт порядок колонок.
+ */
+class CsvLineParserTest {
+
+    private final CsvLineParser parser = new CsvLineParser();
+
+    @Test
+    void fileWithoutHeaderUsesDefaultColumns() {
+        assertEquals(new ImportLine(1, 5L, 10), parser.parse(1, "5,10"));
+        assertEquals(new ImportLine(2, 6L, 3), parser.parse(2, " 6 ; 3 "));
+    }
+
+    @Test
+    void headerIsSkippedAndDefinesColumnOrder() {
+        assertNull(parser.parse(1, "count;product_id"));
+
+        assertEquals(new ImportLine(2, 5L, 10), parser.parse(2, "10;5"));
+    }
+
+    @Test
+    void quotedHeaderWithExtraColumnsIsRecognized() {
+        assertNull(parser.parse(1, "\"name\",\"ProductId\",\"Count\""));
+
+        assertEquals(new ImportLine(2, 5L, 10), parser.parse(2, "apple,5,10"));
+    }
+
+    @Test
+    void headerIsRecognizedOnlyInFirstLine() {
+        parser.parse(1, "5,10");
+
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(2, "productId,count"));
+    }
+
+    @Test
+    void malformedLinesAreRejected() {
+        parser.parse(1, "productId,count");
+
+        assertEquals("Ожидалось полей: 2",
+                assertThrows(IllegalArgumentException.class, () -> parser.parse(2, "5")).getMessage());
+        assertEquals("Некорректное значение productId: abc",
+                assertThrows(IllegalArgumentException.class, () -> parser.parse(3, "abc,10")).getMessage());
+        assertEquals("Некорректное значение count: ",
+                assertThrows(IllegalArgumentException.class, () -> parser.parse(4, "5,")).getMessage());
+        assertEquals("Некорректное количество: 0",
+                assertThrows(IllegalArgumentException.class, () -> parser.parse(5, "5,0")).getMessage());
+        assertEquals("Некорректное количество: -3",
+                assertThrows(IllegalArgumentException.class, () -> parser.parse(6, "5,-3")).getMessage());
+        assertEquals("Некорректное количество: 3000000000",
+                assertThrows(IllegalArgumentException.class, () -> parser.parse(7, "5,3000000000")).getMessage());
+    }
+}
@@ -0,0 +1,196 @@
+package warehouses.project.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.exeption.IdempotencyKeyConflictException;
+import warehouses.project.model.IdempotencyKey;
+import warehouses.project.repository.IdempotencyKeyRepository;
+import warehouses.project.repository.WarehouseRepository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Идемпотентность без БД: репозиторий — заглушка над таблицей в памяти с уникальностью (пользователь, ключ),
+ * как у idempotency_keys. Два экземпляра сервиса над одной таблицей — два узла приложения.
+ */
+class IdempotencyServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String KEY = "order-42";
+    private static final String ENDPOINT = "POST /api/shipments/incoming";
+
+    private final Map<String, IdempotencyKey> table = new ConcurrentHashMap<>();
+    private IdempotencyKeyRepository repository;
+    private ShardRouter shardRouter;
+    private TransactionTemplate transactionTemplate;
+    private IdempotencyService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(IdempotencyKeyRepository.class);
+        when(repository.findByUserIdAndKey(anyLong(), anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.getArgument(0) + ":" + invocation.getArgument(1))));
+        when(repository.save(any(IdempotencyKey.class))).thenAnswer(invocation -> {
+            IdempotencyKey entity = invocation.getArgument(0);
+            if (table.putIfAbsent(entity.getUserId() + ":" + entity.getKey(), entity) != null) {
+                throw new DataIntegrityViolationException("Duplicate entry for key 'uk_idempotency_user_key'");
+            }
+            return entity;
+        });
+        transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+        shardRouter = new ShardRouter(mock(ObjectProvider.class), new NoOpTransactionManager(), Runnable::run,
+                mock(WarehouseRepository.class));
+        service = newNode();
+    }
+
+    @Test
+    void sameKeyAndBodyReplaysStoredResponse() {
+        AtomicInteger executions = new AtomicInteger();
+
+        Created first = service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(executions.incrementAndGet())))).join();
+        Created second = service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(executions.incrementAndGet())))).join();
+
+        assertEquals(new Created(1), first);
+        assertEquals(new Created(1), second);
+        assertEquals(1, executions.get());
+        verify(repository, times(1)).save(any(IdempotencyKey.class));
+    }
+
+    @Test
+    void sameKeyAndBodyOnAnotherNodeReplaysResponseFromTable() {
+        service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(1)))).join();
+
+        Created replayed = newNode().execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(2)))).join();
+
+        assertEquals(new Created(1), replayed);
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyIsRejected() {
+        service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(1)))).join();
+
+        assertThrows(IdempotencyKeyConflictException.class, () -> service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 11), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(2)))));
+        assertThrows(IdempotencyKeyConflictException.class, () -> newNode().execute(KEY, USER_ID, ENDPOINT, new Body(5L, 11), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(2)))));
+    }
+
+    @Test
+    void sameKeyOfAnotherUserIsIndependent() {
+        service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(1)))).join();
+
+        Created other = service.execute(KEY, 2L, ENDPOINT, new Body(5L, 11), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(2)))).join();
+
+        assertEquals(new Created(2), other);
+    }
+
+    @Test
+    void concurrentRequestsWithSameKeyExecuteOnce() {
+        AtomicInteger executions = new AtomicInteger();
+        CompletableFuture<Void> running = new CompletableFuture<>();
+
+        CompletableFuture<Created> first = service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> running.thenApply(ignored -> recorder.inTransaction(() -> new Created(executions.incrementAndGet()))));
+        CompletableFuture<Created> second = service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> running.thenApply(ignored -> recorder.inTransaction(() -> new Created(executions.incrementAndGet()))));
+        assertThrows(IdempotencyKeyConflictException.class, () -> service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 11), Created.class,
+                recorder -> CompletableFuture.completedFuture(new Created(-1))));
+        assertFalse(second.isDone());
+
+        running.complete(null);
+
+        assertEquals(new Created(1), first.join());
+        assertEquals(new Created(1), second.join());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void failedRequestCanBeRetriedWithSameKey() {
+        CompletableFuture<Created> failed = service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.failedFuture(new IllegalStateException("Not enough stock for product: p")));
+        assertThrows(RuntimeException.class, failed::join);
+
+        Created retried = service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(2)))).join();
+
+        assertEquals(new Created(2), retried);
+    }
+
+    @Test
+    void uniqueKeyViolationFromConcurrentNodeReplaysItsResponse() {
+        IdempotencyService otherNode = newNode();
+
+        // пока этот узел выполняет запрос, тот же запрос успевает выполнить и сохранить другой узел:
+        // сохранение ответа здесь нарушает уникальный ключ, и транзакция операции откатывается
+        Created result = service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class, recorder -> {
+            otherNode.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                    other -> CompletableFuture.completedFuture(other.inTransaction(() -> new Created(1)))).join();
+            return CompletableFuture.completedFuture(recorder.inTransaction(() -> new Created(2)));
+        }).join();
+
+        assertEquals(new Created(1), result);
+        assertEquals(1, table.size());
+
+        // ответ другого узла закэширован: повтор не идёт ни в таблицу, ни в действие
+        Created replayed = service.execute(KEY, USER_ID, ENDPOINT, new Body(5L, 10), Created.class,
+                recorder -> CompletableFuture.completedFuture(new Created(3))).join();
+        assertEquals(new Created(1), replayed);
+    }
+
+    private IdempotencyService newNode() {
+        return new IdempotencyService(repository, transactionTemplate, shardRouter, Duration.ofHours(24), 1000);
+    }
+
+    record Body(Long productId, int count) {
+    }
+
+    record Created(long id) {
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
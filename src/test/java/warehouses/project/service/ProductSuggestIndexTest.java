@@ -0,0 +1,150 @@
+package warehouses.project.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import warehouses.project.dto.ProductSuggestionDto;
+import warehouses.project.model.Product;
+import warehouses.project.model.Shipment;
+import warehouses.project.model.ShipmentItem;
+import warehouses.project.repository.ProductRepository;
+import warehouses.project.repository.ShipmentItemRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Префиксное дерево подсказок без БД: репозитории — заглушки с пустыми данными,
+ * товары и движения добавляются через методы индекса.
+ */
+class ProductSuggestIndexTest {
+
+    private ProductSuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSuggestIndex(mock(ProductRepository.class), mock(ShipmentItemRepository.class), mock(ShardRouter.class));
+        index.load();
+    }
+
+    @Test
+    void insertedProductsAreFoundByPrefixIgnoringCase() {
+        index.put(1L, "Apple");
+        index.put(2L, "Banana");
+
+        assertEquals(List.of(1L), ids("app"));
+        assertEquals(List.of(1L), ids("APPLE"));
+        assertEquals(List.of(2L), ids("b"));
+        assertEquals(List.of(), ids("apples"));
+        assertEquals(List.of(), ids("c"));
+        assertEquals(List.of(1L, 2L), ids(""));
+    }
+
+    @Test
+    void commonPrefixSplitsEdge() {
+        index.put(1L, "apple");
+        index.put(2L, "apricot");
+        index.put(3L, "ap");
+
+        assertEquals(List.of(3L, 1L, 2L), ids("a"));
+        assertEquals(List.of(3L, 1L, 2L), ids("ap"));
+        assertEquals(List.of(1L), ids("app"));
+        assertEquals(List.of(2L), ids("apr"));
+        assertEquals(List.of(), ids("apx"));
+    }
+
+    @Test
+    void removedProductDisappearsAndRemainingEdgesMerge() {
+        index.put(1L, "apple");
+        index.put(2L, "apricot");
+
+        index.remove(2L);
+
+        assertEquals(List.of(1L), ids("ap"));
+        assertEquals(List.of(), ids("apr"));
+        // после слияния "ap" + "ple" префикс внутри ребра по-прежнему находится
+        assertEquals(List.of(1L), ids("appl"));
+
+        index.put(2L, "apricot");
+        assertEquals(List.of(1L, 2L), ids("ap"));
+    }
+
+    @Test
+    void renamedProductIsReindexed() {
+        index.put(1L, "apple");
+
+        index.put(1L, "banana");
+
+        assertEquals(List.of(), ids("apple"));
+        assertEquals(List.of(1L), ids("ban"));
+    }
+
+    @Test
+    void productsWithSameNameAreKeptSeparately() {
+        index.put(1L, "apple");
+        index.put(2L, "apple");
+
+        index.remove(1L);
+
+        assertEquals(List.of(2L), ids("apple"));
+    }
+
+    @Test
+    void mostMovedProductsComeFirstAfterMovementsAreApplied() {
+        for (long id = 1; id <= 15; id++) {
+            index.put(id, String.format("item %02d", id));
+        }
+        index.onShipmentCreated(new ShipmentCreatedEvent(shipment(12L, 12L, 12L, 7L, 7L, 15L)));
+
+        // до применения пачки порядок — по названию
+        assertEquals(List.of(1L, 2L, 3L), ids("item", 3));
+
+        index.applyMovements();
+
+        assertEquals(List.of(12L, 7L, 15L, 1L, 2L), ids("item", 5));
+        assertEquals(List.of(12L, 7L, 15L, 1L, 2L, 3L, 4L, 5L, 6L, 8L), ids("item", 20));
+        assertEquals(List.of(12L, 15L, 10L, 11L, 13L, 14L), ids("item 1"));
+    }
+
+    @Test
+    void movementsOfSeveralShipmentsAreSummed() {
+        index.put(1L, "apple");
+        index.put(2L, "apricot");
+        index.onShipmentCreated(new ShipmentCreatedEvent(shipment(2L)));
+        index.onShipmentCreated(new ShipmentCreatedEvent(shipment(1L)));
+        index.onShipmentCreated(new ShipmentCreatedEvent(shipment(2L)));
+
+        index.applyMovements();
+
+        assertEquals(List.of(2L, 1L), ids("ap"));
+    }
+
+    private List<Long> ids(String prefix) {
+        return ids(prefix, ProductSuggestIndex.MAX_SUGGESTIONS);
+    }
+
+    private List<Long> ids(String prefix, int limit) {
+        List<Long> ids = new ArrayList<>();
+        for (ProductSuggestionDto suggestion : index.suggest(prefix, limit)) {
+            ids.add(suggestion.getId());
+        }
+        return ids;
+    }
+
+    private static Shipment shipment(Long... productIds) {
+        List<ShipmentItem> items = new ArrayList<>();
+        for (Long productId : productIds) {
+            Product product = new Product();
+            product.setId(productId);
+            ShipmentItem item = new ShipmentItem();
+            item.setProduct(product);
+            item.setCount(1);
+            items.add(item);
+        }
+        Shipment shipment = new Shipment();
+        shipment.setItems(items);
+        return shipment;
+    }
+}
@@ -0,0 +1,159 @@
+package warehouses.project.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import warehouses.project.model.Product;
+import warehouses.project.model.Shipment;
+import warehouses.project.model.ShipmentItem;
+import warehouses.project.repository.WarehouseRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Порции пакета без БД: {@link ShipmentService} — заглушка, транзакции только считаются.
+ */
+class ShipmentBatchServiceTest {
+
+    private static final Long USER_ID = 7L;
+
+    private ShipmentService shipmentService;
+    private StockService stockService;
+    private CountingTransactionManager transactions;
+    private ShipmentBatchService batchService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        shipmentService = mock(ShipmentService.class);
+        stockService = mock(StockService.class);
+        transactions = new CountingTransactionManager();
+        ShardRouter shardRouter = new ShardRouter(mock(ObjectProvider.class), transactions, Runnable::run,
+                mock(WarehouseRepository.class));
+        batchService = new ShipmentBatchService(shipmentService, mock(WarehouseService.class), mock(ProductService.class),
+                stockService, shardRouter, mock(ShardTransferService.class), new TransactionTemplate(transactions));
+        ReflectionTestUtils.setField(batchService, "entityManager", mock(EntityManager.class));
+        ReflectionTestUtils.setField(batchService, "chunkSize", 50);
+        ReflectionTestUtils.setField(batchService, "maxDocuments", 5000);
+    }
+
+    @Test
+    void chunkIsCommittedInOneTransaction() {
+        when(shipmentService.createIncoming(eq(1L), anyList(), eq(USER_ID))).thenReturn(shipment(101L));
+        when(shipmentService.createWriteOff(eq(2L), anyList())).thenReturn(shipment(102L));
+
+        List<ShipmentBatchService.Result> results = batchService.execute(List.of(
+                document(ShipmentBatchService.TYPE_INCOMING, 1L),
+                document(ShipmentBatchService.TYPE_WRITE_OFF, 2L)), USER_ID);
+
+        assertEquals(101L, results.get(0).shipmentId());
+        assertEquals(102L, results.get(1).shipmentId());
+        assertEquals(1, transactions.commits);
+        assertEquals(0, transactions.rollbacks);
+        verify(stockService, times(1)).lockRows(anyList());
+    }
+
+    @Test
+    void failedChunkFallsBackToOneDocumentPerTransaction() {
+        when(shipmentService.createIncoming(eq(1L), anyList(), eq(USER_ID))).thenReturn(shipment(101L));
+        when(shipmentService.createWriteOff(eq(2L), anyList())).thenThrow(new IllegalStateException("Not enough stock for product: p"));
+        when(shipmentService.createIncoming(eq(3L), anyList(), eq(USER_ID))).thenReturn(shipment(103L));
+
+        List<ShipmentBatchService.Result> results = batchService.execute(List.of(
+                document(ShipmentBatchService.TYPE_INCOMING, 1L),
+                document(ShipmentBatchService.TYPE_WRITE_OFF, 2L),
+                document(ShipmentBatchService.TYPE_INCOMING, 3L)), USER_ID);
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(101L, results.get(0).shipmentId());
+        assertFalse(results.get(1).isSuccess());
+        assertNull(results.get(1).shipmentId());
+        assertEquals("Not enough stock for product: p", results.get(1).error());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(103L, results.get(2).shipmentId());
+
+        // порция откатывается на первом неудачном документе (третий в ней не проводится),
+        // затем каждый документ — своей транзакцией
+        assertEquals(2, transactions.commits);
+        assertEquals(2, transactions.rollbacks);
+        verify(shipmentService, times(2)).createIncoming(eq(1L), anyList(), eq(USER_ID));
+        verify(shipmentService, times(2)).createWriteOff(eq(2L), anyList());
+        verify(shipmentService, times(1)).createIncoming(eq(3L), anyList(), eq(USER_ID));
+    }
+
+    @Test
+    void singleDocumentChunkIsNotRetried() {
+        when(shipmentService.createWriteOff(eq(2L), anyList())).thenThrow(new IllegalStateException("Not enough stock for product: p"));
+
+        List<ShipmentBatchService.Result> results = batchService.execute(List.of(
+                document(ShipmentBatchService.TYPE_WRITE_OFF, 2L)), USER_ID);
+
+        assertFalse(results.get(0).isSuccess());
+        assertEquals(1, transactions.rollbacks);
+        verify(shipmentService, times(1)).createWriteOff(eq(2L), anyList());
+    }
+
+    @Test
+    void invalidDocumentFailsWithoutTransaction() {
+        List<ShipmentBatchService.Result> results = batchService.execute(List.of(
+                document(ShipmentBatchService.TYPE_TRANSFER, 1L)), USER_ID);
+
+        assertEquals("Transfer requires toWarehouseId", results.get(0).error());
+        assertEquals(0, transactions.commits + transactions.rollbacks);
+        verify(shipmentService, times(0)).createTransfer(any(), any(), anyList());
+    }
+
+    private static ShipmentBatchService.Document document(String type, Long warehouseId) {
+        Product product = new Product();
+        product.setId(1L);
+        ShipmentItem item = new ShipmentItem();
+        item.setProduct(product);
+        item.setCount(5);
+        return new ShipmentBatchService.Document(type, warehouseId, null, List.of(item));
+    }
+
+    private static Shipment shipment(Long id) {
+        Shipment shipment = new Shipment();
+        shipment.setId(id);
+        return shipment;
+    }
+
+    private static final class CountingTransactionManager implements PlatformTransactionManager {
+        private int commits;
+        private int rollbacks;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            commits++;
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rollbacks++;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package warehouses.project.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import warehouses.project.model.Product;
+import warehouses.project.model.ShipmentItem;
+import warehouses.project.model.User;
+import warehouses.project.model.Warehouse;
+import warehouses.project.repository.ProductRepository;
+import warehouses.project.repository.UserRepository;
+import warehouses.project.repository.WarehouseRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Сравнение пропускной способности режимов проведения операций: direct и partitioned.
+ * <p>
+ * Создаёт тысячи приходов в настроенной БД, поэтому запускается только явно,
+ * на отдельной (тестовой) базе:
+ * {@code ./mvnw test -Dtest=ShipmentExecutionModeBenchmarkTest -Dbenchmark=true}
+ */
+@SpringBootTest(properties = "shipments.execution.mode=partitioned")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ShipmentExecutionModeBenchmarkTest {
+
+    private static final int CLIENTS = 32;
+    private static final int SHIPMENTS = 2_000;
+    private static final int LINES_PER_SHIPMENT = 10;
+    private static final int WAREHOUSES = 2;
+    private static final int PRODUCTS = 20;
+
+    @Autowired
+    private ShipmentService shipmentService;
+    @Autowired
+    private PartitionedShipmentExecutor shipmentExecutor;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void compareDirectAndPartitionedModes() throws Exception {
+        List<Warehouse> warehouses = new ArrayList<>();
+        for (int i = 0; i < WAREHOUSES; i++) {
+            Warehouse warehouse = new Warehouse();
+            warehouse.setName("benchmark-warehouse-" + i);
+            warehouses.add(warehouseRepository.save(warehouse));
+        }
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setName("benchmark-product-" + i);
+            products.add(productRepository.save(product));
+        }
+        User user = userRepository.findByUsername("admin").orElseThrow();
+
+        // прогрев
+        runDirect(warehouses, products, user, SHIPMENTS / 10);
+
+        long directNanos = runDirect(warehouses, products, user, SHIPMENTS);
+        long partitionedNanos = runPartitioned(warehouses, products, user, SHIPMENTS);
+
+        System.out.printf("direct:      %,.0f shipments/s%n", SHIPMENTS / (directNanos / 1e9));
+        System.out.printf("partitioned: %,.0f shipments/s%n", SHIPMENTS / (partitionedNanos / 1e9));
+    }
+
+    private long runDirect(List<Warehouse> warehouses, List<Product> products, User user, int shipments) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            long started = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < shipments; i++) {
+                Long warehouseId = warehouses.get(i % warehouses.size()).getId();
+                List<ShipmentItem> items = items(products, i);
+                futures.add(clients.submit(() -> shipmentService.createIncoming(warehouseId, items, user.getId())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - started;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private long runPartitioned(List<Warehouse> warehouses, List<Product> products, User user, int shipments) {
+        long started = System.nanoTime();
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < shipments; i++) {
+            Long warehouseId = warehouses.get(i % warehouses.size()).getId();
+            futures.add(shipmentExecutor.submitIncoming(warehouseId, items(products, i), user.getId(), Function.identity()));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        return System.nanoTime() - started;
+    }
+
+    private static List<ShipmentItem> items(List<Product> products, int seed) {
+        List<ShipmentItem> items = new ArrayList<>(LINES_PER_SHIPMENT);
+        for (int line = 0; line < LINES_PER_SHIPMENT; line++) {
+            ShipmentItem item = new ShipmentItem();
+            item.setCount(1);
+            Product product = new Product();
+            product.setId(products.get((seed + line) % products.size()).getId());
+            item.setProduct(product);
+            items.add(item);
+        }
+        return items;
+    }
+}
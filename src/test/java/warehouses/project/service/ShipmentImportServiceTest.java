@@ -0,0 +1,196 @@
+package warehouses.project.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import warehouses.project.model.Product;
+import warehouses.project.model.Shipment;
+import warehouses.project.model.ShipmentItem;
+import warehouses.project.repository.WarehouseRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.anyCollection;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Импорт приходов без БД: {@link ShipmentService} — заглушка, которая запоминает проведённые порции,
+ * задание выполняется синхронно в потоке вызова.
+ */
+class ShipmentImportServiceTest {
+
+    private static final Long WAREHOUSE_ID = 3L;
+    private static final Long USER_ID = 7L;
+    private static final Set<Long> KNOWN_PRODUCTS = Set.of(1L, 2L, 3L);
+
+    private ShipmentService shipmentService;
+    private ShipmentImportService importService;
+    private final List<List<Long>> importedChunks = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        shipmentService = mock(ShipmentService.class);
+        when(shipmentService.createIncoming(eq(WAREHOUSE_ID), anyList(), eq(USER_ID))).thenAnswer(invocation -> {
+            List<ShipmentItem> items = invocation.getArgument(1);
+            List<Long> productIds = new ArrayList<>();
+            for (ShipmentItem item : items) {
+                productIds.add(item.getProduct().getId());
+            }
+            importedChunks.add(productIds);
+            Shipment shipment = new Shipment();
+            shipment.setId(100L + importedChunks.size());
+            return shipment;
+        });
+        ProductService productService = mock(ProductService.class);
+        when(productService.findByIds(anyCollection())).thenAnswer(invocation -> {
+            Map<Long, Product> products = new HashMap<>();
+            for (Long id : (Collection<Long>) invocation.getArgument(0)) {
+                if (KNOWN_PRODUCTS.contains(id)) {
+                    Product product = new Product();
+                    product.setId(id);
+                    products.put(id, product);
+                }
+            }
+            return products;
+        });
+        ShardRouter shardRouter = new ShardRouter(mock(ObjectProvider.class), new NoOpTransactionManager(), Runnable::run,
+                mock(WarehouseRepository.class));
+        importService = new ShipmentImportService(shipmentService, productService, mock(WarehouseService.class),
+                shardRouter, new ObjectMapper(), new TaskExecutorAdapter(Runnable::run));
+        ReflectionTestUtils.setField(importService, "chunkSize", 2);
+        ReflectionTestUtils.setField(importService, "maxErrors", 1000);
+        ReflectionTestUtils.setField(importService, "jobRetention", Duration.ofHours(1));
+    }
+
+    @Test
+    void linesAreImportedInChunksOfConfiguredSize() throws IOException {
+        ShipmentImportJob job = submit("stock.csv", "productId,count\n1,1\n2,2\n3,3\n1,4\n2,5\n");
+
+        assertEquals(ShipmentImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L, 1L), List.of(2L)), importedChunks);
+        assertEquals(List.of(101L, 102L, 103L), job.getShipmentIds());
+        assertEquals(5, job.getProcessedLines());
+        assertEquals(5, job.getImportedLines());
+        assertEquals(0, job.getFailedLines());
+    }
+
+    @Test
+    void malformedLinesAreReportedAndSkipped() throws IOException {
+        ShipmentImportJob job = submit("stock.csv", "1,1\nabc,2\n2,2\n3\n3,3\n");
+
+        // некорректные строки не попадают в порцию: порции — строки 1 и 3, затем строка 5
+        assertEquals(List.of(List.of(1L, 2L), List.of(3L)), importedChunks);
+        assertEquals(5, job.getProcessedLines());
+        assertEquals(3, job.getImportedLines());
+        assertEquals(2, job.getFailedLines());
+        assertEquals(List.of(
+                new ShipmentImportJob.LineError(2, "Некорректное значение productId: abc"),
+                new ShipmentImportJob.LineError(4, "Ожидалось полей: 2")), job.getErrors());
+    }
+
+    @Test
+    void errorListIsCutOffAtMaxErrors() throws IOException {
+        ReflectionTestUtils.setField(importService, "maxErrors", 2);
+
+        ShipmentImportJob job = submit("stock.csv", "productId,count\nx,1\ny,1\n1,1\nz,1\nw,1\n");
+
+        assertEquals(4, job.getFailedLines());
+        assertEquals(1, job.getImportedLines());
+        // в задании сохраняются только первые ошибки, остальные лишь считаются
+        assertEquals(List.of(2L, 3L), job.getErrors().stream().map(ShipmentImportJob.LineError::line).toList());
+    }
+
+    @Test
+    void unknownProductIsReportedAndRestOfChunkImported() throws IOException {
+        ShipmentImportJob job = submit("stock.csv", "1,1\n9,1\n2,1\n");
+
+        assertEquals(List.of(List.of(1L), List.of(2L)), importedChunks);
+        assertEquals(2, job.getImportedLines());
+        assertEquals(List.of(new ShipmentImportJob.LineError(2, "Товар не найден: 9")), job.getErrors());
+    }
+
+    @Test
+    void failedChunkMarksItsLinesAndImportContinues() throws IOException {
+        doThrow(new IllegalStateException("Deadlock found"))
+                .when(shipmentService).createIncoming(eq(WAREHOUSE_ID), anyList(), eq(USER_ID));
+
+        ShipmentImportJob job = submit("stock.csv", "1,1\n2,1\n3,1\n");
+
+        assertEquals(ShipmentImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(0, job.getImportedLines());
+        assertEquals(3, job.getFailedLines());
+        assertEquals(new ShipmentImportJob.LineError(3, "Порция не проведена: Deadlock found"), job.getErrors().get(2));
+    }
+
+    @Test
+    void bomAndBlankLinesDoNotShiftLineNumbers() throws IOException {
+        ShipmentImportJob job = submit("stock.csv", "\uFEFFproductId,count\n\n1,1\n\nbad,1\n");
+
+        assertEquals(List.of(List.of(1L)), importedChunks);
+        assertEquals(2, job.getProcessedLines());
+        assertEquals(List.of(new ShipmentImportJob.LineError(5, "Некорректное значение productId: bad")), job.getErrors());
+    }
+
+    @Test
+    void ndjsonIsChosenByExtension() throws IOException {
+        ShipmentImportJob job = submit("stock.jsonl", "{\"productId\": 1, \"count\": 2}\n{\"productId\": \"x\", \"count\": 2}\n");
+
+        assertEquals(ShipmentImportService.FORMAT_NDJSON, job.getFormat());
+        assertEquals(List.of(List.of(1L)), importedChunks);
+        assertEquals(List.of(new ShipmentImportJob.LineError(2, "Поле productId должно быть целым числом")), job.getErrors());
+    }
+
+    @Test
+    void fileWithoutValidLinesCreatesNoShipments() throws IOException {
+        ShipmentImportJob job = submit("stock.csv", "productId,count\n9,1\n");
+
+        assertEquals(ShipmentImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(List.of(), job.getShipmentIds());
+        verify(shipmentService, never()).createIncoming(eq(WAREHOUSE_ID), anyList(), eq(USER_ID));
+    }
+
+    private ShipmentImportJob submit(String fileName, String content) throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", fileName, "text/csv", content.getBytes(StandardCharsets.UTF_8));
+        return importService.submit(file, WAREHOUSE_ID, null, USER_ID, null);
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
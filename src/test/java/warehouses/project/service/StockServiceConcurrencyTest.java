@@ -0,0 +1,162 @@
+package warehouses.project.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import warehouses.project.model.Product;
+import warehouses.project.model.Stock;
+import warehouses.project.model.Warehouse;
+import warehouses.project.repository.ProductRepository;
+import warehouses.project.repository.StockRepository;
+import warehouses.project.repository.WarehouseRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка атомарных изменений остатков под конкурентной нагрузкой:
+ * нет потерянных обновлений, нет ухода в минус и нет взаимных блокировок на встречных перемещениях.
+ * Пишет в настроенную БД, поэтому запускается только явно и на отдельной базе:
+ * {@code ./mvnw test -Dtest=StockServiceConcurrencyTest -Dbenchmark=true}
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StockServiceConcurrencyTest {
+
+    private static final int WRITERS = 64;
+    private static final int OPERATIONS_PER_WRITER = 20;
+
+    @Autowired
+    private StockService stockService;
+    @Autowired
+    private StockRepository stockRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    private Product product;
+    private Warehouse warehouseA;
+    private Warehouse warehouseB;
+
+    @BeforeEach
+    void setUp() {
+        product = new Product();
+        product.setName("concurrency-test-product");
+        product.setUnit("шт");
+        product = productRepository.save(product);
+
+        warehouseA = warehouseRepository.save(newWarehouse("concurrency-test-A"));
+        warehouseB = warehouseRepository.save(newWarehouse("concurrency-test-B"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.findByProductAndWarehouse(product, warehouseA).ifPresent(stockRepository::delete);
+        stockRepository.findByProductAndWarehouse(product, warehouseB).ifPresent(stockRepository::delete);
+        warehouseRepository.delete(warehouseA);
+        warehouseRepository.delete(warehouseB);
+        productRepository.delete(product);
+    }
+
+    @Test
+    void concurrentIncreasesAreNotLost() throws Exception {
+        runConcurrently(writer -> stockService.increaseStock(product, warehouseA, 1));
+
+        assertEquals(WRITERS * OPERATIONS_PER_WRITER, count(warehouseA));
+        assertEquals(1, stockRepository.findAll().stream()
+                .filter(s -> s.getProduct().getId().equals(product.getId()))
+                .filter(s -> s.getWarehouse().getId().equals(warehouseA.getId()))
+                .count(), "параллельные приходы не должны создавать дубликаты строк");
+    }
+
+    @Test
+    void concurrentDecreasesNeverOversell() throws Exception {
+        int initial = 100;
+        stockService.increaseStock(product, warehouseA, initial);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        runConcurrently(writer -> {
+            try {
+                stockService.decreaseStock(product, warehouseA, 1);
+                succeeded.incrementAndGet();
+            } catch (IllegalStateException notEnough) {
+                // ожидаемо, когда остаток исчерпан
+            }
+        });
+
+        assertEquals(initial, succeeded.get());
+        assertEquals(0, count(warehouseA));
+    }
+
+    @Test
+    void opposingTransfersDoNotDeadlock() throws Exception {
+        int initial = WRITERS * OPERATIONS_PER_WRITER;
+        stockService.increaseStock(product, warehouseA, initial);
+        stockService.increaseStock(product, warehouseB, initial);
+
+        runConcurrently(writer -> {
+            Warehouse from = writer % 2 == 0 ? warehouseA : warehouseB;
+            Warehouse to = writer % 2 == 0 ? warehouseB : warehouseA;
+            stockService.applyDeltas(List.of(
+                    StockDelta.decrease(product, from, 1),
+                    StockDelta.increase(product, to, 1)));
+        });
+
+        assertEquals(2 * initial, count(warehouseA) + count(warehouseB));
+        assertEquals(initial, count(warehouseA));
+    }
+
+    private int count(Warehouse warehouse) {
+        return stockRepository.findByProductAndWarehouse(product, warehouse)
+                .map(Stock::getCount)
+                .orElse(0);
+    }
+
+    private void runConcurrently(Writer writer) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writerId = w;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                        writer.run(writerId);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Warehouse newWarehouse(String name) {
+        Warehouse warehouse = new Warehouse();
+        warehouse.setName(name);
+        warehouse.setLocation("test");
+        return warehouse;
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void run(int writerId);
+    }
+}